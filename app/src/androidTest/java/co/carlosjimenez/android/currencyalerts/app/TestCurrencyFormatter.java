@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Random;
+
+public class TestCurrencyFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestCurrencyFormatter.class.getSimpleName();
+
+    private static final int RATE_COUNT = 2000;
+    private static final int ROUNDS = 5;
+
+    private double[] mRates;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(42);
+        mRates = new double[RATE_COUNT];
+        for (int i = 0; i < RATE_COUNT; i++) {
+            mRates[i] = Math.pow(10, random.nextDouble() * 8 - 2);
+        }
+    }
+
+    /*
+        The rate as Utility.formatCurrencyRate used to format it, with the string resource of the
+        device configuration.
+     */
+    private static String legacyFormatCurrencyRate(Context context, String currency_symbol, double currencyRate) {
+
+        String rate = context.getString(R.string.format_currency_rate, currency_symbol, currencyRate);
+        String formattedRate = "";
+
+        int prefixLen = currency_symbol.length();
+        int j = 0;
+
+        if (rate.startsWith(currency_symbol + " "))
+            prefixLen++;
+
+        for (int i = rate.length() - 1; i >= prefixLen; i--) {
+            if (i <= rate.length() - 5) {
+                if (j < 2) {
+                    j++;
+                } else {
+                    formattedRate = "," + formattedRate;
+                    j = 0;
+                }
+            }
+            formattedRate = rate.charAt(i) + formattedRate;
+        }
+
+        formattedRate = rate.substring(0, prefixLen) + formattedRate;
+
+        return formattedRate;
+    }
+
+    public void testMatchesTheResourceFormat() {
+        CurrencyFormatter formatter = new CurrencyFormatter(mContext);
+        for (double rate : mRates) {
+            assertEquals(legacyFormatCurrencyRate(mContext, "$", rate), formatter.formatToString("$", rate));
+        }
+    }
+
+    /**
+     * Compares the time per rate of the previous formatting with the formatter, both when the
+     * string is needed and when only the length is, as in the list of rates.
+     */
+    public void testFormatBenchmark() {
+        CurrencyFormatter formatter = new CurrencyFormatter(mContext);
+        int length = 0;
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (double rate : mRates) {
+                length += legacyFormatCurrencyRate(mContext, "$", rate).length();
+            }
+        }
+        long legacyNanos = (System.nanoTime() - start) / (ROUNDS * RATE_COUNT);
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (double rate : mRates) {
+                length -= formatter.formatToString("$", rate).length();
+            }
+        }
+        long stringNanos = (System.nanoTime() - start) / (ROUNDS * RATE_COUNT);
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (double rate : mRates) {
+                length += formatter.format("$", rate).length();
+            }
+        }
+        long lengthNanos = (System.nanoTime() - start) / (ROUNDS * RATE_COUNT);
+
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "Format rate: previous %d ns, formatter string %d ns, formatter length only %d ns",
+                legacyNanos, stringNanos, lengthNanos));
+        assertTrue(length > 0);
+        assertTrue("Error: The formatter is not faster", stringNanos < legacyNanos);
+    }
+}
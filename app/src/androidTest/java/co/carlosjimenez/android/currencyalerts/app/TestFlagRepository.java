@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+public class TestFlagRepository extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestFlagRepository.class.getSimpleName();
+
+    // Never requested, the flags of the tests are written to disk beforehand
+    private static final String TEST_URL = "http://localhost/flag.png";
+
+    private static final int FLAG_SIZE = 256;
+    private static final int MAX_MEMORY_BYTES = 4 * 1024 * 1024;
+
+    private File mDirectory;
+    private FlagRepository mRepository;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(mContext.getCacheDir(), "test_flags");
+        mRepository = new FlagRepository(mContext, mDirectory, MAX_MEMORY_BYTES);
+        mRepository.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mRepository.clear();
+        super.tearDown();
+    }
+
+    /*
+        Writes a flag of the size to disk, as if it had been downloaded.
+     */
+    private void writeFlag(String currencyId, int size) throws IOException {
+        assertTrue(mDirectory.exists() || mDirectory.mkdirs());
+
+        Bitmap flag = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        flag.eraseColor(0xff0000ff);
+        OutputStream out = new FileOutputStream(mRepository.flagFile(currencyId, TEST_URL));
+        try {
+            assertTrue(flag.compress(Bitmap.CompressFormat.PNG, 100, out));
+        } finally {
+            out.close();
+        }
+        flag.recycle();
+    }
+
+    public void testSampleSize() {
+        assertEquals(1, FlagRepository.sampleSizeFor(256, 256, 144));
+        assertEquals(2, FlagRepository.sampleSizeFor(256, 256, 128));
+        assertEquals(4, FlagRepository.sampleSizeFor(256, 256, 48));
+        assertEquals(4, FlagRepository.sampleSizeFor(512, 256, 48));
+        assertEquals(1, FlagRepository.sampleSizeFor(32, 32, 48));
+    }
+
+    public void testFlagIsDecodedOnceAndDownsampled() throws IOException {
+        writeFlag("COP", FLAG_SIZE);
+        int smallSize = mContext.getResources().getDimensionPixelSize(R.dimen.list_icon);
+
+        assertNull(mRepository.getCached("COP", FlagRepository.SIZE_SMALL));
+
+        Bitmap flag = mRepository.get("COP", TEST_URL, FlagRepository.SIZE_SMALL);
+        assertNotNull(flag);
+        assertEquals(Math.min(smallSize, FLAG_SIZE), flag.getWidth());
+
+        // Served from memory from now on, with no other decode
+        assertSame(flag, mRepository.getCached("COP", FlagRepository.SIZE_SMALL));
+        assertSame(flag, mRepository.get("COP", TEST_URL, FlagRepository.SIZE_SMALL));
+
+        FlagRepository.Stats stats = mRepository.getStats();
+        Log.d(LOG_TAG, stats.toString());
+        assertEquals(1, stats.decodes);
+        assertEquals(1, stats.diskHits);
+        assertEquals(0, stats.downloads);
+        assertEquals(2, stats.memoryHits);
+        assertEquals(flag.getByteCount(), stats.memoryBytes);
+    }
+
+    public void testSizesAreCachedApart() throws IOException {
+        writeFlag("EUR", FLAG_SIZE);
+
+        Bitmap small = mRepository.get("EUR", TEST_URL, FlagRepository.SIZE_SMALL);
+        Bitmap large = mRepository.get("EUR", TEST_URL, FlagRepository.SIZE_LARGE);
+        assertNotNull(small);
+        assertNotNull(large);
+        assertTrue(large.getWidth() >= small.getWidth());
+        assertEquals(2, mRepository.getStats().decodes);
+    }
+
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        writeFlag("JPY", FLAG_SIZE);
+
+        final Bitmap[] flags = new Bitmap[4];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[flags.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    flags[index] = mRepository.get("JPY", TEST_URL, FlagRepository.SIZE_SMALL);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        for (Bitmap flag : flags) {
+            assertNotNull("Error: A caller didn't get the flag", flag);
+            assertSame(flags[0], flag);
+        }
+        assertEquals(1, mRepository.getStats().decodes);
+    }
+
+    public void testMemoryIsBounded() throws IOException {
+        FlagRepository repository = new FlagRepository(mContext, mDirectory, 256 * 1024);
+        String[] currencies = {"ARS", "BRL", "CAD", "COP", "EUR", "GBP", "JPY", "USD"};
+        for (String currencyId : currencies) {
+            writeFlag(currencyId, FLAG_SIZE);
+            assertNotNull(repository.get(currencyId, TEST_URL, FlagRepository.SIZE_SMALL));
+        }
+
+        FlagRepository.Stats stats = repository.getStats();
+        Log.d(LOG_TAG, stats.toString());
+        assertTrue(stats.memoryBytes <= stats.maxMemoryBytes);
+        assertEquals(currencies.length, stats.decodes);
+    }
+
+    public void testCorruptFlagIsDeleted() throws IOException {
+        assertTrue(mDirectory.exists() || mDirectory.mkdirs());
+        File file = mRepository.flagFile("GBP", TEST_URL);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{1, 2, 3});
+        } finally {
+            out.close();
+        }
+
+        assertNull(mRepository.get("GBP", TEST_URL, FlagRepository.SIZE_SMALL));
+        assertFalse(file.exists());
+    }
+}
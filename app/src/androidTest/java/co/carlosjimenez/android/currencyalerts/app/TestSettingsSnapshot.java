@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+import co.carlosjimenez.android.currencyalerts.app.utils.PollingCheck;
+
+public class TestSettingsSnapshot extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestSettingsSnapshot.class.getSimpleName();
+
+    private static final int ITERATIONS = 10000;
+
+    private SharedPreferences mPreferences;
+    private String mDisplayedCurrenciesKey;
+    private String mDisplayedCurrencies;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mDisplayedCurrenciesKey = mContext.getString(R.string.pref_displayed_currencies_key);
+        mDisplayedCurrencies = mPreferences.getString(mDisplayedCurrenciesKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor spe = mPreferences.edit();
+        if (mDisplayedCurrencies == null) {
+            spe.remove(mDisplayedCurrenciesKey);
+        } else {
+            spe.putString(mDisplayedCurrenciesKey, mDisplayedCurrencies);
+        }
+        spe.commit();
+        SettingsSnapshot.refresh(mContext);
+        super.tearDown();
+    }
+
+    public void testRefreshReadsTheCommittedValues() {
+        mPreferences.edit().putString(mDisplayedCurrenciesKey, "USDEUR,USDGBP").commit();
+        SettingsSnapshot.refresh(mContext);
+
+        SettingsSnapshot snapshot = SettingsSnapshot.get(mContext);
+        assertEquals("USDEUR,USDGBP", snapshot.getSyncCurrencies());
+        assertTrue(Arrays.equals(new String[]{"USDEUR", "USDGBP"}, snapshot.getSyncPairs()));
+
+        mPreferences.edit().putString(mDisplayedCurrenciesKey, "").commit();
+        SettingsSnapshot.refresh(mContext);
+        assertEquals(0, SettingsSnapshot.get(mContext).getSyncPairs().length);
+    }
+
+    public void testListenerReloadsTheSnapshot() {
+        final SettingsSnapshot before = SettingsSnapshot.get(mContext);
+        mPreferences.edit().putString(mDisplayedCurrenciesKey, "USDJPY").apply();
+
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                SettingsSnapshot snapshot = SettingsSnapshot.get(mContext);
+                return snapshot != before && "USDJPY".equals(snapshot.getSyncCurrencies());
+            }
+        }.run();
+    }
+
+    public void testAlertDefaults() {
+        Alert alert = Utility.getDefaultAlertSettings(mContext);
+        assertEquals(Integer.parseInt(mContext.getString(R.string.pref_alert_check_period_default)), alert.getPeriod());
+        assertEquals(Float.parseFloat(mContext.getString(R.string.pref_alert_check_fluctuation_default)), alert.getFluctuation());
+        assertEquals("", alert.getCurrencyFrom().getId());
+
+        // Every call gets its own alert, the callers change it
+        assertNotSame(alert, Utility.getDefaultAlertSettings(mContext));
+    }
+
+    /**
+     * Compares reading the main currency and the currencies to sync from the preferences, as
+     * every call did before, with reading them from the snapshot.
+     */
+    public void testPerCallCost() {
+        Currency expected = readMainCurrency();
+        assertEquals(expected.getId(), Utility.getMainCurrency(mContext).getId());
+        assertEquals(expected.getSymbol(), Utility.getMainCurrency(mContext).getSymbol());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            readMainCurrency();
+            PreferenceManager.getDefaultSharedPreferences(mContext)
+                    .getString(mContext.getString(R.string.pref_displayed_currencies_key), "");
+        }
+        long preferencesNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Utility.getMainCurrency(mContext);
+            Utility.getSyncCurrencies(mContext);
+        }
+        long snapshotNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "Main currency and sync currencies: preferences %d ns per call, snapshot %d ns per call",
+                preferencesNanos, snapshotNanos));
+        assertTrue("Error: The snapshot is not faster", snapshotNanos < preferencesNanos);
+    }
+
+    private Currency readMainCurrency() {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(mContext);
+        return new Currency(
+                sp.getString(mContext.getString(R.string.pref_main_currency_id_key), mContext.getString(R.string.pref_cu_id_us)),
+                sp.getString(mContext.getString(R.string.pref_main_currency_name_key), mContext.getString(R.string.pref_cu_name_us)),
+                sp.getString(mContext.getString(R.string.pref_main_currency_symbol_key), mContext.getString(R.string.pref_cu_symbol_us)),
+                sp.getString(mContext.getString(R.string.pref_main_country_code_key), mContext.getString(R.string.pref_co_code_us)),
+                sp.getString(mContext.getString(R.string.pref_main_country_name_key), mContext.getString(R.string.pref_co_name_us)),
+                sp.getString(mContext.getString(R.string.pref_main_country_flag_key), mContext.getString(R.string.pref_co_flag_us)));
+    }
+}
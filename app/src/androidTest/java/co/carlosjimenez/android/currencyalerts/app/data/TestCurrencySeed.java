@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import co.carlosjimenez.android.currencyalerts.app.BuildConfig;
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
+
+/*
+    Checks the import of the prepopulated currency database built by the generateCurrencySeed
+    gradle task.
+ */
+public class TestCurrencySeed extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    // The first open of the database already holds every currency of the resources.
+    public void testSeedIsImportedOnFirstOpen() {
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        dbHelper.setCurrencySeed(new CurrencySeed(mContext));
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        String[] currencyIds = mContext.getResources().getStringArray(R.array.currency_id);
+        assertEquals("Error: The seed doesn't hold the currencies of the resources",
+                currencyIds.length, DatabaseUtils.queryNumEntries(db, CurrencyEntry.TABLE_NAME));
+        for (String currencyId : currencyIds) {
+            assertEquals("Error: Currency " + currencyId + " was not imported", 1,
+                    DatabaseUtils.queryNumEntries(db, CurrencyEntry.TABLE_NAME,
+                            CurrencyEntry.COLUMN_CURRENCY_ID + " = ?", new String[]{currencyId}));
+        }
+        assertEquals(BuildConfig.CURRENCY_SEED_VERSION, CurrencySeed.getImportedVersion(db));
+
+        dbHelper.close();
+    }
+
+    // The same seed is only imported once, a new version replaces the stored currencies.
+    public void testSeedVersionCheck() {
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        CurrencySeed seed = new CurrencySeed(mContext);
+        assertTrue(seed.importIfNeeded(db) > 0);
+        assertEquals("Error: The same seed was imported twice", 0, seed.importIfNeeded(db));
+
+        // A user edit is kept until a new seed is shipped
+        ContentValues values = new ContentValues();
+        values.put(CurrencyEntry.COLUMN_CURRENCY_NAME, "Test");
+        db.update(CurrencyEntry.TABLE_NAME, values, CurrencyEntry.COLUMN_CURRENCY_ID + " = ?",
+                new String[]{TestUtilities.TEST_CURRENCY_FROM});
+
+        CurrencySeed newSeed = new CurrencySeed(mContext, CurrencySeed.ASSET_NAME,
+                BuildConfig.CURRENCY_SEED_VERSION + 1);
+        int count = newSeed.importIfNeeded(db);
+        assertEquals(mContext.getResources().getStringArray(R.array.currency_id).length, count);
+        assertEquals("Error: Currencies were duplicated", count,
+                DatabaseUtils.queryNumEntries(db, CurrencyEntry.TABLE_NAME));
+
+        Cursor cursor = db.query(CurrencyEntry.TABLE_NAME, new String[]{CurrencyEntry.COLUMN_CURRENCY_NAME},
+                CurrencyEntry.COLUMN_CURRENCY_ID + " = ?", new String[]{TestUtilities.TEST_CURRENCY_FROM},
+                null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertFalse("Error: The new seed didn't replace the currency", "Test".equals(cursor.getString(0)));
+        cursor.close();
+
+        dbHelper.close();
+    }
+
+    // A missing seed is not fatal, LoadCurrencyTask inserts the currencies instead.
+    public void testMissingSeed() {
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        dbHelper.setCurrencySeed(new CurrencySeed(mContext, "missing_seed.db", 1));
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, CurrencyEntry.TABLE_NAME));
+        assertEquals(0, CurrencySeed.getImportedVersion(db));
+
+        dbHelper.close();
+    }
+}
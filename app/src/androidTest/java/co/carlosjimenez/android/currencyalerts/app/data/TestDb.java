@@ -29,7 +29,9 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.test.AndroidTestCase;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 public class TestDb extends AndroidTestCase {
 
@@ -64,6 +66,9 @@ public class TestDb extends AndroidTestCase {
         final HashSet<String> tableNameHashSet = new HashSet<String>();
         tableNameHashSet.add(ForexContract.CurrencyEntry.TABLE_NAME);
         tableNameHashSet.add(ForexContract.RateEntry.TABLE_NAME);
+        tableNameHashSet.add(ForexContract.StatsEntry.TABLE_NAME);
+        tableNameHashSet.add(ForexDbHelper.TABLE_METADATA);
+        tableNameHashSet.add(ForexContract.AlertEntry.TABLE_NAME);
 
         mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
         SQLiteDatabase db = new ForexDbHelper(
@@ -255,4 +260,91 @@ public class TestDb extends AndroidTestCase {
         db.close();
         return currencyRowId;
     }
+
+    // Query plan regression test, the pair and start currency queries of the ForexProvider
+    // must be answered through the rate indexes instead of scanning the table.
+    public void testRateQueriesUseIndexes() {
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        final String rateJoin = ForexContract.RateEntry.TABLE_NAME +
+                " INNER JOIN " + ForexContract.CurrencyEntry.TABLE_NAME + " AS " +
+                ForexContract.RateEntry.JOIN_RATE_FROM_ALIAS + " ON " +
+                ForexContract.RateEntry.TABLE_NAME + "." + ForexContract.RateEntry.COLUMN_RATE_FROM_KEY +
+                " = " + ForexContract.RateEntry.JOIN_RATE_FROM_ALIAS + "." +
+                ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID +
+                " INNER JOIN " + ForexContract.CurrencyEntry.TABLE_NAME + " AS " +
+                ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + " ON " +
+                ForexContract.RateEntry.TABLE_NAME + "." + ForexContract.RateEntry.COLUMN_RATE_TO_KEY +
+                " = " + ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + "." +
+                ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID;
+
+        // getRateByCurrency
+        assertQueryUsesIndex(db, "SELECT " + ForexContract.RateEntry.COLUMN_RATE_DATE + ", " +
+                        ForexContract.RateEntry.COLUMN_RATE_VALUE + " FROM " + rateJoin +
+                        " WHERE rate.currency_from_id = ? AND rate.currency_to_id = ?" +
+                        " ORDER BY " + ForexContract.RateEntry.COLUMN_RATE_DATE + " DESC",
+                new String[]{"USD", "ZAR"},
+                ForexDbHelper.INDEX_RATE_PAIR_DATE);
+
+        // getRateByCurrencyAndDate, the unique (date, from, to) constraint is an exact match too
+        assertQueryUsesIndex(db, "SELECT " + ForexContract.RateEntry.COLUMN_RATE_VALUE + " FROM " +
+                        rateJoin + " WHERE rate.currency_from_id = ? AND rate.currency_to_id = ? AND " +
+                        ForexContract.RateEntry.COLUMN_RATE_DATE + " = ?",
+                new String[]{"USD", "ZAR", Long.toString(TestUtilities.TEST_DATE)},
+                ForexDbHelper.INDEX_RATE_PAIR_DATE, "sqlite_autoindex_" + ForexContract.RateEntry.TABLE_NAME);
+
+        // getAllRatesByCurrency
+        assertQueryUsesIndex(db, "SELECT " + ForexContract.RateEntry.COLUMN_RATE_TO_KEY + ", " +
+                        ForexContract.RateEntry.COLUMN_RATE_VALUE + " FROM " + rateJoin +
+                        " WHERE rate.currency_from_id = ? ORDER BY " +
+                        ForexContract.RateEntry.COLUMN_RATE_DATE,
+                new String[]{"USD"},
+                ForexDbHelper.INDEX_RATE_FROM_DATE, ForexDbHelper.INDEX_RATE_PAIR_DATE);
+
+        dbHelper.close();
+    }
+
+    // An upgrade from the first schema keeps the stored rates and adds the indexes.
+    public void testUpgradeFromVersion1KeepsRates() {
+        TestUtilities.createVersion1Database(mContext);
+
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        Cursor rateCursor = db.query(ForexContract.RateEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertTrue("Error: The rates were lost during the upgrade", rateCursor.moveToFirst());
+        TestUtilities.validateCurrentRecord("Error: Upgraded rate failed to validate",
+                rateCursor, TestUtilities.createRateValues());
+        rateCursor.close();
+
+        Cursor indexCursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name IN (?, ?)",
+                new String[]{ForexDbHelper.INDEX_RATE_PAIR_DATE, ForexDbHelper.INDEX_RATE_FROM_DATE});
+        assertEquals("Error: The rate indexes were not created during the upgrade", 2, indexCursor.getCount());
+        indexCursor.close();
+
+        dbHelper.close();
+    }
+
+    private void assertQueryUsesIndex(SQLiteDatabase db, String sql, String[] args, String... indexes) {
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        int detailIndex = c.getColumnIndex("detail");
+
+        List<String> plan = new ArrayList<>();
+        boolean indexUsed = false;
+        while (c.moveToNext()) {
+            String detail = c.getString(detailIndex);
+            plan.add(detail);
+            for (String index : indexes) {
+                if (detail.contains(index)) {
+                    indexUsed = true;
+                }
+            }
+            assertFalse("Error: Full scan of the rate table in " + plan,
+                    detail.matches("SCAN (TABLE )?rate\\b.*") && !detail.contains("INDEX"));
+        }
+        c.close();
+
+        assertTrue("Error: None of the rate indexes was used in " + plan, indexUsed);
+    }
 }
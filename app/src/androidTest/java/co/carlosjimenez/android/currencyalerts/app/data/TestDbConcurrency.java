@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+
+/*
+    Readers querying the rates while the sync writes a large batch.  The reader latencies are
+    logged so the journal modes can be compared on a device.
+ */
+public class TestDbConcurrency extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDbConcurrency.class.getSimpleName();
+
+    private static final int RATES_TO_INSERT = 20000;
+    private static final int READER_COUNT = 3;
+    private static final long MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
+
+    public void testConfigIsApplied() {
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals("Error: The database is not in WAL mode", "wal", queryPragma(db, "journal_mode").toLowerCase());
+        // NORMAL
+        assertEquals("1", queryPragma(db, "synchronous"));
+        // MEMORY
+        assertEquals("2", queryPragma(db, "temp_store"));
+        assertEquals("-" + 1024, queryPragma(db, "cache_size"));
+
+        dbHelper.close();
+    }
+
+    public void testReaderLatencyDuringBulkInsert() throws Exception {
+        long[] rollbackJournal = measureReaderLatency(
+                new ForexDbHelper.Config(false, ForexDbHelper.Config.SYNCHRONOUS_FULL, 0,
+                        ForexDbHelper.Config.TEMP_STORE_DEFAULT));
+        long[] writeAheadLog = measureReaderLatency(ForexDbHelper.Config.DEFAULT);
+
+        Log.d(LOG_TAG, "Reader latency during bulkInsert, rollback journal: max " + rollbackJournal[0] +
+                " ms, avg " + rollbackJournal[1] + " ms, " + rollbackJournal[2] + " queries");
+        Log.d(LOG_TAG, "Reader latency during bulkInsert, WAL: max " + writeAheadLog[0] +
+                " ms, avg " + writeAheadLog[1] + " ms, " + writeAheadLog[2] + " queries");
+
+        // With WAL the readers are not blocked by the write transaction, so they must have been
+        // able to query while it was running.
+        assertTrue("Error: The readers didn't query during the bulkInsert", writeAheadLog[2] > READER_COUNT);
+    }
+
+    // Readers going through the ForexProvider while it runs a bulkInsert of its own
+    public void testProviderReadersDuringBulkInsert() throws Exception {
+        final ContentValues[] values = createRateValues(RATES_TO_INSERT);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final List<Long> latencies = new ArrayList<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < READER_COUNT; i++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    while (writing.get()) {
+                        long start = System.nanoTime();
+                        Cursor cursor = mContext.getContentResolver().query(
+                                RateEntry.buildCurrencyRate(TestUtilities.TEST_CURRENCIES),
+                                null, null, null, RateEntry.COLUMN_RATE_DATE + " DESC");
+                        if (cursor != null) {
+                            cursor.moveToFirst();
+                            cursor.close();
+                        }
+                        synchronized (latencies) {
+                            latencies.add((System.nanoTime() - start) / 1000000);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        int inserted = mContext.getContentResolver().bulkInsert(RateEntry.CONTENT_URI, values);
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(RATES_TO_INSERT, inserted);
+
+        long[] stats = summarize(latencies);
+        Log.d(LOG_TAG, "Provider reader latency during bulkInsert: max " + stats[0] + " ms, avg " +
+                stats[1] + " ms, " + stats[2] + " queries");
+
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+    }
+
+    /**
+     * Runs the readers against a helper opened with the given config while a large transaction
+     * inserts the rates.
+     *
+     * @return max latency, average latency and number of queries
+     */
+    private long[] measureReaderLatency(ForexDbHelper.Config config) throws Exception {
+        // Each run starts from a new database, so the journal mode of the previous run is gone
+        mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+        final ForexDbHelper dbHelper = new ForexDbHelper(mContext, config);
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        final ContentValues[] values = createRateValues(RATES_TO_INSERT);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final List<Long> latencies = new ArrayList<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < READER_COUNT; i++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    while (writing.get()) {
+                        long start = System.nanoTime();
+                        Cursor cursor = db.query(RateEntry.TABLE_NAME,
+                                new String[]{RateEntry.COLUMN_RATE_DATE, RateEntry.COLUMN_RATE_VALUE},
+                                RateEntry.COLUMN_RATE_FROM_KEY + " = ? AND " + RateEntry.COLUMN_RATE_TO_KEY + " = ?",
+                                TestUtilities.TEST_CURRENCIES,
+                                null, null, RateEntry.COLUMN_RATE_DATE + " DESC", "1");
+                        cursor.moveToFirst();
+                        cursor.close();
+                        synchronized (latencies) {
+                            latencies.add((System.nanoTime() - start) / 1000000);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                db.insert(RateEntry.TABLE_NAME, null, value);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        dbHelper.close();
+        mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+        return summarize(latencies);
+    }
+
+    private static long[] summarize(List<Long> latencies) {
+        long max = 0;
+        long total = 0;
+        for (long latency : latencies) {
+            max = Math.max(max, latency);
+            total += latency;
+        }
+        return new long[]{max, latencies.isEmpty() ? 0 : total / latencies.size(), latencies.size()};
+    }
+
+    private static ContentValues[] createRateValues(int count) {
+        ContentValues[] values = new ContentValues[count];
+        long date = TestUtilities.TEST_DATE;
+        for (int i = 0; i < count; i++, date += MILLIS_IN_A_DAY) {
+            ContentValues rateValues = new ContentValues();
+            rateValues.put(RateEntry.COLUMN_RATE_FROM_KEY, TestUtilities.TEST_CURRENCY_FROM);
+            rateValues.put(RateEntry.COLUMN_RATE_TO_KEY, TestUtilities.TEST_CURRENCY_TO);
+            rateValues.put(RateEntry.COLUMN_RATE_DATE, date);
+            rateValues.put(RateEntry.COLUMN_RATE_VALUE, 14.1 + i / 1000.0);
+            values[i] = rateValues;
+        }
+        return values;
+    }
+
+    private static String queryPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
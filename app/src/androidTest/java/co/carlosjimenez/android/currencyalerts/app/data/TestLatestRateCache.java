@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+
+/*
+    Checks that the latest rates served from the memory cache of the ForexProvider are the ones
+    stored in the database after every kind of change.
+ */
+public class TestLatestRateCache extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestLatestRateCache.class.getSimpleName();
+
+    private static final long MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
+
+    private final Uri mLatestUri = RateEntry.buildLatestRates(TestUtilities.TEST_CURRENCY_FROM);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mContext.getContentResolver().insert(CurrencyEntry.CONTENT_URI,
+                TestUtilities.createCurrencyFromValues());
+        mContext.getContentResolver().insert(CurrencyEntry.CONTENT_URI,
+                TestUtilities.createCurrencyToValues());
+        LatestRateCache.resetStats();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    public void testCacheIsFilledBySync() {
+        long today = ForexContract.normalizeDate(System.currentTimeMillis());
+        syncRates(today - MILLIS_IN_A_DAY, 13.5);
+
+        assertLatestRate(today - MILLIS_IN_A_DAY, 13.5);
+        assertEquals("Error: The synced rates were not served from memory",
+                1, LatestRateCache.getHitCount());
+        assertEquals(0, LatestRateCache.getMissCount());
+
+        // A new day replaces the whole set of latest rates
+        syncRates(today, 14.25);
+        assertLatestRate(today, 14.25);
+
+        // The same day synced again only changes the value
+        syncRates(today, 14.5);
+        assertLatestRate(today, 14.5);
+
+        assertEquals(0, LatestRateCache.getMissCount());
+        Log.d(LOG_TAG, LatestRateCache.getStats());
+    }
+
+    public void testCacheIsClearedByChanges() {
+        long today = ForexContract.normalizeDate(System.currentTimeMillis());
+        syncRates(today, 14.25);
+        assertLatestRate(today, 14.25);
+
+        // An update of the rates
+        ContentValues values = new ContentValues();
+        values.put(RateEntry.COLUMN_RATE_VALUE, 15.0);
+        mContext.getContentResolver().update(RateEntry.CONTENT_URI, values, null, null);
+        assertLatestRate(today, 15.0);
+
+        // An update of the currencies joined to the rates
+        ContentValues currency = new ContentValues();
+        currency.put(CurrencyEntry.COLUMN_CURRENCY_NAME, "Rand");
+        mContext.getContentResolver().update(CurrencyEntry.CONTENT_URI, currency,
+                CurrencyEntry.COLUMN_CURRENCY_ID + " = ?", new String[]{TestUtilities.TEST_CURRENCY_TO});
+        assertLatestRate(today, 15.0);
+
+        // A delete of the rates
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        Cursor cursor = mContext.getContentResolver().query(mLatestUri,
+                ForexContract.LATEST_RATE_COLUMNS, null, null, null);
+        assertEquals("Error: Deleted rates are still served", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testRetentionDeleteKeepsTheCache() {
+        long today = ForexContract.normalizeDate(System.currentTimeMillis());
+        syncRates(today - 50 * MILLIS_IN_A_DAY, 12.0);
+        syncRates(today, 14.25);
+
+        // The retention delete of the sync, the latest rate is not part of it
+        assertEquals(1, mContext.getContentResolver().delete(RateEntry.CONTENT_URI,
+                RateEntry.COLUMN_RATE_DATE + " <= ?",
+                new String[]{Long.toString(today - 40 * MILLIS_IN_A_DAY)}));
+        // A delete that matches no rows
+        assertEquals(0, mContext.getContentResolver().delete(RateEntry.CONTENT_URI,
+                RateEntry.COLUMN_RATE_DATE + " <= ?",
+                new String[]{Long.toString(today - 40 * MILLIS_IN_A_DAY)}));
+
+        assertLatestRate(today, 14.25);
+        assertEquals("Error: The retention delete cleared the latest rates",
+                0, LatestRateCache.getMissCount());
+
+        // Deleting the latest rate falls back to the previous day
+        syncRates(today - MILLIS_IN_A_DAY, 13.5);
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI,
+                RateEntry.COLUMN_RATE_DATE + " = ?", new String[]{Long.toString(today)});
+        assertLatestRate(today - MILLIS_IN_A_DAY, 13.5);
+    }
+
+    public void testCustomQueriesBypassCache() {
+        long today = ForexContract.normalizeDate(System.currentTimeMillis());
+        syncRates(today, 14.25);
+
+        Cursor cursor = mContext.getContentResolver().query(mLatestUri,
+                RateEntry.HISTORY_COLUMNS, null, null, RateEntry.COLUMN_RATE_VALUE + " DESC");
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+        assertEquals(0, LatestRateCache.getHitCount());
+        assertEquals(0, LatestRateCache.getMissCount());
+    }
+
+    private void syncRates(long date, double value) {
+        ContentValues rate = new ContentValues();
+        rate.put(RateEntry.COLUMN_RATE_FROM_KEY, TestUtilities.TEST_CURRENCY_FROM);
+        rate.put(RateEntry.COLUMN_RATE_TO_KEY, TestUtilities.TEST_CURRENCY_TO);
+        rate.put(RateEntry.COLUMN_RATE_DATE, date);
+        rate.put(RateEntry.COLUMN_RATE_VALUE, value);
+        assertEquals(1, mContext.getContentResolver().bulkInsert(RateEntry.CONTENT_URI,
+                new ContentValues[]{rate}));
+    }
+
+    /*
+        Compares the rows served by the provider with the ones read straight from the database.
+     */
+    private void assertLatestRate(long date, double value) {
+        Cursor cached = mContext.getContentResolver().query(mLatestUri,
+                ForexContract.LATEST_RATE_COLUMNS, null, null, null);
+
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(RateEntry.TABLE_NAME + " INNER JOIN " + CurrencyEntry.TABLE_NAME + " AS " +
+                RateEntry.JOIN_RATE_TO_ALIAS + " ON " + RateEntry.TABLE_NAME + "." +
+                RateEntry.COLUMN_RATE_TO_KEY + " = " + RateEntry.JOIN_RATE_TO_ALIAS + "." +
+                CurrencyEntry.COLUMN_CURRENCY_ID);
+        Cursor stored = builder.query(dbHelper.getReadableDatabase(),
+                ForexContract.LATEST_RATE_COLUMNS,
+                RateEntry.COLUMN_RATE_FROM_KEY + " = ? AND " + RateEntry.COLUMN_RATE_DATE + " = ?",
+                new String[]{TestUtilities.TEST_CURRENCY_FROM, Long.toString(date)},
+                null, null, null);
+
+        assertEquals("Error: The latest rates don't match the database",
+                stored.getCount(), cached.getCount());
+        assertEquals(1, cached.getCount());
+        assertTrue(cached.moveToFirst());
+        assertTrue(stored.moveToFirst());
+        assertEquals(value, cached.getDouble(cached.getColumnIndex(RateEntry.COLUMN_RATE_VALUE)), 0);
+        for (int i = 0; i < stored.getColumnCount(); i++) {
+            assertEquals("Error: Column " + stored.getColumnName(i) + " doesn't match the database",
+                    stored.getString(i), cached.getString(i));
+        }
+
+        cached.close();
+        stored.close();
+        dbHelper.close();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(CurrencyEntry.CONTENT_URI, null, null);
+    }
+}
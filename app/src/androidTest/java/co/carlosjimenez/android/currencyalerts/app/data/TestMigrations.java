@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TestMigrations extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestMigrations.class.getSimpleName();
+
+    public void setUp() {
+        mContext.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+    }
+
+    // Every version after the first one needs exactly one step, in order.
+    public void testStepsAreOrderedAndComplete() {
+        int version = 1;
+        for (MigrationStep step : ForexDbHelper.MIGRATIONS) {
+            assertEquals("Error: Migration steps are not contiguous", version + 1, step.getVersion());
+            version = step.getVersion();
+        }
+        assertEquals("Error: The last migration step doesn't reach DATABASE_VERSION",
+                ForexDbHelper.DATABASE_VERSION, version);
+    }
+
+    // Each step is run on its own on top of the previous version and must keep the stored data.
+    public void testEachStepKeepsData() {
+        TestUtilities.createVersion1Database(mContext);
+        SQLiteDatabase db = mContext.openOrCreateDatabase(ForexDbHelper.DATABASE_NAME, 0, null);
+
+        for (MigrationStep step : ForexDbHelper.MIGRATIONS) {
+            ForexDbHelper.migrate(db, step.getVersion() - 1, step.getVersion(), ForexDbHelper.MIGRATIONS);
+
+            assertEquals("Error: Step to version " + step.getVersion() + " lost the currencies",
+                    2, DatabaseUtils.queryNumEntries(db, ForexContract.CurrencyEntry.TABLE_NAME));
+
+            Cursor rateCursor = db.query(ForexContract.RateEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertTrue("Error: Step to version " + step.getVersion() + " lost the rates",
+                    rateCursor.moveToFirst());
+            TestUtilities.validateCurrentRecord("Error: Rate failed to validate after step to version " +
+                    step.getVersion(), rateCursor, TestUtilities.createRateValues());
+            rateCursor.close();
+        }
+
+        db.close();
+    }
+
+    // A step that fails must leave the database as it was before the migration started.
+    public void testFailingStepRollsBack() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE migration_test (value INTEGER)");
+
+        List<MigrationStep> steps = Arrays.<MigrationStep>asList(
+                new MigrationStep(2, "Insert a row") {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        db.execSQL("INSERT INTO migration_test VALUES (1)");
+                    }
+                },
+                new MigrationStep(3, "Fail") {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        throw new RuntimeException("Step failed");
+                    }
+                });
+
+        try {
+            ForexDbHelper.migrate(db, 1, 3, steps);
+            fail("Error: The failing step should have aborted the migration");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        assertEquals("Error: The first step was not rolled back",
+                0, DatabaseUtils.queryNumEntries(db, "migration_test"));
+        db.close();
+    }
+
+    public void testMissingStepFails() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+
+        List<MigrationStep> steps = Arrays.<MigrationStep>asList(
+                new MigrationStep(3, "Skips version 2") {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                    }
+                });
+
+        try {
+            ForexDbHelper.migrate(db, 1, 3, steps);
+            fail("Error: A missing step should abort the migration");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        db.close();
+    }
+}
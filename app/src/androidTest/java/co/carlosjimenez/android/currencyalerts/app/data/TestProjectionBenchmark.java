@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+
+/*
+    Compares the full double join projection with the slim views used by the list screens.  The
+    CursorWindow size is estimated from the content of the rows, the query time includes filling
+    the window, as getCount() does on the UI side.
+ */
+public class TestProjectionBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestProjectionBenchmark.class.getSimpleName();
+
+    private static final int CURRENCY_COUNT = 30;
+    private static final int DAYS = 40;
+    private static final int ITERATIONS = 50;
+    private static final long MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
+
+    // Each field of a CursorWindow row takes a slot, strings also store a terminating null
+    private static final int FIELD_SLOT_BYTES = 16;
+
+    private long mLastDate;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+
+        ContentValues[] currencies = new ContentValues[CURRENCY_COUNT + 1];
+        currencies[0] = TestUtilities.createCurrencyFromValues();
+        for (int i = 1; i <= CURRENCY_COUNT; i++) {
+            currencies[i] = new ContentValues();
+            currencies[i].put(CurrencyEntry.COLUMN_CURRENCY_ID, currencyId(i));
+            currencies[i].put(CurrencyEntry.COLUMN_CURRENCY_NAME, "Test currency number " + i);
+            currencies[i].put(CurrencyEntry.COLUMN_CURRENCY_SYMBOL, "T" + i);
+            currencies[i].put(CurrencyEntry.COLUMN_COUNTRY_CODE, "T" + i);
+            currencies[i].put(CurrencyEntry.COLUMN_COUNTRY_NAME, "Test country number " + i);
+            currencies[i].put(CurrencyEntry.COLUMN_COUNTRY_FLAG_URL,
+                    "https://www.geoips.com//assets/img/flag/128h/t" + i + ".png");
+        }
+        for (ContentValues currency : currencies) {
+            mContext.getContentResolver().insert(CurrencyEntry.CONTENT_URI, currency);
+        }
+
+        mLastDate = ForexContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] rates = new ContentValues[CURRENCY_COUNT * DAYS];
+        int r = 0;
+        for (int day = 0; day < DAYS; day++) {
+            for (int i = 1; i <= CURRENCY_COUNT; i++) {
+                rates[r] = new ContentValues();
+                rates[r].put(RateEntry.COLUMN_RATE_FROM_KEY, TestUtilities.TEST_CURRENCY_FROM);
+                rates[r].put(RateEntry.COLUMN_RATE_TO_KEY, currencyId(i));
+                rates[r].put(RateEntry.COLUMN_RATE_DATE, mLastDate - day * MILLIS_IN_A_DAY);
+                rates[r].put(RateEntry.COLUMN_RATE_VALUE, i + day / 100.0);
+                r++;
+            }
+        }
+        mContext.getContentResolver().bulkInsert(RateEntry.CONTENT_URI, rates);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    public void testLatestRatesProjection() {
+        Result full = measure(RateEntry.buildStartCurrencyWithDate(TestUtilities.TEST_CURRENCY_FROM, mLastDate),
+                ForexContract.RATE_CURRENCY_COLUMNS);
+        Result slim = measure(RateEntry.buildLatestRates(TestUtilities.TEST_CURRENCY_FROM),
+                ForexContract.LATEST_RATE_COLUMNS);
+
+        log("Latest rates", full, slim);
+        assertEquals("Error: Both paths must return the same rates", full.rows, slim.rows);
+        assertEquals(CURRENCY_COUNT, slim.rows);
+        assertTrue("Error: The slim projection is not smaller", slim.windowBytes < full.windowBytes);
+    }
+
+    public void testHistoryProjection() {
+        String[] pair = {TestUtilities.TEST_CURRENCY_FROM, currencyId(1)};
+        Result full = measure(RateEntry.buildCurrencyRate(pair), ForexContract.RATE_CURRENCY_COLUMNS);
+        Result slim = measure(RateEntry.buildRateHistory(pair), RateEntry.HISTORY_COLUMNS);
+
+        log("Pair history", full, slim);
+        assertEquals("Error: Both paths must return the same rates", full.rows, slim.rows);
+        assertEquals(DAYS, slim.rows);
+        assertTrue("Error: The slim projection is not smaller", slim.windowBytes < full.windowBytes);
+    }
+
+    private Result measure(Uri uri, String[] projection) {
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Cursor cursor = mContext.getContentResolver().query(uri, projection, null, null, null);
+            result.rows = cursor.getCount();
+            cursor.close();
+        }
+        result.micros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        Cursor cursor = mContext.getContentResolver().query(uri, projection, null, null, null);
+        while (cursor.moveToNext()) {
+            for (int c = 0; c < cursor.getColumnCount(); c++) {
+                result.windowBytes += FIELD_SLOT_BYTES;
+                if (cursor.getType(c) == Cursor.FIELD_TYPE_STRING) {
+                    result.windowBytes += cursor.getString(c).getBytes().length + 1;
+                }
+            }
+        }
+        cursor.close();
+        return result;
+    }
+
+    private void log(String name, Result full, Result slim) {
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "%s: full join %d rows, %d bytes, %d us; slim %d rows, %d bytes, %d us",
+                name, full.rows, full.windowBytes, full.micros, slim.rows, slim.windowBytes, slim.micros));
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(CurrencyEntry.CONTENT_URI, null, null);
+    }
+
+    private static String currencyId(int i) {
+        return String.format(Locale.US, "C%02d", i);
+    }
+
+    private static class Result {
+        int rows;
+        long windowBytes;
+        long micros;
+    }
+}
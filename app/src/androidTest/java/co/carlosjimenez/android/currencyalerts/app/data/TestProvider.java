@@ -25,17 +25,23 @@
 package co.carlosjimenez.android.currencyalerts.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.RemoteException;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import java.util.ArrayList;
+
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
 
@@ -88,6 +94,11 @@ public class TestProvider extends AndroidTestCase {
                 null,
                 null
         );
+        mContext.getContentResolver().delete(
+                ForexContract.AlertEntry.CONTENT_URI,
+                null,
+                null
+        );
 
         Cursor cursor = mContext.getContentResolver().query(
                 RateEntry.CONTENT_URI,
@@ -108,6 +119,16 @@ public class TestProvider extends AndroidTestCase {
         );
         assertEquals("Error: Records not deleted from Currency table during delete", 0, cursor.getCount());
         cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                ForexContract.AlertEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null
+        );
+        assertEquals("Error: Records not deleted from Alert table during delete", 0, cursor.getCount());
+        cursor.close();
     }
 
     /*
@@ -540,4 +561,192 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // The delta sync may end up with nothing to write, in that case the observers must not be
+    // woken up for no reason.
+    public void testEmptyBulkInsertDoesNotNotify() {
+        TestUtilities.TestContentObserver rateObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(RateEntry.CONTENT_URI, true, rateObserver);
+
+        int insertCount = mContext.getContentResolver().bulkInsert(RateEntry.CONTENT_URI, new ContentValues[0]);
+        assertEquals(0, insertCount);
+
+        // Give the observer thread a chance to receive a notification
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mContext.getContentResolver().unregisterContentObserver(rateObserver);
+        rateObserver.mHT.quit();
+
+        assertFalse("Error: An empty bulkInsert shouldn't notify the rate observers",
+                rateObserver.mContentChanged);
+    }
+
+    // The statistics are kept up to date by bulkInsert and delete, and match the values computed
+    // from the rate history.
+    public void testBulkInsertCurrencies() {
+        // An existing currency is replaced by the values of the bulk insert
+        mContext.getContentResolver().insert(CurrencyEntry.CONTENT_URI,
+                TestUtilities.createCurrencyFromValues());
+
+        ContentValues usdValues = TestUtilities.createCurrencyFromValues();
+        usdValues.put(CurrencyEntry.COLUMN_CURRENCY_NAME, "US Dollar");
+        ContentValues zarValues = TestUtilities.createCurrencyToValues();
+
+        TestUtilities.TestContentObserver currencyObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(CurrencyEntry.CONTENT_URI, true, currencyObserver);
+
+        int insertCount = mContext.getContentResolver().bulkInsert(CurrencyEntry.CONTENT_URI,
+                new ContentValues[]{usdValues, zarValues});
+
+        currencyObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(currencyObserver);
+        assertEquals(2, insertCount);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                CurrencyEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                CurrencyEntry.COLUMN_CURRENCY_ID + " ASC"
+        );
+        assertEquals("Error: The existing currency was duplicated", 2, cursor.getCount());
+        cursor.moveToFirst();
+        TestUtilities.validateCurrentRecord("testBulkInsertCurrencies. Error validating USD",
+                cursor, usdValues);
+        cursor.moveToNext();
+        TestUtilities.validateCurrentRecord("testBulkInsertCurrencies. Error validating ZAR",
+                cursor, zarValues);
+        cursor.close();
+    }
+
+    public void testRateStats() {
+        final int days = 35;
+        long millisecondsInADay = 1000 * 60 * 60 * 24;
+        long date = ForexContract.normalizeDate(System.currentTimeMillis()) - (days - 1) * millisecondsInADay;
+
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++, date += millisecondsInADay) {
+            values[i] = new ContentValues();
+            values[i].put(RateEntry.COLUMN_RATE_FROM_KEY, TestUtilities.TEST_CURRENCY_FROM);
+            values[i].put(RateEntry.COLUMN_RATE_TO_KEY, TestUtilities.TEST_CURRENCY_TO);
+            values[i].put(RateEntry.COLUMN_RATE_DATE, date);
+            values[i].put(RateEntry.COLUMN_RATE_VALUE, 10.0 + i);
+        }
+
+        TestUtilities.TestContentObserver statsObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(ForexContract.StatsEntry.CONTENT_URI, true, statsObserver);
+
+        assertEquals(days, mContext.getContentResolver().bulkInsert(RateEntry.CONTENT_URI, values));
+
+        statsObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(statsObserver);
+
+        // Precomputed window, the last 30 rates are 15..44
+        assertStats(30, 30, 15.0, 44.0, (15.0 + 44.0) / 2);
+        // Window longer than the history, computed on demand
+        assertStats(60, days, 10.0, 44.0, (10.0 + 44.0) / 2);
+        // Window computed on demand, the last 3 rates are 42..44
+        assertStats(3, 3, 42.0, 44.0, 43.0);
+
+        // The retention delete moves the start of the windows
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI,
+                RateEntry.COLUMN_RATE_VALUE + " < ?", new String[]{"20"});
+        assertStats(30, days - 10, 20.0, 44.0, (20.0 + 44.0) / 2);
+        assertStats(60, days - 10, 20.0, 44.0, (20.0 + 44.0) / 2);
+
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        Cursor cursor = mContext.getContentResolver().query(
+                ForexContract.StatsEntry.buildStatsUri(TestUtilities.TEST_CURRENCIES, 30),
+                null, null, null, null);
+        assertEquals("Error: Statistics left behind for a pair without rates", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testAlerts() {
+        ContentValues usdZar = TestUtilities.createAlertValues("USD", "ZAR", 30, 5f);
+        ContentValues usdEur = TestUtilities.createAlertValues("USD", "EUR", 7, 2.5f);
+
+        TestUtilities.TestContentObserver alertObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(ForexContract.AlertEntry.CONTENT_URI, true, alertObserver);
+
+        Uri usdZarUri = mContext.getContentResolver().insert(ForexContract.AlertEntry.CONTENT_URI, usdZar);
+        alertObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(alertObserver);
+
+        Uri usdEurUri = mContext.getContentResolver().insert(ForexContract.AlertEntry.CONTENT_URI, usdEur);
+        assertTrue(ContentUris.parseId(usdZarUri) > 0);
+        assertTrue(ContentUris.parseId(usdEurUri) > 0);
+
+        // An alert is looked up by pair
+        Cursor cursor = mContext.getContentResolver().query(
+                ForexContract.AlertEntry.buildPairAlertUri(TestUtilities.TEST_CURRENCIES),
+                null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        TestUtilities.validateCursor("testAlerts. Error validating the USD/ZAR alert", cursor, usdZar);
+
+        // Saving the alert of a pair replaces the previous one
+        ContentValues newUsdZar = TestUtilities.createAlertValues("USD", "ZAR", 7, 10f);
+        mContext.getContentResolver().insert(ForexContract.AlertEntry.CONTENT_URI, newUsdZar);
+        cursor = mContext.getContentResolver().query(ForexContract.AlertEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: The alert of the pair wasn't replaced", 2, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(
+                ForexContract.AlertEntry.buildPairAlertUri(TestUtilities.TEST_CURRENCIES),
+                null, null, null, null);
+        TestUtilities.validateCursor("testAlerts. Error validating the replaced alert", cursor, newUsdZar);
+
+        // The statistics of several alerts are written with one batch and one notification
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(usdEurUri)
+                .withValue(ForexContract.AlertEntry.COLUMN_ALERT_AVERAGE, 0.9)
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ForexContract.AlertEntry.buildPairAlertUri(TestUtilities.TEST_CURRENCIES))
+                .withValue(ForexContract.AlertEntry.COLUMN_ALERT_AVERAGE, 14.5)
+                .build());
+
+        alertObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(ForexContract.AlertEntry.CONTENT_URI, true, alertObserver);
+        try {
+            ContentProviderResult[] results =
+                    mContext.getContentResolver().applyBatch(ForexContract.CONTENT_AUTHORITY, operations);
+            assertEquals(1, results[0].count.intValue());
+            assertEquals(1, results[1].count.intValue());
+        } catch (RemoteException | OperationApplicationException e) {
+            fail("Error applying the alert batch: " + e.getMessage());
+        }
+        alertObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(alertObserver);
+
+        cursor = mContext.getContentResolver().query(usdEurUri,
+                new String[]{ForexContract.AlertEntry.COLUMN_ALERT_AVERAGE}, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(0.9, cursor.getDouble(0), 1e-9);
+        cursor.close();
+
+        assertEquals(1, mContext.getContentResolver().delete(usdEurUri, null, null));
+        cursor = mContext.getContentResolver().query(ForexContract.AlertEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    private void assertStats(int window, int count, double min, double max, double average) {
+        Cursor cursor = mContext.getContentResolver().query(
+                ForexContract.StatsEntry.buildStatsUri(TestUtilities.TEST_CURRENCIES, window),
+                ForexContract.StatsEntry.STATS_COLUMNS, null, null, null);
+
+        assertTrue("Error: No statistics for window " + window, cursor.moveToFirst());
+        assertEquals(1, cursor.getCount());
+        assertEquals(window, cursor.getInt(cursor.getColumnIndex(ForexContract.StatsEntry.COLUMN_STATS_WINDOW)));
+        assertEquals(count, cursor.getInt(cursor.getColumnIndex(ForexContract.StatsEntry.COLUMN_STATS_COUNT)));
+        assertEquals(min, cursor.getDouble(cursor.getColumnIndex(ForexContract.StatsEntry.COLUMN_STATS_MIN)), 1e-9);
+        assertEquals(max, cursor.getDouble(cursor.getColumnIndex(ForexContract.StatsEntry.COLUMN_STATS_MAX)), 1e-9);
+        assertEquals(average, cursor.getDouble(cursor.getColumnIndex(ForexContract.StatsEntry.COLUMN_STATS_AVERAGE)), 1e-9);
+        cursor.close();
+    }
 }
@@ -47,6 +47,15 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_RATE_WITH_CURRENCY_AND_DATE_DIR = ForexContract.RateEntry.buildCurrencyRateWithDate(TEST_CURRENCIES, TEST_DATE);
     // content://co.carlosjimenez.android.currencyalerts.app/currency"
     private static final Uri TEST_CURRENCY_DIR = ForexContract.CurrencyEntry.CONTENT_URI;
+    private static final Uri TEST_LATEST_RATES = ForexContract.RateEntry.buildLatestRates(TEST_CURRENCY_FROM);
+    private static final Uri TEST_LATEST_PAIR_RATE = ForexContract.RateEntry.buildLatestPairRate(TEST_CURRENCIES);
+    private static final Uri TEST_RATE_HISTORY = ForexContract.RateEntry.buildRateHistory(TEST_CURRENCIES);
+    // content://co.carlosjimenez.android.currencyalerts.app/stats/USD/ZAR/30"
+    private static final Uri TEST_STATS_WITH_CURRENCY_AND_WINDOW = ForexContract.StatsEntry.buildStatsUri(TEST_CURRENCIES, 30);
+    // content://co.carlosjimenez.android.currencyalerts.app/alert"
+    private static final Uri TEST_ALERT_DIR = ForexContract.AlertEntry.CONTENT_URI;
+    private static final Uri TEST_ALERT_WITH_ID = ForexContract.AlertEntry.buildAlertUri(7);
+    private static final Uri TEST_ALERT_WITH_PAIR = ForexContract.AlertEntry.buildPairAlertUri(TEST_CURRENCIES);
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -64,5 +73,19 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_RATE_WITH_CURRENCY_AND_DATE_DIR), ForexProvider.RATE_WITH_CURRENCY_AND_DATE);
         assertEquals("Error: The CURRENCY URI was matched incorrectly.",
                 testMatcher.match(TEST_CURRENCY_DIR), ForexProvider.CURRENCY);
+        assertEquals("Error: The LATEST RATES URI was matched incorrectly.",
+                testMatcher.match(TEST_LATEST_RATES), ForexProvider.RATE_LATEST_WITH_CURRENCY);
+        assertEquals("Error: The LATEST PAIR RATE URI was matched incorrectly.",
+                testMatcher.match(TEST_LATEST_PAIR_RATE), ForexProvider.RATE_LATEST_WITH_PAIR);
+        assertEquals("Error: The RATE HISTORY URI was matched incorrectly.",
+                testMatcher.match(TEST_RATE_HISTORY), ForexProvider.RATE_HISTORY_WITH_PAIR);
+        assertEquals("Error: The STATS WITH CURRENCY AND WINDOW URI was matched incorrectly.",
+                testMatcher.match(TEST_STATS_WITH_CURRENCY_AND_WINDOW), ForexProvider.STATS_WITH_CURRENCY_AND_WINDOW);
+        assertEquals("Error: The ALERT URI was matched incorrectly.",
+                testMatcher.match(TEST_ALERT_DIR), ForexProvider.ALERT);
+        assertEquals("Error: The ALERT WITH ID URI was matched incorrectly.",
+                testMatcher.match(TEST_ALERT_WITH_ID), ForexProvider.ALERT_WITH_ID);
+        assertEquals("Error: The ALERT WITH PAIR URI was matched incorrectly.",
+                testMatcher.match(TEST_ALERT_WITH_PAIR), ForexProvider.ALERT_WITH_PAIR);
     }
 }
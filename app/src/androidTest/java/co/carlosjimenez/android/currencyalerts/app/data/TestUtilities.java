@@ -82,6 +82,17 @@ public class TestUtilities extends AndroidTestCase {
         return rateValues;
     }
 
+    static ContentValues createAlertValues(String currencyFrom, String currencyTo, int period, float fluctuation) {
+        ContentValues alertValues = new ContentValues();
+        alertValues.put(ForexContract.AlertEntry.COLUMN_ALERT_FROM_KEY, currencyFrom);
+        alertValues.put(ForexContract.AlertEntry.COLUMN_ALERT_TO_KEY, currencyTo);
+        alertValues.put(ForexContract.AlertEntry.COLUMN_ALERT_ENABLED, 1);
+        alertValues.put(ForexContract.AlertEntry.COLUMN_ALERT_PERIOD, period);
+        alertValues.put(ForexContract.AlertEntry.COLUMN_ALERT_FLUCTUATION, fluctuation);
+
+        return alertValues;
+    }
+
     /*
         Students: You can uncomment this helper function once you have finished creating the
         LocationEntry part of the ForexContract.
@@ -140,6 +151,31 @@ public class TestUtilities extends AndroidTestCase {
         return locationRowId;
     }
 
+    /*
+        Creates the forex database with the version 1 schema, as it was shipped before any
+        migration step, holding the test rate.  The schema is frozen here on purpose, it must not
+        follow the changes made to ForexDbHelper.
+     */
+    static void createVersion1Database(Context context) {
+        context.deleteDatabase(ForexDbHelper.DATABASE_NAME);
+        SQLiteDatabase db = context.openOrCreateDatabase(ForexDbHelper.DATABASE_NAME, 0, null);
+        db.execSQL("CREATE TABLE currency (_id INTEGER PRIMARY KEY, currency_id TEXT UNIQUE NOT NULL, " +
+                "currency_name TEXT NOT NULL, currency_symbol TEXT NOT NULL, " +
+                "country_code TEXT NOT NULL, country_name TEXT NOT NULL, " +
+                "country_flag_url TEXT NOT NULL);");
+        db.execSQL("CREATE TABLE rate (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "currency_from_id TEXT NOT NULL, currency_to_id TEXT NOT NULL, " +
+                "date INTEGER NOT NULL, value REAL NOT NULL, " +
+                "FOREIGN KEY (currency_from_id) REFERENCES currency (currency_id), " +
+                "FOREIGN KEY (currency_to_id) REFERENCES currency (currency_id), " +
+                "UNIQUE (date, currency_from_id, currency_to_id) ON CONFLICT REPLACE);");
+        assertTrue(db.insert(ForexContract.CurrencyEntry.TABLE_NAME, null, createCurrencyFromValues()) != -1);
+        assertTrue(db.insert(ForexContract.CurrencyEntry.TABLE_NAME, null, createCurrencyToValues()) != -1);
+        assertTrue(db.insert(ForexContract.RateEntry.TABLE_NAME, null, createRateValues()) != -1);
+        db.setVersion(1);
+        db.close();
+    }
+
     static TestContentObserver getTestContentObserver() {
         return TestContentObserver.getTestContentObserver();
     }
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * In-process {@link RateSource} that serves recorded rates without touching the network.
+ *
+ * <p>Every request is answered with a response in the same JSON format the forex API uses,
+ * built from the recorded rates of the requested pairs, and decoded with the same
+ * {@link ForexJsonParser} the HTTP source uses.  Delays and failures can be injected so sync
+ * throughput and latency can be measured on a machine without network access.
+ */
+public class FakeRateSource implements RateSource {
+
+    private final Map<String, Rate> mRecordedRates = new HashMap<>();
+    private final Random mRandom;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    private volatile long mDelayMillis;
+    private volatile float mFailureRate;
+
+    /**
+     * @param recordedResponse A response recorded from the forex API
+     * @param seed             Seed used to decide which requests fail
+     */
+    public FakeRateSource(String recordedResponse, long seed) throws IOException, JSONException {
+        List<Rate> rates = ForexJsonParser.parse(
+                new ByteArrayInputStream(recordedResponse.getBytes("UTF-8")));
+        if (rates == null) {
+            throw new JSONException("The recorded response has no results");
+        }
+
+        for (Rate rate : rates) {
+            mRecordedRates.put(rate.getPair(), rate);
+        }
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Creates a source with generated rates from the base currency to count currencies, named
+     * C0 to C(count - 1).  Useful to load test the sync with thousands of pairs.
+     *
+     * @param baseCurrency Currency the generated rates are converted from
+     * @param count        Number of pairs to generate
+     * @param seed         Seed used for the rate values and to decide which requests fail
+     */
+    public static FakeRateSource withGeneratedRates(String baseCurrency, int count, long seed)
+            throws IOException, JSONException {
+        Random random = new Random(seed);
+        StringBuilder response = new StringBuilder("{\"results\":{");
+
+        for (int i = 0; i < count; i++) {
+            String currencyTo = "C" + i;
+            if (i > 0) {
+                response.append(',');
+            }
+            appendRate(response, new Rate(baseCurrency, currencyTo, 0.01 + random.nextDouble() * 4000));
+        }
+        response.append("}}");
+
+        return new FakeRateSource(response.toString(), seed);
+    }
+
+    /**
+     * @param delayMillis Time every request waits before answering
+     */
+    public void setDelayMillis(long delayMillis) {
+        mDelayMillis = delayMillis;
+    }
+
+    /**
+     * @param failureRate Probability, between 0 and 1, of a request failing with an IOException
+     */
+    public void setFailureRate(float failureRate) {
+        mFailureRate = failureRate;
+    }
+
+    /**
+     * @return the number of requests served so far, including the failed ones
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    @Override
+    public List<Rate> fetchRates(String[] pairs) throws IOException, JSONException {
+        mRequestCount.incrementAndGet();
+
+        if (mDelayMillis > 0) {
+            try {
+                Thread.sleep(mDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Request interrupted");
+            }
+        }
+
+        boolean fail;
+        synchronized (mRandom) {
+            fail = mRandom.nextFloat() < mFailureRate;
+        }
+        if (fail) {
+            throw new IOException("Injected failure for " + pairs.length + " pairs");
+        }
+
+        // Unknown pairs are left out, the same way the API does
+        StringBuilder response = new StringBuilder("{\"query\":{\"count\":")
+                .append(pairs.length)
+                .append("},\"results\":{");
+        boolean first = true;
+        for (String pair : pairs) {
+            Rate rate = mRecordedRates.get(pair);
+            if (rate == null) {
+                continue;
+            }
+            if (!first) {
+                response.append(',');
+            }
+            appendRate(response, rate);
+            first = false;
+        }
+        response.append("}}");
+
+        return ForexJsonParser.parse(new ByteArrayInputStream(response.toString().getBytes("UTF-8")));
+    }
+
+    private static void appendRate(StringBuilder response, Rate rate) {
+        response.append('"').append(rate.getPair()).append("\":{")
+                .append("\"fr\":\"").append(rate.getCurrencyFromId()).append("\",")
+                .append("\"id\":\"").append(rate.getPair()).append("\",")
+                .append("\"to\":\"").append(rate.getCurrencyToId()).append("\",")
+                .append("\"val\":").append(rate.getValue())
+                .append('}');
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import java.util.Arrays;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+public class TestAlertEngine extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestAlertEngine.class.getSimpleName();
+
+    private Time mDayTime;
+    private int mJulianDate;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, null, null);
+
+        mDayTime = new Time();
+        mDayTime.setToNow();
+        mJulianDate = Time.getJulianDay(System.currentTimeMillis(), mDayTime.gmtoff);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, null, null);
+        super.tearDown();
+    }
+
+    public void testEvaluatesTheAlertsOfTheChangedPairs() {
+        insertAlert("USD", "ZAR", 7, 5f, true);
+        insertAlert("USD", "EUR", 7, 50f, true);
+        insertAlert("EUR", "GBP", 7, 1f, true);
+        insertAlert("USD", "CNY", 7, 1f, false);
+
+        // Six days at 10 and today at 12
+        for (int day = 6; day > 0; day--) {
+            insertRate("USD", "ZAR", mJulianDate - day, 10);
+        }
+        insertRate("USD", "ZAR", mJulianDate, 12);
+
+        AlertEngine engine = new AlertEngine(mContext.getContentResolver());
+        assertEquals("Error: Disabled alerts should not be loaded", 3, engine.load());
+        assertTrue(engine.hasRules("USD", "ZAR"));
+        assertFalse(engine.hasRules("USD", "CNY"));
+
+        List<Alert> triggered = engine.evaluate(Arrays.asList(
+                new Rate("USD", "ZAR", 12),
+                new Rate("USD", "EUR", 0.9),
+                new Rate("USD", "CNY", 6.5),
+                new Rate("JPY", "CNY", 0.06)),
+                mDayTime, mJulianDate);
+
+        assertEquals(1, triggered.size());
+        Alert alert = triggered.get(0);
+        assertEquals("ZAR", alert.getCurrencyTo().getId());
+        assertEquals((6 * 10 + 12) / 7d, alert.getRateAverage(), 1e-9);
+        assertEquals(12d, alert.getCurrentRate());
+
+        // Only the alerts of the changed pairs were evaluated
+        assertEquals(2, engine.save());
+    }
+
+    public void testDeletedAlertIsNotSaved() {
+        insertAlert("USD", "ZAR", 7, 5f, true);
+
+        AlertEngine engine = new AlertEngine(mContext.getContentResolver());
+        engine.load();
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, null, null);
+
+        engine.evaluate(Arrays.asList(new Rate("USD", "ZAR", 10)), mDayTime, mJulianDate);
+        assertEquals("Error: An alert deleted after the load was counted as saved", 0, engine.save());
+    }
+
+    public void testSavedStatisticsReplaceTheHistory() {
+        insertAlert("USD", "ZAR", 7, 5f, true);
+        for (int day = 6; day > 0; day--) {
+            insertRate("USD", "ZAR", mJulianDate - day, 10);
+        }
+
+        AlertEngine engine = new AlertEngine(mContext.getContentResolver());
+        engine.load();
+        engine.evaluate(Arrays.asList(new Rate("USD", "ZAR", 10)), mDayTime, mJulianDate);
+        assertEquals(1, engine.save());
+
+        Cursor cursor = mContext.getContentResolver().query(
+                AlertEntry.buildPairAlertUri(new String[]{"USD", "ZAR"}),
+                AlertEntry.ALERT_COLUMNS, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertFalse("Error: The statistics were not saved", cursor.isNull(AlertEngine.COL_ALERT_STATS));
+        assertEquals(10d, cursor.getDouble(AlertEngine.COL_ALERT_AVERAGE), 1e-9);
+        cursor.close();
+
+        // Without the history, a later rate of the day is evaluated against the saved statistics
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+
+        engine = new AlertEngine(mContext.getContentResolver());
+        engine.load();
+        List<Alert> triggered = engine.evaluate(Arrays.asList(new Rate("USD", "ZAR", 17)),
+                mDayTime, mJulianDate);
+
+        assertEquals(1, triggered.size());
+        assertEquals((6 * 10 + 17) / 7d, triggered.get(0).getRateAverage(), 1e-9);
+
+        // The last notification time is saved along with the statistics
+        triggered.get(0).setLastNotified(1234L);
+        assertEquals(1, engine.save());
+
+        engine = new AlertEngine(mContext.getContentResolver());
+        engine.load();
+        triggered = engine.evaluate(Arrays.asList(new Rate("USD", "ZAR", 17)),
+                mDayTime, mJulianDate);
+        assertEquals(1234L, triggered.get(0).getLastNotified());
+    }
+
+    private void insertAlert(String currencyFrom, String currencyTo, int period, float fluctuation,
+                             boolean enabled) {
+        ContentValues values = new ContentValues();
+        values.put(AlertEntry.COLUMN_ALERT_FROM_KEY, currencyFrom);
+        values.put(AlertEntry.COLUMN_ALERT_TO_KEY, currencyTo);
+        values.put(AlertEntry.COLUMN_ALERT_ENABLED, enabled ? 1 : 0);
+        values.put(AlertEntry.COLUMN_ALERT_PERIOD, period);
+        values.put(AlertEntry.COLUMN_ALERT_FLUCTUATION, fluctuation);
+        assertNotNull(mContext.getContentResolver().insert(AlertEntry.CONTENT_URI, values));
+    }
+
+    private void insertRate(String currencyFrom, String currencyTo, int julianDay, double value) {
+        ContentValues values = new ContentValues();
+        values.put(RateEntry.COLUMN_RATE_FROM_KEY, currencyFrom);
+        values.put(RateEntry.COLUMN_RATE_TO_KEY, currencyTo);
+        values.put(RateEntry.COLUMN_RATE_DATE, new Time().setJulianDay(julianDay));
+        values.put(RateEntry.COLUMN_RATE_VALUE, value);
+        assertNotNull(mContext.getContentResolver().insert(ForexContract.RateEntry.CONTENT_URI, values));
+    }
+}
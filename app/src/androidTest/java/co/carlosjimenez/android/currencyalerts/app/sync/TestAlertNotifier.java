@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+
+public class TestAlertNotifier extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestAlertNotifier.class.getSimpleName();
+
+    private static final int ALERT_COUNT = 100;
+    private static final long INTERVAL = DateUtils.HOUR_IN_MILLIS;
+
+    private NotificationManager mNotificationManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mNotificationManager = (NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mNotificationManager.cancel(AlertNotifier.NOTIFICATION_ID);
+        super.tearDown();
+    }
+
+    public void testFilterRateLimited() {
+        long now = 10 * INTERVAL;
+        List<Alert> alerts = new ArrayList<>();
+        alerts.add(createAlert("USD", "EUR", 0));
+        alerts.add(createAlert("USD", "GBP", now - INTERVAL));
+        alerts.add(createAlert("USD", "JPY", now - INTERVAL + 1));
+
+        List<Alert> result = AlertNotifier.filterRateLimited(alerts, now, INTERVAL);
+        assertEquals("Error: Only the pairs outside the interval should be notified", 2, result.size());
+        assertEquals("EUR", result.get(0).getCurrencyTo().getId());
+        assertEquals("GBP", result.get(1).getCurrencyTo().getId());
+    }
+
+    public void testDispatchIsRateLimited() {
+        AlertNotifier notifier = new AlertNotifier(mContext, INTERVAL);
+        List<Alert> alerts = createAlerts(3);
+        long now = System.currentTimeMillis();
+
+        assertEquals(3, notifier.dispatch(alerts, now).size());
+        for (Alert alert : alerts) {
+            assertEquals("Error: The last notification time was not set", now, alert.getLastNotified());
+        }
+
+        assertTrue("Error: The pairs were notified again within the interval",
+                notifier.dispatch(alerts, now + INTERVAL - 1).isEmpty());
+        assertEquals(3, notifier.dispatch(alerts, now + INTERVAL).size());
+    }
+
+    public void testInboxSummary() {
+        AlertNotifier notifier = new AlertNotifier(mContext);
+
+        Notification single = notifier.buildNotification(createAlerts(1));
+        assertEquals(0, single.number);
+
+        Notification inbox = notifier.buildNotification(createAlerts(ALERT_COUNT));
+        assertEquals("Error: The notification should count every alert", ALERT_COUNT, inbox.number);
+    }
+
+    /**
+     * Compares posting one notification per alert, decoding the large icon each time, with the
+     * single summary notification of the notifier.
+     */
+    public void testDispatchBenchmark() {
+        List<Alert> alerts = createAlerts(ALERT_COUNT);
+        AlertNotifier notifier = new AlertNotifier(mContext);
+
+        long start = System.nanoTime();
+        for (Alert alert : alerts) {
+            BitmapFactory.decodeResource(mContext.getResources(), R.mipmap.ic_launcher);
+            Notification notification = notifier.buildNotification(Collections.singletonList(alert));
+            mNotificationManager.notify(AlertNotifier.NOTIFICATION_ID, notification);
+        }
+        long perAlertMicros = (System.nanoTime() - start) / 1000;
+
+        start = System.nanoTime();
+        List<Alert> notified = notifier.dispatch(alerts, System.currentTimeMillis());
+        long batchedMicros = (System.nanoTime() - start) / 1000;
+
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "%d alerts: one notification per alert %d us, summary notification %d us",
+                ALERT_COUNT, perAlertMicros, batchedMicros));
+        assertEquals(ALERT_COUNT, notified.size());
+        assertTrue("Error: The summary notification is not faster", batchedMicros < perAlertMicros);
+    }
+
+    private static List<Alert> createAlerts(int count) {
+        List<Alert> alerts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Alert alert = createAlert("USD", String.format(Locale.US, "C%02d", i), 0);
+            alert.setCurrentRate(10 + (i % 2 == 0 ? 1 : -1));
+            alerts.add(alert);
+        }
+        return alerts;
+    }
+
+    private static Alert createAlert(String from, String to, long lastNotified) {
+        Alert alert = new Alert(true, new Currency(from), new Currency(to), 7, 5f, false);
+        alert.setCurrentRate(11);
+        alert.setRateAverage(10);
+        alert.setLastNotified(lastNotified);
+        return alert;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.app.NotificationManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexDbHelper;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+import co.carlosjimenez.android.currencyalerts.app.utils.PollingCheck;
+
+public class TestAlertPipeline extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestAlertPipeline.class.getSimpleName();
+
+    private static final String[] PAIR = {"USD", "ZAR"};
+
+    private AlertPipeline mPipeline;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, null, null);
+        mPipeline = new AlertPipeline(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPipeline.shutdown();
+        mContext.getContentResolver().delete(RateEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, null, null);
+        ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE))
+                .cancel(AlertNotifier.NOTIFICATION_ID);
+        super.tearDown();
+    }
+
+    public void testSubmittedRatesAreEvaluated() {
+        insertAlert(5f);
+
+        mPipeline.submit(Arrays.asList(new Rate("USD", "ZAR", 12), new Rate("USD", "EUR", 0.9)));
+
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return getSavedAverage() == 12;
+            }
+        }.run();
+    }
+
+    public void testAlertChangesReloadTheRules() {
+        insertAlert(5f);
+        mPipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 12)));
+        assertEquals(12d, getSavedAverage());
+
+        // Saving the alert again replaces it, with new statistics
+        insertAlert(1f);
+        assertEquals(-1d, getSavedAverage());
+
+        // The change is notified in the background, the replaced alert is evaluated once the
+        // rules are loaded again
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                mPipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 10)));
+                return getSavedAverage() == 10;
+            }
+        }.run();
+    }
+
+    public void testAlertEditedDuringAnEvaluationIsReloaded() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AlertPipeline pipeline = new AlertPipeline(mContext, executor);
+        try {
+            insertAlert(5f);
+            assertEquals(1, pipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 12))));
+
+            // Hold the thread of the pipeline so the alert is edited before the evaluation saves
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            pipeline.submit(Arrays.asList(new Rate("USD", "ZAR", 10)));
+
+            ContentValues values = new ContentValues();
+            values.put(AlertEntry.COLUMN_ALERT_ENABLED, 0);
+            assertEquals(1, mContext.getContentResolver().update(AlertEntry.buildPairAlertUri(PAIR),
+                    values, null, null));
+            latch.countDown();
+
+            // Waits for the submitted evaluation
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            new PollingCheck(5000) {
+                @Override
+                protected boolean check() {
+                    return pipeline.isRulesChanged();
+                }
+            }.run();
+            assertEquals("Error: The disabled alert was still evaluated", 0,
+                    pipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 20))));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    public void testSaveWithoutChangesKeepsTheNextAlertChange() {
+        insertAlert(5f);
+        assertEquals(1, mPipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 12))));
+
+        // The alert is deleted behind the rules in memory, the save doesn't write any alert
+        // and no change is notified for it
+        ForexDbHelper dbHelper = new ForexDbHelper(mContext);
+        dbHelper.getWritableDatabase().delete(AlertEntry.TABLE_NAME, null, null);
+        dbHelper.close();
+        assertEquals(0, mPipeline.evaluate(Arrays.asList(new Rate("USD", "ZAR", 10))));
+
+        insertAlert(1f);
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mPipeline.isRulesChanged();
+            }
+        }.run();
+    }
+
+    public void testStoppedPipelineFallsBackToTheService() {
+        insertAlert(5f);
+        mPipeline.shutdown();
+
+        // The rates go to the alert service instead of failing the sync
+        mPipeline.submit(Arrays.asList(new Rate("USD", "ZAR", 12)));
+
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return getSavedAverage() == 12;
+            }
+        }.run();
+    }
+
+    private double getSavedAverage() {
+        Cursor cursor = mContext.getContentResolver().query(AlertEntry.buildPairAlertUri(PAIR),
+                AlertEntry.ALERT_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue("Error: The alert was not found", cursor.moveToFirst());
+            return cursor.getDouble(AlertEngine.COL_ALERT_AVERAGE);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void insertAlert(float fluctuation) {
+        ContentValues values = new ContentValues();
+        values.put(AlertEntry.COLUMN_ALERT_FROM_KEY, PAIR[0]);
+        values.put(AlertEntry.COLUMN_ALERT_TO_KEY, PAIR[1]);
+        values.put(AlertEntry.COLUMN_ALERT_PERIOD, 7);
+        values.put(AlertEntry.COLUMN_ALERT_FLUCTUATION, fluctuation);
+        assertNotNull(mContext.getContentResolver().insert(AlertEntry.CONTENT_URI, values));
+    }
+}
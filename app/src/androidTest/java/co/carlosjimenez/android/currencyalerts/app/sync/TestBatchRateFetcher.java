@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+public class TestBatchRateFetcher extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestBatchRateFetcher.class.getSimpleName();
+
+    static String[] createPairs(int count) {
+        String[] pairs = new String[count];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = "USD_C" + i;
+        }
+        return pairs;
+    }
+
+    public void testMergesAllChunks() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 95, 42);
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 10, 4, 5000, 0);
+
+        List<Rate> rates = fetcher.fetchRates(createPairs(95));
+
+        assertEquals(95, rates.size());
+        assertEquals(10, source.getRequestCount());
+
+        Set<String> pairs = new HashSet<>();
+        for (Rate rate : rates) {
+            pairs.add(rate.getPair());
+        }
+        assertEquals("Error: Some pairs were fetched twice", 95, pairs.size());
+    }
+
+    /*
+        The wall-clock time of the fetch should depend on the slowest chunk, not on the number
+        of chunks.
+     */
+    public void testChunksRunConcurrently() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 100, 42);
+        source.setDelayMillis(500);
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 10, 10, 5000, 0);
+
+        long start = System.nanoTime();
+        List<Rate> rates = fetcher.fetchRates(createPairs(100));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(100, rates.size());
+        Log.d(LOG_TAG, "Fetched 10 chunks of 500 ms in " + elapsedMillis + " ms");
+        assertTrue("Error: The chunks were not fetched concurrently", elapsedMillis < 2500);
+    }
+
+    public void testTimedOutChunkIsRetried() throws Exception {
+        final FakeRateSource fakeSource = FakeRateSource.withGeneratedRates("USD", 20, 42);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // The first attempt hangs, the retry answers right away
+        RateSource source = new RateSource() {
+            @Override
+            public List<Rate> fetchRates(String[] pairs) throws IOException, JSONException {
+                if (attempts.incrementAndGet() == 1) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        throw new IOException("Interrupted");
+                    }
+                }
+                return fakeSource.fetchRates(pairs);
+            }
+        };
+
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 20, 1, 300, 1);
+        List<Rate> rates = fetcher.fetchRates(createPairs(20));
+
+        assertEquals(20, rates.size());
+        assertEquals(2, attempts.get());
+    }
+
+    public void testPartialFailures() throws Exception {
+        final FakeRateSource fakeSource = FakeRateSource.withGeneratedRates("USD", 30, 42);
+
+        // Every chunk containing USD_C0 fails
+        RateSource source = new RateSource() {
+            @Override
+            public List<Rate> fetchRates(String[] pairs) throws IOException, JSONException {
+                if (pairs[0].equals("USD_C0")) {
+                    throw new IOException("Injected failure");
+                }
+                return fakeSource.fetchRates(pairs);
+            }
+        };
+
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 10, 3, 5000, 2);
+        List<Rate> rates = fetcher.fetchRates(createPairs(30));
+
+        assertEquals(20, rates.size());
+    }
+
+    public void testAllChunksFail() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 30, 42);
+        source.setFailureRate(1);
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 10, 3, 5000, 1);
+
+        try {
+            fetcher.fetchRates(createPairs(30));
+            fail("Error: The fetch should fail when every chunk fails");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // 3 chunks, every one of them tried twice
+        assertEquals(6, source.getRequestCount());
+    }
+
+    public void testNoPairs() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 10, 42);
+        BatchRateFetcher fetcher = new BatchRateFetcher(source, 10, 3, 5000, 1);
+
+        assertEquals(0, fetcher.fetchRates(new String[0]).size());
+        assertEquals(0, source.getRequestCount());
+    }
+}
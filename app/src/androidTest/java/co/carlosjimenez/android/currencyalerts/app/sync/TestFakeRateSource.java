@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+public class TestFakeRateSource extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestFakeRateSource.class.getSimpleName();
+
+    public void testServesRecordedResponse() throws Exception {
+        FakeRateSource source = new FakeRateSource(TestForexJsonParser.TEST_RESPONSE, 0);
+
+        List<Rate> rates = source.fetchRates(new String[]{"USD_EUR", "USD_ZAR", "USD_XXX"});
+
+        // Unknown pairs are not returned
+        assertEquals(2, rates.size());
+        assertEquals("USD_EUR", rates.get(0).getPair());
+        assertEquals(0.88519, rates.get(0).getValue());
+        assertEquals("USD_ZAR", rates.get(1).getPair());
+        assertEquals(14.1, rates.get(1).getValue());
+        assertEquals(1, source.getRequestCount());
+    }
+
+    public void testInjectedFailures() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 10, 42);
+        source.setFailureRate(1);
+
+        try {
+            source.fetchRates(new String[]{"USD_C0"});
+            fail("Error: The request should have failed");
+        } catch (IOException e) {
+            // expected
+        }
+
+        source.setFailureRate(0);
+        assertEquals(1, source.fetchRates(new String[]{"USD_C0"}).size());
+        assertEquals(2, source.getRequestCount());
+    }
+
+    public void testInjectedDelay() throws Exception {
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", 10, 42);
+        source.setDelayMillis(200);
+
+        long start = System.nanoTime();
+        source.fetchRates(new String[]{"USD_C0", "USD_C1"});
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Error: The injected delay was not applied", elapsedMillis >= 200);
+    }
+
+    /*
+        Load test of the rate decoding with thousands of pairs, the timings are only logged.
+     */
+    public void testThousandsOfPairs() throws Exception {
+        final int pairCount = 5000;
+        FakeRateSource source = FakeRateSource.withGeneratedRates("USD", pairCount, 42);
+
+        String[] pairs = new String[pairCount];
+        for (int i = 0; i < pairCount; i++) {
+            pairs[i] = "USD_C" + i;
+        }
+
+        long start = System.nanoTime();
+        List<Rate> rates = source.fetchRates(pairs);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(pairCount, rates.size());
+        Log.d(LOG_TAG, "Fetched " + pairCount + " pairs in " + elapsedMillis + " ms");
+    }
+}
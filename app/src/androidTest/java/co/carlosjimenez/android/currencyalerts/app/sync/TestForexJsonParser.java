@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.test.AndroidTestCase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/*
+    Checks that the streaming parser used by the sync adapter decodes exactly the same rates as
+    the JSONObject based parsing it replaced.
+ */
+public class TestForexJsonParser extends AndroidTestCase {
+
+    static final String TEST_RESPONSE = "{\"query\":{\"count\":3},\"results\":{" +
+            "\"USD_ZAR\":{\"fr\":\"USD\",\"id\":\"USD_ZAR\",\"to\":\"ZAR\",\"val\":14.1}," +
+            "\"USD_EUR\":{\"fr\":\"USD\",\"id\":\"USD_EUR\",\"to\":\"EUR\",\"val\":0.88519}," +
+            "\"USD_COP\":{\"id\":\"USD_COP\",\"val\":\"2977.5\",\"to\":\"COP\",\"fr\":\"USD\"}}}";
+
+    static InputStream toStream(String response) throws IOException {
+        return new ByteArrayInputStream(response.getBytes("UTF-8"));
+    }
+
+    /*
+        This is the JSONObject based parsing the sync adapter used before the streaming parser.
+     */
+    static List<Rate> parseWithJsonObject(String response) throws JSONException {
+        JSONObject forexJson = new JSONObject(response);
+        if (!forexJson.has(ForexJsonParser.OWM_RESULT)) {
+            return null;
+        }
+
+        JSONObject forexResultObject = forexJson.getJSONObject(ForexJsonParser.OWM_RESULT);
+        List<Rate> rates = new ArrayList<>();
+
+        Iterator<String> pairs = forexResultObject.keys();
+        while (pairs.hasNext()) {
+            JSONObject currencyObject = forexResultObject.getJSONObject(pairs.next());
+            rates.add(new Rate(currencyObject.getString(ForexJsonParser.OWM_RATE_FROM),
+                    currencyObject.getString(ForexJsonParser.OWM_RATE_TO),
+                    currencyObject.getDouble(ForexJsonParser.OWM_RATE)));
+        }
+        return rates;
+    }
+
+    static void assertSameRates(List<Rate> expected, List<Rate> actual) {
+        assertEquals("Error: Different number of rates decoded", expected.size(), actual.size());
+
+        // JSONObject doesn't keep the order of the keys, so match the rates by pair
+        for (Rate expectedRate : expected) {
+            Rate match = null;
+            for (Rate rate : actual) {
+                if (rate.getPair().equals(expectedRate.getPair())) {
+                    match = rate;
+                    break;
+                }
+            }
+            assertNotNull("Error: Rate " + expectedRate.getPair() + " not decoded", match);
+            assertEquals("Error: Wrong value for " + expectedRate.getPair(),
+                    expectedRate.getValue(), match.getValue());
+        }
+    }
+
+    public void testParseMatchesJsonObject() throws Exception {
+        List<Rate> expected = parseWithJsonObject(TEST_RESPONSE);
+        List<Rate> actual = ForexJsonParser.parse(toStream(TEST_RESPONSE));
+
+        assertNotNull(actual);
+        assertSameRates(expected, actual);
+    }
+
+    public void testParseLargeResponse() throws Exception {
+        StringBuilder response = new StringBuilder("{\"results\":{");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) response.append(',');
+            String to = "C" + i;
+            response.append("\"USD_").append(to).append("\":{\"fr\":\"USD\",\"to\":\"")
+                    .append(to).append("\",\"val\":").append(1 + i * 0.37).append('}');
+        }
+        response.append("}}");
+
+        List<Rate> expected = parseWithJsonObject(response.toString());
+        List<Rate> actual = ForexJsonParser.parse(toStream(response.toString()));
+
+        assertSameRates(expected, actual);
+    }
+
+    public void testParseWithHandler() throws Exception {
+        final List<String> pairs = new ArrayList<>();
+        int count = ForexJsonParser.parse(toStream(TEST_RESPONSE), new ForexJsonParser.RateHandler() {
+            @Override
+            public void onRate(String currencyFromId, String currencyToId, double value) {
+                pairs.add(currencyFromId + "_" + currencyToId);
+            }
+        });
+
+        assertEquals(3, count);
+        assertEquals("USD_ZAR", pairs.get(0));
+        assertEquals("USD_EUR", pairs.get(1));
+        assertEquals("USD_COP", pairs.get(2));
+    }
+
+    public void testParseWithoutResults() throws Exception {
+        String response = "{\"status\":400,\"error\":\"Invalid query\"}";
+
+        assertNull(parseWithJsonObject(response));
+        assertNull(ForexJsonParser.parse(toStream(response)));
+    }
+
+    public void testParseInvalidResponse() throws Exception {
+        try {
+            ForexJsonParser.parse(toStream("{\"results\":{\"USD_ZAR\":{\"fr\":\"USD\"}}}"));
+            fail("Error: An incomplete rate should throw a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+
+        try {
+            ForexJsonParser.parse(toStream("[1, 2, 3]"));
+            fail("Error: A response that is not an object should throw a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+}
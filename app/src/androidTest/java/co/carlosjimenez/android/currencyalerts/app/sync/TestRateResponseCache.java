@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+public class TestRateResponseCache extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestRateResponseCache.class.getSimpleName();
+
+    // Nothing listens on this address, any request that reaches the network fails
+    private static final String UNREACHABLE_URL = "http://127.0.0.1:1/api/v3/convert?";
+
+    private static final long ONE_DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private RateResponseCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new RateResponseCache(new File(mContext.getCacheDir(), "test_rate_responses"));
+        mCache.clear();
+        RateResponseCache.resetStats();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.clear();
+        super.tearDown();
+    }
+
+    public void testStoreAndReadEntry() {
+        String key = RateResponseCache.keyFor("USD_EUR,USD_ZAR");
+        assertNull(mCache.get(key));
+
+        byte[] body = TestForexJsonParser.TEST_RESPONSE.getBytes();
+        mCache.put(key, "\"abc\"", "Mon, 18 Apr 2016 10:00:00 GMT", body, 1000);
+
+        RateResponseCache.Entry entry = mCache.get(key);
+        assertNotNull(entry);
+        assertEquals("\"abc\"", entry.etag);
+        assertEquals("Mon, 18 Apr 2016 10:00:00 GMT", entry.lastModified);
+        assertEquals(1000, entry.fetchedAt);
+        assertEquals(TestForexJsonParser.TEST_RESPONSE, new String(mCache.getBody(key)));
+
+        mCache.touch(key, entry, 2000);
+        assertEquals(2000, mCache.get(key).fetchedAt);
+        assertEquals("\"abc\"", mCache.get(key).etag);
+
+        mCache.remove(key);
+        assertNull(mCache.get(key));
+    }
+
+    public void testKeyDependsOnQuery() {
+        assertEquals(RateResponseCache.keyFor("USD_EUR"), RateResponseCache.keyFor("USD_EUR"));
+        assertFalse(RateResponseCache.keyFor("USD_EUR").equals(RateResponseCache.keyFor("USD_ZAR")));
+    }
+
+    public void testFreshHitSkipsNetwork() throws Exception {
+        String[] pairs = {"USD_ZAR", "USD_EUR"};
+        mCache.put(RateResponseCache.keyFor("USD_EUR,USD_ZAR"), null, null,
+                TestForexJsonParser.TEST_RESPONSE.getBytes(), System.currentTimeMillis());
+
+        HttpRateSource source = new HttpRateSource(UNREACHABLE_URL, mCache);
+        List<Rate> rates = source.fetchRates(pairs);
+
+        // The cached rates are returned even on the day they were fetched, the fetch that stored
+        // them may never have written them.  The delta sync drops the ones already stored.
+        assertNotNull(rates);
+        assertTrue(rates.size() > 0);
+        assertEquals(1, RateResponseCache.getHitCount());
+        assertEquals(0, RateResponseCache.getMissCount());
+    }
+
+    public void testFreshHitFromPreviousDayIsParsed() throws Exception {
+        String[] pairs = {"USD_EUR", "USD_ZAR"};
+        mCache.put(RateResponseCache.keyFor("USD_EUR,USD_ZAR"), null, null,
+                TestForexJsonParser.TEST_RESPONSE.getBytes(),
+                System.currentTimeMillis() - ONE_DAY_MILLIS);
+
+        HttpRateSource source = new HttpRateSource(UNREACHABLE_URL, mCache);
+        source.setMinFreshnessMillis(2 * ONE_DAY_MILLIS);
+        List<Rate> rates = source.fetchRates(pairs);
+
+        // The rows for the new day don't exist yet, so the cached rates are returned
+        assertNotNull(rates);
+        assertTrue(rates.size() > 0);
+        assertEquals(1, RateResponseCache.getHitCount());
+    }
+
+    public void testStaleEntryGoesToNetwork() throws Exception {
+        String[] pairs = {"USD_EUR", "USD_ZAR"};
+        mCache.put(RateResponseCache.keyFor("USD_EUR,USD_ZAR"), "\"abc\"", null,
+                TestForexJsonParser.TEST_RESPONSE.getBytes(),
+                System.currentTimeMillis() - HttpRateSource.DEFAULT_MIN_FRESHNESS_MILLIS - 1);
+
+        HttpRateSource source = new HttpRateSource(UNREACHABLE_URL, mCache);
+        try {
+            source.fetchRates(pairs);
+            fail("Error: A stale entry should be revalidated with the server");
+        } catch (java.io.IOException e) {
+            // expected, the server can't be reached
+        }
+        assertEquals(0, RateResponseCache.getHitCount());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.SettingsSnapshot;
+import co.carlosjimenez.android.currencyalerts.app.Utility;
+
+public class TestSyncStatusWriter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestSyncStatusWriter.class.getSimpleName();
+
+    private static final int ITERATIONS = 50;
+
+    private SharedPreferences mPreferences;
+    private int mForexStatus;
+    private long mForexSyncDate;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mForexStatus = Utility.getForexStatus(mContext);
+        mForexSyncDate = Utility.getForexSyncDateTime(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new SyncStatusWriter(mContext)
+                .setForexStatus(mForexStatus)
+                .setForexSyncDate(mForexSyncDate)
+                .apply();
+        super.tearDown();
+    }
+
+    public void testValuesAreReadRightAfterApply() {
+        SyncStatusWriter statusWriter = new SyncStatusWriter(mContext);
+        assertFalse("Error: Nothing should be written without values", statusWriter.apply());
+
+        statusWriter.setForexStatus(ForexSyncAdapter.FOREX_STATUS_SERVER_DOWN)
+                .setForexSyncDate(1234L);
+        assertTrue(statusWriter.apply());
+
+        assertEquals(ForexSyncAdapter.FOREX_STATUS_SERVER_DOWN,
+                mPreferences.getInt(mContext.getString(R.string.pref_forex_status_key), -1));
+        assertEquals(ForexSyncAdapter.FOREX_STATUS_SERVER_DOWN, Utility.getForexStatus(mContext));
+        assertEquals(1234L, SettingsSnapshot.get(mContext).getForexSyncDateTime());
+    }
+
+    /**
+     * Compares the status writes of a sync as they were done before, one commit per value, with
+     * the single apply of the writer.
+     */
+    public void testTimeSavedPerSync() {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mPreferences.edit().putLong(mContext.getString(R.string.pref_forex_sync_date_key), i).commit();
+            mPreferences.edit().putInt(mContext.getString(R.string.pref_forex_status_key), ForexSyncAdapter.FOREX_STATUS_OK).commit();
+        }
+        long commitMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            new SyncStatusWriter(mContext)
+                    .setForexSyncDate(i)
+                    .setForexStatus(ForexSyncAdapter.FOREX_STATUS_OK)
+                    .apply();
+        }
+        long applyMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "Sync status writes: one commit per value %d us per sync, single apply %d us per sync",
+                commitMicros, applyMicros));
+        assertTrue("Error: The single apply is not faster", applyMicros < commitMicros);
+    }
+}
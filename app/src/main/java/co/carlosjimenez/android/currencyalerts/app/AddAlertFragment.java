@@ -25,12 +25,12 @@
 package co.carlosjimenez.android.currencyalerts.app;
 
 import android.app.Dialog;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.os.AsyncTask;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.v4.app.DialogFragment;
 import android.support.v7.app.AlertDialog;
 import android.view.LayoutInflater;
@@ -44,6 +44,7 @@ import butterknife.ButterKnife;
 import butterknife.OnItemSelected;
 import co.carlosjimenez.android.currencyalerts.app.data.Alert;
 import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
 
 /**
  * Fragment that appears as a dialog and shows the options to set an alert for the
@@ -60,6 +61,16 @@ public class AddAlertFragment extends DialogFragment {
     @BindView(R.id.alarm_fluctuation)
     TextView mTvFluctuation;
 
+    private static final String[] ALERT_COLUMNS = {
+            ForexContract.AlertEntry.COLUMN_ALERT_PERIOD,
+            ForexContract.AlertEntry.COLUMN_ALERT_FLUCTUATION
+    };
+
+    // These indices are tied to ALERT_COLUMNS.  If ALERT_COLUMNS changes, these
+    // must change.
+    static final int COL_ALERT_PERIOD = 0;
+    static final int COL_ALERT_FLUCTUATION = 1;
+
     private String mSelectedPeriod = "";
     private Alert alertValues;
 
@@ -88,15 +99,11 @@ public class AddAlertFragment extends DialogFragment {
         // Apply the adapter to the spinner
         mSpPeriod.setAdapter(adapter);
 
-        alertValues = Utility.getAlertSettings(getContext(), false);
+        alertValues = Utility.getDefaultAlertSettings(getContext());
 
-        if (alertValues.getCurrencyFrom().equals(mCurrencyFrom) &&
-                alertValues.getCurrencyTo().equals(mCurrencyTo)) {
-            setSelectedPeriod(String.valueOf(alertValues.getPeriod()));
-            mTvFluctuation.setText(String.valueOf(alertValues.getFluctuation()));
-        } else {
-            alertValues = Utility.getAlertSettings(getContext(), true);
-            alertValues.clearAverage();
+        // Show the settings of the alert of the pair, if there is one
+        if (mCurrencyFrom != null && mCurrencyTo != null) {
+            new LoadAlertTask(getActivity()).execute(mCurrencyFrom.getId(), mCurrencyTo.getId());
         }
 
         // Inflate and set the layout for the dialog
@@ -152,10 +159,57 @@ public class AddAlertFragment extends DialogFragment {
     }
 
     /**
-     * This class is used to update the alert settings on the shared preferences.
+     * This class is used to load the settings of the alert of the pair from the alerts table.
+     *
+     * @see AsyncTask
+     */
+    public class LoadAlertTask extends AsyncTask<String, Void, Alert> {
+
+        private final Context mContext;
+
+        public LoadAlertTask(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        protected Alert doInBackground(String... params) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    ForexContract.AlertEntry.buildPairAlertUri(params),
+                    ALERT_COLUMNS,
+                    null,
+                    null,
+                    null);
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                Alert alert = new Alert();
+                alert.setPeriod(cursor.getInt(COL_ALERT_PERIOD));
+                alert.setFluctuation(cursor.getFloat(COL_ALERT_FLUCTUATION));
+                return alert;
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Alert alert) {
+            if (alert == null || !isAdded()) {
+                return;
+            }
+            setSelectedPeriod(String.valueOf(alert.getPeriod()));
+            mTvFluctuation.setText(String.valueOf(alert.getFluctuation()));
+        }
+    }
+
+    /**
+     * This class is used to save the alert settings on the alerts table.
      *
-     * <p>Shared preferences should not be updated on the main UI thread as it uses commit to
-     * write to the shared preferences.
+     * <p>The database should not be updated on the main UI thread.
      *
      * @see AsyncTask
      */
@@ -175,26 +229,22 @@ public class AddAlertFragment extends DialogFragment {
     }
 
     /**
-     * Sets the alert settings into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
+     * Saves the alert settings into the alerts table, replacing the alert of the pair.  The
+     * statistics of the rate are built again the next time the alert is evaluated.  This function
+     * should not be called from the UI thread.
      *
-     * @param c     Context to get the PreferenceManager from.
+     * @param c     Context to get the ContentResolver from.
      * @param alert Alert settings to be stored.
      */
     private void setAlertSettings(Context c, Alert alert) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putBoolean(c.getString(R.string.pref_alert_check_enabled_key), alert.isEnabled());
-        spe.putString(c.getString(R.string.pref_alert_check_currency_from_key), alert.getCurrencyFrom().getId());
-        spe.putString(c.getString(R.string.pref_alert_check_currency_to_key), alert.getCurrencyTo().getId());
-        spe.putInt(c.getString(R.string.pref_alert_check_period_key), alert.getPeriod());
-        spe.putFloat(c.getString(R.string.pref_alert_check_fluctuation_key), alert.getFluctuation());
-
-        if (alert.isClearAverage()) {
-            spe.remove(c.getString(R.string.pref_alert_check_rate_average_key));
-        }
-
-        spe.commit();
+        ContentValues values = new ContentValues();
+        values.put(ForexContract.AlertEntry.COLUMN_ALERT_FROM_KEY, alert.getCurrencyFrom().getId());
+        values.put(ForexContract.AlertEntry.COLUMN_ALERT_TO_KEY, alert.getCurrencyTo().getId());
+        values.put(ForexContract.AlertEntry.COLUMN_ALERT_ENABLED, alert.isEnabled() ? 1 : 0);
+        values.put(ForexContract.AlertEntry.COLUMN_ALERT_PERIOD, alert.getPeriod());
+        values.put(ForexContract.AlertEntry.COLUMN_ALERT_FLUCTUATION, alert.getFluctuation());
+
+        c.getContentResolver().insert(ForexContract.AlertEntry.CONTENT_URI, values);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.Context;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats the currency rates like {@link R.string#format_currency_rate}, the symbol, a space and
+ * the rate with two decimals, with a comma between every group of three digits.
+ *
+ * <p>The text is written into a builder owned by the formatter, so formatting a rate doesn't
+ * allocate: the separators and digits of the locale are looked up once, and the digits are
+ * written from the rate rounded to cents.  The few rates the cents can't represent exactly as
+ * String.format would, the ones within rounding error of half a cent, the negative ones and
+ * the ones too big, are formatted with String.format.
+ *
+ * <p>A formatter is not thread safe, each thread needs its own.
+ */
+public final class CurrencyFormatter {
+
+    private static final char SYMBOL_SEPARATOR = ' ';
+    private static final char GROUPING_SEPARATOR = ',';
+    private static final String RATE_FORMAT = "%1.2f";
+
+    // Above this value the cents lose precision, the rate is formatted with String.format
+    private static final double MAX_FAST_RATE = 1e13;
+
+    private final Locale mLocale;
+    private final char mDecimalSeparator;
+    private final char mZeroDigit;
+
+    private final StringBuilder mBuilder = new StringBuilder(32);
+    // Integer digits, grouping separators, decimal separator and decimals of a rate below MAX_FAST_RATE
+    private final char[] mDigits = new char[24];
+
+    public CurrencyFormatter(Context context) {
+        this(context.getResources().getConfiguration().locale);
+    }
+
+    CurrencyFormatter(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        mLocale = locale;
+        mDecimalSeparator = symbols.getDecimalSeparator();
+        mZeroDigit = symbols.getZeroDigit();
+    }
+
+    /**
+     * @param currencySymbol Currency symbol of the currency
+     * @param currencyRate   Currency value to be formatted
+     * @return The formatted rate, only valid until the next call to the formatter
+     */
+    public CharSequence format(String currencySymbol, double currencyRate) {
+        StringBuilder builder = mBuilder;
+        builder.setLength(0);
+        builder.append(currencySymbol).append(SYMBOL_SEPARATOR);
+        if (!appendCents(builder, currencyRate)) {
+            appendFormatted(builder, currencyRate);
+        }
+        return builder;
+    }
+
+    /**
+     * @param currencySymbol Currency symbol of the currency
+     * @param currencyRate   Currency value to be formatted
+     * @return A user-friendly representation of the currency.
+     */
+    public String formatToString(String currencySymbol, double currencyRate) {
+        return format(currencySymbol, currencyRate).toString();
+    }
+
+    /**
+     * Writes the rate rounded to cents.
+     *
+     * @return false if the rate must be formatted with String.format
+     */
+    private boolean appendCents(StringBuilder builder, double rate) {
+        // Negative rates, negative zero, NaN and the infinities
+        if (Double.doubleToRawLongBits(rate) < 0 || !(rate < MAX_FAST_RATE)) {
+            return false;
+        }
+
+        double scaled = rate * 100;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        // String.format rounds half up the decimal value of the rate, which may be on the other
+        // side of the half cent than the scaled value
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            return false;
+        }
+
+        long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+        long integer = cents / 100;
+        int decimals = (int) (cents % 100);
+
+        char[] digits = mDigits;
+        char zero = mZeroDigit;
+        int pos = digits.length;
+        digits[--pos] = (char) (zero + decimals % 10);
+        digits[--pos] = (char) (zero + decimals / 10);
+        digits[--pos] = mDecimalSeparator;
+
+        int group = 0;
+        do {
+            if (group == 3) {
+                digits[--pos] = GROUPING_SEPARATOR;
+                group = 0;
+            }
+            digits[--pos] = (char) (zero + (int) (integer % 10));
+            integer /= 10;
+            group++;
+        } while (integer > 0);
+
+        builder.append(digits, pos, digits.length - pos);
+        return true;
+    }
+
+    /**
+     * Writes the rate formatted with String.format, with a grouping separator before every three
+     * characters of the integer part, counted from the last one.
+     */
+    private void appendFormatted(StringBuilder builder, double rate) {
+        String formatted = String.format(mLocale, RATE_FORMAT, rate);
+        int lastGroup = formatted.length() - 7;
+        for (int i = 0; i < formatted.length(); i++) {
+            builder.append(formatted.charAt(i));
+            if (i <= lastGroup && (lastGroup - i) % 3 == 0) {
+                builder.append(GROUPING_SEPARATOR);
+            }
+        }
+    }
+}
@@ -24,7 +24,6 @@
 
 package co.carlosjimenez.android.currencyalerts.app;
 
-import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
@@ -34,10 +33,8 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
-import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
-import android.text.format.Time;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -48,15 +45,12 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
 import com.google.firebase.analytics.FirebaseAnalytics;
-import com.google.firebase.crash.FirebaseCrash;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
-import co.carlosjimenez.android.currencyalerts.app.data.Alert;
 import co.carlosjimenez.android.currencyalerts.app.data.Currency;
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
 
@@ -89,7 +83,22 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
     static final int COL_RATE_DATE = 13;
     static final int COL_RATE_VAL = 14;
 
+    private static final String[] STATS_COLUMNS = {
+            ForexContract.StatsEntry.COLUMN_STATS_AVERAGE,
+            ForexContract.StatsEntry.COLUMN_STATS_MIN,
+            ForexContract.StatsEntry.COLUMN_STATS_MAX,
+            ForexContract.StatsEntry.COLUMN_STATS_COUNT
+    };
+
+    // These indices are tied to STATS_COLUMNS.  If STATS_COLUMNS changes, these
+    // must change.
+    static final int COL_STATS_AVERAGE = 0;
+    static final int COL_STATS_MIN = 1;
+    static final int COL_STATS_MAX = 2;
+    static final int COL_STATS_COUNT = 3;
+
     private static final int DETAIL_LOADER = 0;
+    private static final int STATS_LOADER = 1;
     private static final int DEFAULT_DAYS_FOREX_AVERAGE = 30;
 
     @BindView(R.id.detail_period_textview)
@@ -122,6 +131,7 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
 
     private Uri mUri;
     private AppCompatActivity mContext;
+    private CurrencyFormatter mFormatter;
     private FirebaseAnalytics mFirebaseAnalytics;
 
     private static final String FOREX_SHARE_HASHTAG = " #CurrencyRatesApp";
@@ -132,6 +142,14 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
 
     private String mCurrencyFromId;
     private String mCurrencyToId;
+    private String mCurrencyToSymbol;
+
+    // Statistics of the pair, bound once the detail loader has returned the currency symbol
+    private boolean mStatsLoaded;
+    private double mStatsAverage;
+    private double mStatsMin;
+    private double mStatsMax;
+    private int mStatsCount;
 
     public DetailActivityFragment() {
         setHasOptionsMenu(true);
@@ -150,6 +168,7 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
         }
 
         mContext = (AppCompatActivity) getActivity();
+        mFormatter = new CurrencyFormatter(mContext);
         mFirebaseAnalytics = FirebaseAnalytics.getInstance(mContext);
 
         if (mToolbar != null) {
@@ -172,6 +191,7 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+        getLoaderManager().initLoader(STATS_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
 
@@ -223,16 +243,30 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        if (null != mUri && id == STATS_LOADER) {
+            // The statistics are precomputed by the provider, the loader reads a single row
+            String[] currencies = ForexContract.RateEntry.getCurrenciesFromUri(mUri);
+            return new CursorLoader(
+                    getActivity(),
+                    ForexContract.StatsEntry.buildStatsUri(currencies, DEFAULT_DAYS_FOREX_AVERAGE),
+                    STATS_COLUMNS,
+                    null,
+                    null,
+                    null
+            );
+        }
         if (null != mUri) {
             // Now create and return a CursorLoader that will take care of
-            // creating a Cursor for the data being displayed.
+            // creating a Cursor for the data being displayed.  Only the last rate of the pair is
+            // shown, the history is summarized by the stats loader.
+            String[] currencies = ForexContract.RateEntry.getCurrenciesFromUri(mUri);
             return new CursorLoader(
                     getActivity(),
-                    mUri,
+                    ForexContract.RateEntry.buildLatestPairRate(currencies),
                     ForexContract.RATE_CURRENCY_COLUMNS,
                     null,
                     null,
-                    ForexContract.RateEntry.COLUMN_RATE_DATE + " DESC"
+                    null
             );
         }
         return null;
@@ -241,6 +275,11 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
 
+        if (loader.getId() == STATS_LOADER) {
+            onStatsLoadFinished(data);
+            return;
+        }
+
         if (data == null) {
             Log.d(LOG_TAG, "Detail Forex Loader Finished: No data returned");
 
@@ -253,15 +292,6 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
             return;
         }
 
-        long lDate = 0;
-        String sDate = "";
-        String sCurrency = "";
-        int i = 0;
-        double dRateAverage = 0;
-        double dVal = 0;
-        double dMinVal = 0;
-        double dMaxVal = 0;
-
         data.moveToPosition(0);
 
         mCurrencyFromId = data.getString(COL_CURRENCY_FROM_ID);
@@ -276,79 +306,31 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
         String countryToName = data.getString(COL_COUNTRY_TO_NAME);
         double currencyToRate = ForexContract.RateEntry.getRateFromUri(mUri) * data.getDouble(COL_RATE_VAL);
 
-        Glide.with(getActivity())
-                .load(data.getString(COL_COUNTRY_FROM_FLAG))
-                .error(R.drawable.globe)
-                .crossFade()
-                .into(mIvFlagFrom);
+        FlagRepository flagRepository = FlagRepository.getInstance(mContext);
+        flagRepository.load(mCurrencyFromId, data.getString(COL_COUNTRY_FROM_FLAG), FlagRepository.SIZE_LARGE,
+                mIvFlagFrom);
         mIvFlagFrom.setContentDescription(Utility.formatCountryFlagName(mContext, countryFromName));
 
-        Glide.with(getActivity())
-                .load(data.getString(COL_COUNTRY_TO_FLAG))
-                .error(R.drawable.globe)
-                .crossFade()
-                .into(mIvFlagTo);
+        flagRepository.load(mCurrencyToId, data.getString(COL_COUNTRY_TO_FLAG), FlagRepository.SIZE_LARGE,
+                mIvFlagTo);
         mIvFlagFrom.setContentDescription(Utility.formatCountryFlagName(mContext, countryToName));
 
         mTvCurrencyFromDesc.setText(currencyFromName);
         mTvCurrencyFromDesc.setContentDescription(currencyFromName);
 
-        mTvCurrencyFromRate.setText(Utility.formatCurrencyRate(getActivity(), currencyFromSymbol, currencyFromRate));
+        mTvCurrencyFromRate.setText(mFormatter.formatToString(currencyFromSymbol, currencyFromRate));
         mTvCurrencyFromRate.setContentDescription(String.valueOf(currencyFromRate) + " " + currencyFromName);
 
         mTvCurrencyToDesc.setText(currencyToName);
         mTvCurrencyToDesc.setContentDescription(currencyToName);
 
-        mTvCurrencyToRate.setText(Utility.formatCurrencyRate(getActivity(), currencyToSymbol, currencyToRate));
+        mTvCurrencyToRate.setText(mFormatter.formatToString(currencyToSymbol, currencyToRate));
         mTvCurrencyToRate.setContentDescription(String.valueOf(currencyToRate) + " " + currencyToName);
 
-        Time dayTime = new Time();
-        dayTime.setToNow();
-
-        int julianDate = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-        dayTime = new Time();
-        long lMinDate = dayTime.setJulianDay(julianDate - DEFAULT_DAYS_FOREX_AVERAGE);
-
-        sDate = Utility.getDateString(getActivity(), data.getLong(COL_RATE_DATE));
-
-        for (i = 0; i < data.getCount() && i < DEFAULT_DAYS_FOREX_AVERAGE; i++) {
-            data.moveToPosition(i);
-
-            lDate = data.getLong(COL_RATE_DATE);
-            if (lDate < lMinDate) {
-                break;
-            }
-
-            sCurrency = data.getString(COL_CURRENCY_TO_ID);
-            sDate = Utility.getDateString(getActivity(), lDate);
-            dVal = data.getDouble(COL_RATE_VAL);
-            dRateAverage += dVal;
-
-            if (i == 0) {
-                dMinVal = dVal;
-                dMaxVal = dVal;
-            } else {
-                dMinVal = dMinVal < dVal ? dMinVal : dVal;
-                dMaxVal = dMaxVal > dVal ? dMaxVal : dVal;
-            }
-        }
-        dRateAverage = dRateAverage / i;
+        mCurrencyToSymbol = currencyToSymbol;
+        bindRateStats();
 
-        if (data.getCount() > 1)
-            mTvPeriod.setText(data.getCount() + " days");
-        else
-            mTvPeriod.setText(data.getCount() + " day");
-        mTvMaxRate.setContentDescription(mTvPeriod.getText());
-
-        mTvMaxRate.setText(Utility.formatCurrencyRate(getActivity(), data.getString(COL_CURRENCY_TO_SYMBOL), dMaxVal));
-        mTvMaxRate.setContentDescription(mTvMaxRate.getText());
-
-        mTvMinRate.setText(Utility.formatCurrencyRate(getActivity(), data.getString(COL_CURRENCY_TO_SYMBOL), dMinVal));
-        mTvMinRate.setContentDescription(mTvMinRate.getText());
-
-        mTvAverageRate.setText(Utility.formatCurrencyRate(getActivity(), data.getString(COL_CURRENCY_TO_SYMBOL), dRateAverage));
-        mTvAverageRate.setContentDescription(mTvAverageRate.getText());
+        String sDate = Utility.getDateString(getActivity(), data.getLong(COL_RATE_DATE));
 
         // String text to share if user clicks on share menu icon
         mDisplayedRate = String.format("%s - %s %s = %s %s", sDate, currencyFromRate, mCurrencyFromId, currencyToRate, mCurrencyToId);
@@ -370,6 +352,50 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
 
     }
 
+    /**
+     * Keeps the statistics of the pair until the currency symbol needed to format them is known.
+     *
+     * @param data Cursor returned by the stats loader
+     */
+    private void onStatsLoadFinished(Cursor data) {
+        if (data == null || !data.moveToFirst()) {
+            Log.d(LOG_TAG, "Detail Stats Loader Finished: No data returned");
+            return;
+        }
+
+        mStatsAverage = data.getDouble(COL_STATS_AVERAGE);
+        mStatsMin = data.getDouble(COL_STATS_MIN);
+        mStatsMax = data.getDouble(COL_STATS_MAX);
+        mStatsCount = data.getInt(COL_STATS_COUNT);
+        mStatsLoaded = true;
+
+        bindRateStats();
+    }
+
+    /**
+     * Shows the average, min and max rates of the pair once both loaders have finished.
+     */
+    private void bindRateStats() {
+        if (!mStatsLoaded || mCurrencyToSymbol == null) {
+            return;
+        }
+
+        if (mStatsCount > 1)
+            mTvPeriod.setText(mStatsCount + " days");
+        else
+            mTvPeriod.setText(mStatsCount + " day");
+        mTvMaxRate.setContentDescription(mTvPeriod.getText());
+
+        mTvMaxRate.setText(mFormatter.formatToString(mCurrencyToSymbol, mStatsMax));
+        mTvMaxRate.setContentDescription(mTvMaxRate.getText());
+
+        mTvMinRate.setText(mFormatter.formatToString(mCurrencyToSymbol, mStatsMin));
+        mTvMinRate.setContentDescription(mTvMinRate.getText());
+
+        mTvAverageRate.setText(mFormatter.formatToString(mCurrencyToSymbol, mStatsAverage));
+        mTvAverageRate.setContentDescription(mTvAverageRate.getText());
+    }
+
     /**
      * Helper method to load the a Google Ad
      */
@@ -396,37 +422,10 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
     }
 
     /**
-     * Helper method to decide if we open the create alert dialog or we show a notification
-     * that there is an alert enabled and it will be overwritten with this action.
+     * Helper method to open the alert dialog of the pair.  Every pair has its own alert, the
+     * dialog edits the alert of the pair if there is one already.
      */
     public void openAlertDialog() {
-        Alert alert = Utility.getAlertSettings(mContext, false);
-
-        if (alert == null) {
-            return;
-        }
-
-        if (alert.getCurrencyFrom() == null) {
-            FirebaseCrash.report(new Exception("Alert Currency From is NULL"));
-            return;
-        }
-
-        if (alert.getCurrencyTo() == null) {
-            FirebaseCrash.report(new Exception("Alert Currency To is NULL"));
-            return;
-        }
-
-        if (alert.isEnabled() && (!alert.getCurrencyFrom().getId().equals(mCurrencyFromId) || !alert.getCurrencyTo().getId().equals(mCurrencyToId))) {
-            openExistingAlertDialog(alert.getCurrencyFrom().getId(), alert.getCurrencyTo().getId());
-        } else {
-            openCreateAlertDialog();
-        }
-    }
-
-    /**
-     * Helper method to open a create alert dialog
-     */
-    private void openCreateAlertDialog() {
         Bundle arguments = new Bundle();
         arguments.putParcelable(DetailActivityFragment.CURRENCY_FROM, new Currency(mCurrencyFromId));
         arguments.putParcelable(DetailActivityFragment.CURRENCY_TO, new Currency(mCurrencyToId));
@@ -437,39 +436,4 @@ public class DetailActivityFragment extends Fragment implements LoaderManager.Lo
         fragment.show(mContext.getSupportFragmentManager(), null);
     }
 
-    /**
-     * Helper method to open a notification that there is an existing alert
-     *
-     * @param currencyFrom       String containing the currency from id
-     * @param currencyTo         String containing the currency to id
-     */
-    private void openExistingAlertDialog(String currencyFrom, String currencyTo) {
-        AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(
-                mContext);
-
-        // set dialog message
-        alertDialogBuilder
-                .setMessage(getString(R.string.dialog_existing_alert, currencyFrom, currencyTo))
-                .setCancelable(false)
-                .setPositiveButton("Yes", new DialogInterface.OnClickListener() {
-                    public void onClick(DialogInterface dialog, int id) {
-                        dialog.dismiss();
-                        openCreateAlertDialog();
-                    }
-                })
-                .setNegativeButton("No", new DialogInterface.OnClickListener() {
-                    public void onClick(DialogInterface dialog, int id) {
-                        // if this button is clicked, just close
-                        // the dialog box and do nothing
-                        dialog.cancel();
-                    }
-                });
-
-        // create alert dialog
-        AlertDialog alertDialog = alertDialogBuilder.create();
-
-        // show it
-        alertDialog.show();
-    }
-
 }
@@ -0,0 +1,589 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+
+/**
+ * Country flags of the currencies, shared by the list, the detail and the widget.
+ *
+ * <p>The flags are downloaded once and kept on disk by currency id.  They are decoded
+ * downsampled to one of two sizes, the list icon or the detail icon, and the decoded bitmaps are
+ * kept in a single memory LRU bounded in bytes.  The flags of the list are prefetched after the
+ * currencies are loaded, so the widget can take them from memory without waiting.
+ */
+public class FlagRepository {
+
+    private static final String LOG_TAG = FlagRepository.class.getSimpleName();
+
+    public static final int SIZE_SMALL = 0;
+    public static final int SIZE_LARGE = 1;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SIZE_SMALL, SIZE_LARGE})
+    public @interface FlagSize {
+    }
+
+    static final String CACHE_DIR_NAME = "flags";
+
+    private static final String FLAG_EXTENSION = ".img";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 15000;
+    private static final int MAX_REDIRECTS = 5;
+    // HttpURLConnection doesn't return these constants
+    private static final int HTTP_TEMPORARY_REDIRECT = 307;
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
+    private static final int FADE_DURATION_MILLIS = 150;
+
+    // These indices are tied to FLAG_COLUMNS.  If FLAG_COLUMNS changes, these must change.
+    private static final String[] FLAG_COLUMNS = {
+            ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID,
+            ForexContract.CurrencyEntry.COLUMN_COUNTRY_FLAG_URL
+    };
+    private static final int COL_CURRENCY_ID = 0;
+    private static final int COL_COUNTRY_FLAG_URL = 1;
+
+    private static FlagRepository sInstance;
+
+    /**
+     * Receives a flag loaded in the background, on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param flag The flag, or null if it couldn't be loaded
+         */
+        void onFlagLoaded(Bitmap flag);
+    }
+
+    /**
+     * The use of the memory cache and the work done to fill it.
+     */
+    public static final class Stats {
+        public final int memoryBytes;
+        public final int maxMemoryBytes;
+        public final int memoryHits;
+        public final int memoryMisses;
+        public final int diskHits;
+        public final int downloads;
+        public final int decodes;
+
+        Stats(int memoryBytes, int maxMemoryBytes, int memoryHits, int memoryMisses, int diskHits,
+              int downloads, int decodes) {
+            this.memoryBytes = memoryBytes;
+            this.maxMemoryBytes = maxMemoryBytes;
+            this.memoryHits = memoryHits;
+            this.memoryMisses = memoryMisses;
+            this.diskHits = diskHits;
+            this.downloads = downloads;
+            this.decodes = decodes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Flags: memory %d of %d KB, %d hits, %d misses, %d from disk, %d downloads, %d decodes",
+                    memoryBytes / 1024, maxMemoryBytes / 1024, memoryHits, memoryMisses, diskHits,
+                    downloads, decodes);
+        }
+    }
+
+    private final Context mContext;
+    private final File mDirectory;
+    private final int[] mBucketSizes;
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // Flags for the views, separated from the prefetch so a visible flag doesn't wait for it
+    private final ExecutorService mLoadExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService mPrefetchExecutor = Executors.newSingleThreadExecutor();
+    // Flags being loaded by memory key
+    private final ConcurrentHashMap<String, FutureTask<Bitmap>> mLoads = new ConcurrentHashMap<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger mMemoryHits = new AtomicInteger();
+    private final AtomicInteger mMemoryMisses = new AtomicInteger();
+    private final AtomicInteger mDiskHits = new AtomicInteger();
+    private final AtomicInteger mDownloads = new AtomicInteger();
+    private final AtomicInteger mDecodes = new AtomicInteger();
+
+    public static synchronized FlagRepository getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            // A sixteenth of the heap of the app, the flags of every currency take far less
+            int maxMemoryBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, Integer.MAX_VALUE);
+            sInstance = new FlagRepository(appContext,
+                    new File(appContext.getCacheDir(), CACHE_DIR_NAME),
+                    maxMemoryBytes);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param directory      Directory where the flags are stored, created if it doesn't exist.
+     * @param maxMemoryBytes Size of the memory cache in bytes
+     */
+    FlagRepository(Context context, File directory, int maxMemoryBytes) {
+        mContext = context;
+        mDirectory = directory;
+
+        Resources resources = context.getResources();
+        mBucketSizes = new int[]{
+                resources.getDimensionPixelSize(R.dimen.list_icon),
+                resources.getDimensionPixelSize(R.dimen.detail_icon)};
+
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap flag) {
+                return flag.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @return The flag of the currency if it is in memory, or null.  It never blocks.
+     */
+    public Bitmap getCached(String currencyId, @FlagSize int size) {
+        Bitmap flag = mMemoryCache.get(memoryKey(currencyId, size));
+        if (flag != null) {
+            mMemoryHits.incrementAndGet();
+        }
+        return flag;
+    }
+
+    /**
+     * Gets the flag of the currency from memory, from disk or from the network, in that order.
+     *
+     * @param currencyId Currency of the flag
+     * @param url        URL of the flag, used when it is not on disk
+     * @param size       Size of the flag
+     * @return The flag, or null if it couldn't be loaded
+     */
+    @WorkerThread
+    public Bitmap get(final String currencyId, final String url, @FlagSize final int size) {
+        final String key = memoryKey(currencyId, size);
+        Bitmap flag = mMemoryCache.get(key);
+        if (flag != null) {
+            mMemoryHits.incrementAndGet();
+            return flag;
+        }
+        mMemoryMisses.incrementAndGet();
+
+        if (currencyId == null || url == null) {
+            return null;
+        }
+
+        // The list, the detail and the prefetch ask for the same flags at the same time, the
+        // callers of a flag already being loaded wait for that load
+        FutureTask<Bitmap> load = new FutureTask<>(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return loadUncached(currencyId, url, size, key);
+            }
+        });
+        FutureTask<Bitmap> running = mLoads.putIfAbsent(key, load);
+        if (running == null) {
+            running = load;
+            try {
+                load.run();
+            } finally {
+                mLoads.remove(key, load);
+            }
+        }
+
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Error loading the flag of " + currencyId, e.getCause());
+            return null;
+        }
+    }
+
+    /*
+        Loads the flag from disk or from the network, only one thread at a time for each key.
+     */
+    private Bitmap loadUncached(String currencyId, String url, @FlagSize int size, String key) {
+        // Loaded by a call that finished between the lookup of the caller and this one
+        Bitmap flag = mMemoryCache.get(key);
+        if (flag != null) {
+            return flag;
+        }
+
+        File file = flagFile(currencyId, url);
+        if (file.exists()) {
+            mDiskHits.incrementAndGet();
+        } else if (!download(currencyId, url, file)) {
+            return null;
+        }
+
+        flag = decode(file, mBucketSizes[size]);
+        if (flag == null) {
+            // Not an image, it is downloaded again the next time
+            if (!file.delete()) {
+                Log.w(LOG_TAG, "Couldn't delete the flag " + file);
+            }
+            return null;
+        }
+
+        mMemoryCache.put(key, flag);
+        return flag;
+    }
+
+    /**
+     * Loads the flag of the currency in the background, the callback receives it on the main
+     * thread.  A flag in memory is passed right away.
+     */
+    @MainThread
+    public void load(final String currencyId, final String url, @FlagSize final int size,
+                     final Callback callback) {
+        Bitmap flag = getCached(currencyId, size);
+        if (flag != null) {
+            callback.onFlagLoaded(flag);
+            return;
+        }
+
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap flag = get(currencyId, url, size);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onFlagLoaded(flag);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the flag of the currency on the view, right away if it is in memory or when it is
+     * loaded, the globe is shown meanwhile and if the flag can't be loaded.  The view keeps the
+     * last flag requested for it, a view recycled by a list doesn't show the flag of a previous
+     * row.
+     */
+    @MainThread
+    public void load(String currencyId, String url, @FlagSize int size, final ImageView view) {
+        final String key = memoryKey(currencyId, size);
+        view.setTag(key);
+
+        Bitmap flag = getCached(currencyId, size);
+        if (flag != null) {
+            view.setImageBitmap(flag);
+            return;
+        }
+
+        view.setImageResource(R.drawable.globe);
+        load(currencyId, url, size, new Callback() {
+            @Override
+            public void onFlagLoaded(Bitmap flag) {
+                if (!key.equals(view.getTag())) {
+                    return;
+                }
+
+                if (flag == null) {
+                    return;
+                }
+                view.setAlpha(0f);
+                view.setImageBitmap(flag);
+                view.animate().alpha(1f).setDuration(FADE_DURATION_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * Loads the small flags of every currency in the background, so the list and the widget find
+     * them in memory.
+     */
+    public void prefetchAll() {
+        mPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = SystemClock.elapsedRealtime();
+                Cursor cursor = mContext.getContentResolver().query(
+                        ForexContract.CurrencyEntry.CONTENT_URI,
+                        FLAG_COLUMNS,
+                        null,
+                        null,
+                        null);
+                if (cursor == null) {
+                    return;
+                }
+
+                int count = 0;
+                try {
+                    while (cursor.moveToNext()) {
+                        if (get(cursor.getString(COL_CURRENCY_ID), cursor.getString(COL_COUNTRY_FLAG_URL), SIZE_SMALL) != null) {
+                            count++;
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                Log.d(LOG_TAG, "Prefetched flags : " + count + " in " +
+                        (SystemClock.elapsedRealtime() - startTime) + " ms");
+                logStats();
+            }
+        });
+    }
+
+    public Stats getStats() {
+        return new Stats(mMemoryCache.size(),
+                mMemoryCache.maxSize(),
+                mMemoryHits.get(),
+                mMemoryMisses.get(),
+                mDiskHits.get(),
+                mDownloads.get(),
+                mDecodes.get());
+    }
+
+    public void logStats() {
+        Log.d(LOG_TAG, getStats().toString());
+    }
+
+    /**
+     * Empties the memory cache and deletes the flags on disk.
+     */
+    void clear() {
+        mMemoryCache.evictAll();
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(LOG_TAG, "Couldn't delete the flag " + file);
+            }
+        }
+    }
+
+    static String memoryKey(String currencyId, @FlagSize int size) {
+        return currencyId + "@" + size;
+    }
+
+    /*
+        The file of the flag of the currency.  The URL is part of the name, a flag that changes
+        its URL is downloaded again.
+     */
+    File flagFile(String currencyId, String url) {
+        return new File(mDirectory, currencyId + "_" + Integer.toHexString(url.hashCode()) + FLAG_EXTENSION);
+    }
+
+    /*
+        Downloads the flag to its file, through a temporary file so a partial download is never
+        taken for a flag.  The redirects are followed, also from http to https.  The previous
+        flags of the currency are deleted.
+     */
+    private boolean download(String currencyId, String url, File file) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Couldn't create the flag directory " + mDirectory);
+            return false;
+        }
+
+        File tempFile = new File(mDirectory, file.getName() + TEMP_EXTENSION + Thread.currentThread().getId());
+        HttpURLConnection urlConnection = null;
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            URL location = new URL(url);
+            int redirects = 0;
+            while (true) {
+                urlConnection = (HttpURLConnection) location.openConnection();
+                urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                int responseCode = urlConnection.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    break;
+                }
+
+                // HttpURLConnection doesn't follow a redirect to another protocol, http to https
+                String redirect = urlConnection.getHeaderField("Location");
+                if (!isRedirect(responseCode) || redirect == null || ++redirects > MAX_REDIRECTS) {
+                    Log.e(LOG_TAG, "Error downloading the flag of " + currencyId + ": " + responseCode);
+                    return false;
+                }
+                location = new URL(location, redirect);
+                urlConnection.disconnect();
+                urlConnection = null;
+            }
+
+            in = urlConnection.getInputStream();
+            out = new FileOutputStream(tempFile);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            out = null;
+
+            deleteFlags(currencyId, file);
+            if (!tempFile.renameTo(file)) {
+                Log.e(LOG_TAG, "Couldn't store the flag of " + currencyId);
+                return false;
+            }
+            mDownloads.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error downloading the flag of " + currencyId, e);
+            return false;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (tempFile.exists() && !tempFile.delete()) {
+                Log.w(LOG_TAG, "Couldn't delete " + tempFile);
+            }
+        }
+    }
+
+    private static boolean isRedirect(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
+                responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
+                responseCode == HttpURLConnection.HTTP_SEE_OTHER ||
+                responseCode == HTTP_TEMPORARY_REDIRECT ||
+                responseCode == HTTP_PERMANENT_REDIRECT;
+    }
+
+    /*
+        Deletes the flags of the currency stored for other URLs.  The file being replaced is
+        kept, another size of the flag may be decoding it.
+     */
+    private void deleteFlags(String currencyId, File current) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        String prefix = currencyId + "_";
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(FLAG_EXTENSION) && !file.equals(current) &&
+                    !file.delete()) {
+                Log.w(LOG_TAG, "Couldn't delete the flag " + file);
+            }
+        }
+    }
+
+    /*
+        Decodes the flag sampled down to the power of two closest to the size, then scaled so
+        its shorter side is the size, which is what a center crop of a square view shows.
+     */
+    private Bitmap decode(File file, int sizePx) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSizeFor(options.outWidth, options.outHeight, sizePx);
+        Bitmap flag = BitmapFactory.decodeFile(file.getPath(), options);
+        if (flag == null) {
+            return null;
+        }
+        mDecodes.incrementAndGet();
+
+        int shorterSide = Math.min(flag.getWidth(), flag.getHeight());
+        if (shorterSide <= sizePx) {
+            return flag;
+        }
+
+        float scale = (float) sizePx / shorterSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(flag,
+                Math.max(1, Math.round(flag.getWidth() * scale)),
+                Math.max(1, Math.round(flag.getHeight() * scale)),
+                true);
+        if (scaled != flag) {
+            flag.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * @return The largest power of two that keeps the shorter side of the image at least as
+     * large as the size
+     */
+    static int sampleSizeFor(int width, int height, int sizePx) {
+        int shorterSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (sizePx > 0 && shorterSide / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error closing the flag stream", e);
+        }
+    }
+}
@@ -25,7 +25,6 @@
 package co.carlosjimenez.android.currencyalerts.app;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.support.v7.widget.RecyclerView;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
@@ -34,11 +33,11 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
+import java.util.List;
 
 /**
  * {@link ForexAdapter} exposes a list of currency rates
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from the {@link ForexRows} of a {@link ForexRowLoader} to a {@link android.support.v7.widget.RecyclerView}.
  */
 public class ForexAdapter extends RecyclerView.Adapter<ForexAdapter.ForexAdapterViewHolder> {
 
@@ -46,19 +45,42 @@ public class ForexAdapter extends RecyclerView.Adapter<ForexAdapter.ForexAdapter
 
     private static final int VIEW_TYPE_DAY = 0;
 
+    // Payload of the rows where only the rate changed, they keep their flag and names
+    static final Object PAYLOAD_RATE = new Object();
+
     final private Context mContext;
+    final private FlagRepository mFlagRepository;
     final private ForexAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
 
-    private double mMainAmount = 1;
-    private double mMaxRateValue;
-    private String mMaxRateSymbol;
-    private String mMaxRateString;
+    private ForexRows mRows;
+    private float mRateFontSize;
+
+    private final ForexRowsDiff.Callback mDiffCallback = new ForexRowsDiff.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count, boolean rateOnly) {
+            notifyItemRangeChanged(position, count, rateOnly ? PAYLOAD_RATE : null);
+        }
 
-    private Cursor mCursor;
+        @Override
+        public void onReload() {
+            notifyDataSetChanged();
+        }
+    };
 
     public ForexAdapter(Context context, ForexAdapterOnClickHandler dh, View emptyView) {
         mContext = context;
+        mFlagRepository = FlagRepository.getInstance(context);
         mClickHandler = dh;
         mEmptyView = emptyView;
     }
@@ -84,55 +106,50 @@ public class ForexAdapter extends RecyclerView.Adapter<ForexAdapter.ForexAdapter
 
     @Override
     public void onBindViewHolder(ForexAdapterViewHolder forexAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-
-        String currencyId = mCursor.getString(MainActivityFragment.COL_CURRENCY_TO_ID);
-        String currencyName = mCursor.getString(MainActivityFragment.COL_CURRENCY_TO_NAME);
-        String currencySymbol = mCursor.getString(MainActivityFragment.COL_CURRENCY_TO_SYMBOL);
-        String countryFlag = mCursor.getString(MainActivityFragment.COL_COUNTRY_TO_FLAG);
-        String countryName = mCursor.getString(MainActivityFragment.COL_COUNTRY_TO_NAME);
-        double currencyRate = mCursor.getDouble(MainActivityFragment.COL_RATE_VAL);
-
-        Glide.with(mContext)
-                .load(countryFlag)
-                .error(R.drawable.globe)
-                .centerCrop()
-                .crossFade()
-                .into(forexAdapterViewHolder.mIconView);
-        forexAdapterViewHolder.mIconView.setContentDescription(Utility.formatCountryFlagName(mContext, countryName));
+        // The row is already formatted, binding only sets the views
+        ForexRowModel row = mRows.get(position);
+
+        mFlagRepository.load(row.getCurrencyId(), row.getCountryFlag(), FlagRepository.SIZE_SMALL,
+                forexAdapterViewHolder.mIconView);
+        forexAdapterViewHolder.mIconView.setContentDescription(row.getFlagDescription());
 
         // Find TextView and set the name on it
-        forexAdapterViewHolder.mCurrencyNameView.setText(currencyName);
-        forexAdapterViewHolder.mCurrencyNameView.setContentDescription(currencyName);
+        forexAdapterViewHolder.mCurrencyNameView.setText(row.getCurrencyName());
+        forexAdapterViewHolder.mCurrencyNameView.setContentDescription(row.getCurrencyName());
 
-        // Find TextView and set weather forecast on it
-        forexAdapterViewHolder.mCurrencyIdView.setText(currencyId);
-        forexAdapterViewHolder.mCurrencyIdView.setContentDescription(currencyId + " " + currencyName);
+        // Find TextView and set the currency id on it
+        forexAdapterViewHolder.mCurrencyIdView.setText(row.getCurrencyId());
+        forexAdapterViewHolder.mCurrencyIdView.setContentDescription(row.getIdDescription());
 
-        // Read high temperature from cursor
-        currencyRate = mMainAmount * currencyRate;
-        String rateString = Utility.formatCurrencyRate(mContext, currencySymbol, currencyRate);
-        forexAdapterViewHolder.mCurrencyRateView.setText(rateString);
-        forexAdapterViewHolder.mCurrencyRateView.setTextSize(
-                TypedValue.COMPLEX_UNIT_PX,
-                Utility.getRateFontPXSize(mMaxRateString.length()));
-        forexAdapterViewHolder.mCurrencyRateView.setContentDescription(rateString);
+        bindRate(forexAdapterViewHolder, position);
     }
 
-    public void setMaxRateVal(String maxRateSymbol, double maxRateValue) {
-        this.mMaxRateSymbol = maxRateSymbol;
-        this.mMaxRateValue = maxRateValue;
+    @Override
+    public void onBindViewHolder(ForexAdapterViewHolder forexAdapterViewHolder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(forexAdapterViewHolder, position);
+            return;
+        }
 
-        this.mMaxRateString = Utility.formatCurrencyRate(mContext, this.mMaxRateSymbol, mMaxRateValue);
-    }
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_RATE) {
+                onBindViewHolder(forexAdapterViewHolder, position);
+                return;
+            }
+        }
 
-    public void setMainAmount(double mainAmount) {
-        this.mMainAmount = mainAmount;
+        // Only the rate changed, the flag is not loaded again
+        bindRate(forexAdapterViewHolder, position);
+    }
 
-        double calculatedMaxRate = mainAmount * this.mMaxRateValue;
-        this.mMaxRateString = Utility.formatCurrencyRate(mContext, this.mMaxRateSymbol, calculatedMaxRate);
+    private void bindRate(ForexAdapterViewHolder forexAdapterViewHolder, int position) {
+        // The rate is formatted the first time its row is bound
+        String rateString = mRows.getRateString(position);
 
-        notifyDataSetChanged();
+        // Find TextView and set the rate for the main amount on it
+        forexAdapterViewHolder.mCurrencyRateView.setText(rateString);
+        forexAdapterViewHolder.mCurrencyRateView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mRateFontSize);
+        forexAdapterViewHolder.mCurrencyRateView.setContentDescription(rateString);
     }
 
     @Override
@@ -142,20 +159,35 @@ public class ForexAdapter extends RecyclerView.Adapter<ForexAdapter.ForexAdapter
 
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        if (null == mRows) return 0;
+        return mRows.size();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    /**
+     * Shows the new rows.  When they carry the diff from the rows shown, only the rows that
+     * changed are updated, otherwise the whole list is.
+     */
+    public void swapRows(ForexRows newRows) {
+        ForexRows oldRows = mRows;
+        if (newRows != null && newRows == oldRows) {
+            // The loader delivers the same rows again when the list is started
+            return;
+        }
+
+        mRows = newRows;
+        if (mRows != null) {
+            mRateFontSize = Utility.getRateFontPXSize(mRows.getMaxRateLength());
+        }
+
+        ForexRowsDiff diff = newRows == null ? null : newRows.getDiff();
+        if (oldRows != null && diff != null && diff.getFromGeneration() == oldRows.getGeneration()) {
+            diff.dispatchUpdatesTo(mDiffCallback);
+        } else {
+            notifyDataSetChanged();
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
-    public Cursor getCursor() {
-        return mCursor;
-    }
-    
     public interface ForexAdapterOnClickHandler {
         void onClick(String currencyId, String currencyName, ForexAdapterViewHolder vh);
     }
@@ -181,10 +213,11 @@ public class ForexAdapter extends RecyclerView.Adapter<ForexAdapter.ForexAdapter
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            String currencyId = mCursor.getString(MainActivityFragment.COL_CURRENCY_TO_ID);
-            String currencyName = mCursor.getString(MainActivityFragment.COL_CURRENCY_TO_NAME);
-            mClickHandler.onClick(currencyId, currencyName, this);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            ForexRowModel row = mRows.get(adapterPosition);
+            mClickHandler.onClick(row.getCurrencyId(), row.getCurrencyName(), this);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+
+/**
+ * Loads the latest rates of the main currency and turns them into the rows of the list, with
+ * the rates for the amount of the main currency and the length of the longest rate string.
+ *
+ * <p>The rows are read from the cursor once and kept, they are read again when the rates change.
+ * A new amount only multiplies the kept rates in one pass over an array and measures the rate
+ * strings without creating them, the strings are formatted when the rows are bound.
+ *
+ * <p>The new rows carry the {@link ForexRowsDiff} from the rows delivered before, computed on the
+ * thread of the loader too, so the adapter only updates the rows that changed.
+ */
+public class ForexRowLoader extends AsyncTaskLoader<ForexRows> {
+
+    private static final String LOG_TAG = ForexRowLoader.class.getSimpleName();
+
+    // Generations are unique across loaders, rows of a restarted loader never match a diff
+    private static final AtomicLong sGenerations = new AtomicLong();
+
+    /*
+        The rows of the rates, as read from the cursor, and the rate of every row.
+     */
+    private static final class Rates {
+        final ForexRowModel[] rows;
+        final double[] values;
+
+        Rates(int count) {
+            rows = new ForexRowModel[count];
+            values = new double[count];
+        }
+    }
+
+    /*
+        Loads the rates again when they change.
+     */
+    private final class RatesObserver extends ContentObserver {
+        RatesObserver() {
+            super(new Handler());
+        }
+
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            reloadRates();
+        }
+    }
+
+    private final Uri mUri;
+    private final RatesObserver mObserver;
+    private boolean mObserverRegistered;
+
+    private final AtomicInteger mRatesVersion = new AtomicInteger();
+    private volatile double mAmount;
+
+    // Only used by loadInBackground, the loads don't overlap
+    private Rates mRates;
+    private int mRatesLoadedVersion;
+
+    // Set on the main thread, read by loadInBackground to diff the new rows
+    private volatile ForexRows mRows;
+
+    /**
+     * @param uri    Latest rates of the main currency
+     * @param amount Amount of the main currency
+     */
+    public ForexRowLoader(Context context, Uri uri, double amount) {
+        super(context);
+        mUri = uri;
+        mAmount = amount;
+        mObserver = new RatesObserver();
+    }
+
+    /**
+     * Computes the rows again for another amount of the main currency, without reading the rates.
+     */
+    public void setAmount(double amount) {
+        if (amount == mAmount) {
+            return;
+        }
+        mAmount = amount;
+        onContentChanged();
+    }
+
+    /**
+     * Reads the rates again, as when the provider notifies a change.
+     */
+    public void reloadRates() {
+        mRatesVersion.incrementAndGet();
+        onContentChanged();
+    }
+
+    @Override
+    public ForexRows loadInBackground() {
+        int version = mRatesVersion.get();
+        if (mRates == null || version != mRatesLoadedVersion) {
+            mRates = readRates();
+            mRatesLoadedVersion = version;
+        }
+        return convertRows(mRates, mAmount);
+    }
+
+    private Rates readRates() {
+        Context context = getContext();
+        Cursor cursor = context.getContentResolver().query(mUri,
+                ForexContract.LATEST_RATE_COLUMNS,
+                null,
+                null,
+                null);
+        if (cursor == null) {
+            return new Rates(0);
+        }
+
+        try {
+            Rates rates = new Rates(cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                String currencyId = cursor.getString(MainActivityFragment.COL_CURRENCY_TO_ID);
+                String currencyName = cursor.getString(MainActivityFragment.COL_CURRENCY_TO_NAME);
+                double rate = cursor.getDouble(MainActivityFragment.COL_RATE_VAL);
+
+                rates.rows[i] = new ForexRowModel(currencyId,
+                        currencyName,
+                        cursor.getString(MainActivityFragment.COL_CURRENCY_TO_SYMBOL),
+                        cursor.getString(MainActivityFragment.COL_COUNTRY_TO_FLAG),
+                        Utility.formatCountryFlagName(context, cursor.getString(MainActivityFragment.COL_COUNTRY_TO_NAME)),
+                        currencyId + " " + currencyName,
+                        rate);
+                rates.values[i] = rate;
+            }
+            return rates;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private ForexRows convertRows(Rates rates, double amount) {
+        int count = rates.values.length;
+        double[] converted = new double[count];
+        convert(rates.values, amount, converted);
+
+        // Only the length is needed, the formatter measures the rates without creating strings
+        CurrencyFormatter formatter = new CurrencyFormatter(getContext());
+        int maxRateLength = 0;
+        for (int i = 0; i < count; i++) {
+            maxRateLength = Math.max(maxRateLength,
+                    formatter.format(rates.rows[i].getCurrencySymbol(), converted[i]).length());
+        }
+
+        ForexRows previous = mRows;
+        ForexRowsDiff diff = null;
+        if (previous != null) {
+            boolean rateFontChanged = Utility.getRateFontPXSize(previous.getMaxRateLength())
+                    != Utility.getRateFontPXSize(maxRateLength);
+            diff = ForexRowsDiff.calculate(previous.getGeneration(), previous.getRows(), previous.getRates(),
+                    rates.rows, converted, rateFontChanged);
+        }
+
+        return new ForexRows(sGenerations.incrementAndGet(), rates.rows, amount, converted, maxRateLength,
+                formatter, diff);
+    }
+
+    /**
+     * Multiplies every rate by the amount, in a single loop over the arrays.
+     */
+    static void convert(double[] rates, double amount, double[] converted) {
+        for (int i = 0; i < rates.length; i++) {
+            converted[i] = amount * rates[i];
+        }
+    }
+
+    @Override
+    public void deliverResult(ForexRows rows) {
+        if (isReset()) {
+            return;
+        }
+
+        mRows = rows;
+        if (isStarted()) {
+            super.deliverResult(rows);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserverRegistered = true;
+        }
+
+        if (mRows != null) {
+            deliverResult(mRows);
+        }
+        if (takeContentChanged() || mRows == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mRows = null;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+/**
+ * Immutable row of the list of rates, with its texts already formatted.  The rows are built by
+ * {@link ForexRowLoader} off the main thread when it reads the rates, binding a row only sets its
+ * texts on the views.  The rate for the amount of the main currency is kept by {@link ForexRows},
+ * so a new amount reuses the rows.
+ */
+public final class ForexRowModel {
+
+    private final String mCurrencyId;
+    private final String mCurrencyName;
+    private final String mCurrencySymbol;
+    private final String mCountryFlag;
+    private final String mFlagDescription;
+    private final String mIdDescription;
+    private final double mRate;
+
+    ForexRowModel(String currencyId, String currencyName, String currencySymbol, String countryFlag,
+                  String flagDescription, String idDescription, double rate) {
+        mCurrencyId = currencyId;
+        mCurrencyName = currencyName;
+        mCurrencySymbol = currencySymbol;
+        mCountryFlag = countryFlag;
+        mFlagDescription = flagDescription;
+        mIdDescription = idDescription;
+        mRate = rate;
+    }
+
+    public String getCurrencyId() {
+        return mCurrencyId;
+    }
+
+    public String getCurrencyName() {
+        return mCurrencyName;
+    }
+
+    public String getCurrencySymbol() {
+        return mCurrencySymbol;
+    }
+
+    /**
+     * @return The URL of the flag of the country of the currency
+     */
+    public String getCountryFlag() {
+        return mCountryFlag;
+    }
+
+    public String getFlagDescription() {
+        return mFlagDescription;
+    }
+
+    public String getIdDescription() {
+        return mIdDescription;
+    }
+
+    /**
+     * @return The rate of one unit of the main currency
+     */
+    public double getRate() {
+        return mRate;
+    }
+}
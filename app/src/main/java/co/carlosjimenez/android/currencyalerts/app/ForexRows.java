@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+/**
+ * The rows of the list of rates for an amount of the main currency, and the length of the
+ * longest rate string, which sets the font size of every rate in the list.
+ *
+ * <p>The rates for the amount are computed for every row when the rows are built, the rate
+ * strings only when a row is bound, so the rows that are never shown are never formatted.
+ * {@link #getRateString(int)} must be called on the main thread.
+ *
+ * <p>Every set of rows has its own generation, and may carry the diff from the rows of the
+ * previous generation of the same loader.
+ */
+public final class ForexRows {
+
+    private final long mGeneration;
+    private final ForexRowModel[] mRows;
+    private final double mAmount;
+    private final double[] mRates;
+    private final int mMaxRateLength;
+    private final ForexRowsDiff mDiff;
+
+    private final CurrencyFormatter mFormatter;
+    private final String[] mRateStrings;
+
+    /**
+     * @param rows          Rows, shared by the rows of every amount
+     * @param amount        Amount of the main currency
+     * @param rates         Rate of every row for the amount
+     * @param maxRateLength Length of the longest rate string
+     * @param formatter     Formatter of the rate strings, only used on the main thread
+     * @param diff          Diff from the previous rows, or null
+     */
+    ForexRows(long generation, ForexRowModel[] rows, double amount, double[] rates, int maxRateLength,
+              CurrencyFormatter formatter, ForexRowsDiff diff) {
+        mGeneration = generation;
+        mRows = rows;
+        mAmount = amount;
+        mRates = rates;
+        mMaxRateLength = maxRateLength;
+        mFormatter = formatter;
+        mDiff = diff;
+        mRateStrings = new String[rows.length];
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public int size() {
+        return mRows.length;
+    }
+
+    public ForexRowModel get(int position) {
+        return mRows[position];
+    }
+
+    /**
+     * @return The amount of the main currency the rates are computed for
+     */
+    public double getAmount() {
+        return mAmount;
+    }
+
+    /**
+     * @return The rate of the amount of the main currency
+     */
+    public double getRate(int position) {
+        return mRates[position];
+    }
+
+    /**
+     * @return The rate of the amount of the main currency, formatted the first time it is needed
+     */
+    public String getRateString(int position) {
+        String rateString = mRateStrings[position];
+        if (rateString == null) {
+            rateString = mFormatter.formatToString(mRows[position].getCurrencySymbol(), mRates[position]);
+            mRateStrings[position] = rateString;
+        }
+        return rateString;
+    }
+
+    public int getMaxRateLength() {
+        return mMaxRateLength;
+    }
+
+    /**
+     * @return The diff from the previous rows of the loader, or null if there were none
+     */
+    public ForexRowsDiff getDiff() {
+        return mDiff;
+    }
+
+    ForexRowModel[] getRows() {
+        return mRows;
+    }
+
+    double[] getRates() {
+        return mRates;
+    }
+}
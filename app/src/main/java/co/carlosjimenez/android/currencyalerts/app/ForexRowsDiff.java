@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The changes between two {@link ForexRows}, matched by currency id, as the item range
+ * operations that turn the old rows of the list into the new ones.
+ *
+ * <p>The diff is computed by {@link ForexRowLoader} on the thread of the loader, the adapter only
+ * dispatches it.  A row whose rate is the only change is reported as a rate change, so the
+ * adapter can update the rate without binding the rest of the row.  When the currencies
+ * changed their order the diff is a reload of the whole list.
+ */
+public final class ForexRowsDiff {
+
+    /**
+     * Receives the operations of a diff, in order, with the positions of the list as it is after
+     * the previous operations.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        /**
+         * @param rateOnly True if only the rate string of the rows changed
+         */
+        void onChanged(int position, int count, boolean rateOnly);
+
+        void onReload();
+    }
+
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+    private static final int OP_CHANGE_RATE = 3;
+
+    private final long mFromGeneration;
+    private final boolean mReload;
+
+    // The operations as (type, position, count) triples
+    private int[] mOps = new int[3 * 8];
+    private int mOpCount;
+
+    private ForexRowsDiff(long fromGeneration, boolean reload) {
+        mFromGeneration = fromGeneration;
+        mReload = reload;
+    }
+
+    /**
+     * @return The generation of the rows the diff applies to
+     */
+    public long getFromGeneration() {
+        return mFromGeneration;
+    }
+
+    public boolean isReload() {
+        return mReload;
+    }
+
+    /**
+     * @return True if the diff doesn't change the list
+     */
+    public boolean isEmpty() {
+        return !mReload && mOpCount == 0;
+    }
+
+    /**
+     * Computes the changes from the old rows to the new ones.
+     *
+     * @param fromGeneration   Generation of the old rows
+     * @param oldRows          Old rows
+     * @param oldRates         Rate of every old row for its amount
+     * @param newRows          New rows
+     * @param newRates         Rate of every new row for its amount
+     * @param rateFontChanged  True if the rate font size changed, then every rate is rebound
+     */
+    static ForexRowsDiff calculate(long fromGeneration, ForexRowModel[] oldRows, double[] oldRates,
+                                   ForexRowModel[] newRows, double[] newRates, boolean rateFontChanged) {
+
+        Map<String, Integer> oldPositions = new HashMap<>(oldRows.length * 2);
+        for (int i = 0; i < oldRows.length; i++) {
+            oldPositions.put(oldRows[i].getCurrencyId(), i);
+        }
+
+        // The rows that are in both lists must keep their order, moves are a reload
+        boolean[] kept = new boolean[oldRows.length];
+        int lastOldPosition = -1;
+        for (ForexRowModel row : newRows) {
+            Integer oldPosition = oldPositions.get(row.getCurrencyId());
+            if (oldPosition == null) {
+                continue;
+            }
+            if (oldPosition <= lastOldPosition) {
+                return new ForexRowsDiff(fromGeneration, true);
+            }
+            kept[oldPosition] = true;
+            lastOldPosition = oldPosition;
+        }
+
+        ForexRowsDiff diff = new ForexRowsDiff(fromGeneration, false);
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldRows.length || newIndex < newRows.length) {
+            if (oldIndex < oldRows.length && !kept[oldIndex]) {
+                // The position of the removed row is the one of the next new row
+                diff.addOp(OP_REMOVE, newIndex);
+                oldIndex++;
+            } else if (newIndex < newRows.length && !oldPositions.containsKey(newRows[newIndex].getCurrencyId())) {
+                diff.addOp(OP_INSERT, newIndex);
+                newIndex++;
+            } else {
+                ForexRowModel oldRow = oldRows[oldIndex];
+                ForexRowModel newRow = newRows[newIndex];
+                if (!sameContents(oldRow, newRow)) {
+                    diff.addOp(OP_CHANGE, newIndex);
+                } else if (rateFontChanged
+                        || Double.doubleToLongBits(oldRates[oldIndex]) != Double.doubleToLongBits(newRates[newIndex])) {
+                    diff.addOp(OP_CHANGE_RATE, newIndex);
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        return diff;
+    }
+
+    /*
+        Adds an operation on one row, merged with the previous operation when it continues it.
+     */
+    private void addOp(int type, int position) {
+        if (mOpCount > 0) {
+            int last = 3 * (mOpCount - 1);
+            if (mOps[last] == type) {
+                int lastPosition = mOps[last + 1];
+                int lastCount = mOps[last + 2];
+                // Removes happen at the same position, the other operations move forward
+                if ((type == OP_REMOVE && position == lastPosition)
+                        || (type != OP_REMOVE && position == lastPosition + lastCount)) {
+                    mOps[last + 2]++;
+                    return;
+                }
+            }
+        }
+
+        if (3 * (mOpCount + 1) > mOps.length) {
+            int[] ops = new int[mOps.length * 2];
+            System.arraycopy(mOps, 0, ops, 0, mOps.length);
+            mOps = ops;
+        }
+        int next = 3 * mOpCount;
+        mOps[next] = type;
+        mOps[next + 1] = position;
+        mOps[next + 2] = 1;
+        mOpCount++;
+    }
+
+    /**
+     * Dispatches the operations of the diff, in order.
+     */
+    public void dispatchUpdatesTo(Callback callback) {
+        if (mReload) {
+            callback.onReload();
+            return;
+        }
+
+        for (int i = 0; i < mOpCount; i++) {
+            int type = mOps[3 * i];
+            int position = mOps[3 * i + 1];
+            int count = mOps[3 * i + 2];
+            switch (type) {
+                case OP_INSERT:
+                    callback.onInserted(position, count);
+                    break;
+                case OP_REMOVE:
+                    callback.onRemoved(position, count);
+                    break;
+                case OP_CHANGE:
+                    callback.onChanged(position, count, false);
+                    break;
+                case OP_CHANGE_RATE:
+                    callback.onChanged(position, count, true);
+                    break;
+            }
+        }
+    }
+
+    /*
+        True if the rows show the same texts and flag, the rate aside.  The rows are the same
+        instances when only the amount changed.
+     */
+    private static boolean sameContents(ForexRowModel oldRow, ForexRowModel newRow) {
+        return oldRow == newRow
+                || (equals(oldRow.getCurrencyName(), newRow.getCurrencyName())
+                && equals(oldRow.getCurrencySymbol(), newRow.getCurrencySymbol())
+                && equals(oldRow.getCountryFlag(), newRow.getCountryFlag())
+                && equals(oldRow.getFlagDescription(), newRow.getFlagDescription())
+                && equals(oldRow.getIdDescription(), newRow.getIdDescription()));
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
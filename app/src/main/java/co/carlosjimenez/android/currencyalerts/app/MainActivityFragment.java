@@ -30,7 +30,6 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -41,7 +40,6 @@ import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.content.LocalBroadcastManager;
 import android.support.v4.view.MarginLayoutParamsCompat;
@@ -50,6 +48,8 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.KeyEvent;
@@ -66,7 +66,6 @@ import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
 import com.google.firebase.analytics.FirebaseAnalytics;
@@ -79,27 +78,20 @@ import co.carlosjimenez.android.currencyalerts.app.sync.ForexSyncAdapter;
 import co.carlosjimenez.android.currencyalerts.app.sync.LoadCurrencyTask;
 import co.carlosjimenez.android.currencyalerts.app.widget.CurrencyEditText;
 
-public class MainActivityFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivityFragment extends Fragment implements LoaderManager.LoaderCallbacks<ForexRows> {
 
     public static final String LOG_TAG = MainActivityFragment.class.getSimpleName();
 
-    // These indices are tied to FOREX_COLUMNS.  If FOREX_COLUMNS changes, these
-    // must change.
+    // These indices are tied to LATEST_RATE_COLUMNS.  If LATEST_RATE_COLUMNS changes, these
+    // must change.  They are used by ForexRowLoader to read the rows of the list.
     static final int COL_RATE_ID = 0;
-    static final int COL_CURRENCY_FROM_ID = 1;
-    static final int COL_CURRENCY_FROM_NAME = 2;
-    static final int COL_CURRENCY_FROM_SYMBOL = 3;
-    static final int COL_COUNTRY_FROM_CODE = 4;
-    static final int COL_COUNTRY_FROM_NAME = 5;
-    static final int COL_COUNTRY_FROM_FLAG = 6;
-    static final int COL_CURRENCY_TO_ID = 7;
-    static final int COL_CURRENCY_TO_NAME = 8;
-    static final int COL_CURRENCY_TO_SYMBOL = 9;
-    static final int COL_COUNTRY_TO_CODE = 10;
-    static final int COL_COUNTRY_TO_NAME = 11;
-    static final int COL_COUNTRY_TO_FLAG = 12;
-    static final int COL_RATE_DATE = 13;
-    static final int COL_RATE_VAL = 14;
+    static final int COL_CURRENCY_TO_ID = 1;
+    static final int COL_CURRENCY_TO_NAME = 2;
+    static final int COL_CURRENCY_TO_SYMBOL = 3;
+    static final int COL_COUNTRY_TO_NAME = 4;
+    static final int COL_COUNTRY_TO_FLAG = 5;
+    static final int COL_RATE_DATE = 6;
+    static final int COL_RATE_VAL = 7;
 
     private static final int FOREX_LOADER = 0;
 
@@ -127,6 +119,7 @@ public class MainActivityFragment extends Fragment implements LoaderManager.Load
     private AppCompatActivity mContext;
     private FloatingActionButton mCalculateButton;
     private ForexAdapter mForexAdapter;
+    private double mMainAmount = 1;
     private Currency mMainCurrency;
     private FirebaseAnalytics mFirebaseAnalytics;
 
@@ -302,65 +295,31 @@ public class MainActivityFragment extends Fragment implements LoaderManager.Load
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<ForexRows> onCreateLoader(int i, Bundle bundle) {
         // This is called when a new Loader needs to be created.  This
         // fragment only uses one loader, so we don't care about checking the id.
 
-        // To only show current and future dates, filter the query to return weather only for
-        // dates after or including today.
+        // The list only shows the last rates of the main currency, so the slim latest rates
+        // view is enough, it doesn't join the main currency on every row.
+        Uri rateUri = ForexContract.RateEntry.buildLatestRates(mMainCurrency.getId());
 
-        // Sort order:  Ascending, by date.
-        Uri rateUri = ForexContract.RateEntry.buildStartCurrencyWithDate(
-                mMainCurrency.getId(),
-                Utility.getForexSyncDate(mContext));
-
-        return new CursorLoader(getActivity(),
-                rateUri,
-                ForexContract.RATE_CURRENCY_COLUMNS,
-                null,
-                null,
-                null);
+        // The rows are read and formatted on the thread of the loader
+        return new ForexRowLoader(getActivity(), rateUri, mMainAmount);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        String maxRateString = "";
-        String rateString = "";
-        String maxRateSymbol = "";
-        double maxRateValue = 0;
-
-        updateEmptyView();
-
-        if (data == null) {
+    public void onLoadFinished(Loader<ForexRows> loader, ForexRows data) {
+        if (data == null || data.size() <= 0) {
             Log.d(LOG_TAG, "Main Forex Loader Finished: No data returned");
-
-            return;
         }
-        if (data.getCount() <= 0) {
-            Log.d(LOG_TAG, "Main Forex Loader Finished: No data returned");
 
-            data.close();
-            return;
-        }
-
-        for (int i = 0; i < data.getCount(); i++) {
-            data.moveToPosition(i);
-            rateString = Utility.formatCurrencyRate(getActivity(), data.getString(COL_CURRENCY_TO_SYMBOL), data.getDouble(COL_RATE_VAL));
-
-            if (rateString.length() > maxRateString.length()) {
-                maxRateString = rateString;
-                maxRateSymbol = data.getString(COL_CURRENCY_TO_SYMBOL);
-                maxRateValue = data.getDouble(COL_RATE_VAL);
-            }
-        }
-
-        mForexAdapter.setMaxRateVal(maxRateSymbol, maxRateValue);
-        mForexAdapter.swapCursor(data);
+        mForexAdapter.swapRows(data);
+        updateEmptyView();
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mForexAdapter.swapCursor(null);
+    public void onLoaderReset(Loader<ForexRows> loader) {
+        mForexAdapter.swapRows(null);
     }
 
     public void refresh() {
@@ -368,7 +327,13 @@ public class MainActivityFragment extends Fragment implements LoaderManager.Load
     }
 
     public void refreshForexList() {
-        getLoaderManager().restartLoader(FOREX_LOADER, null, this);
+        // The loader reads the rates again and only the rows that changed are updated
+        Loader<ForexRows> loader = getLoaderManager().getLoader(FOREX_LOADER);
+        if (loader != null) {
+            ((ForexRowLoader) loader).reloadRates();
+        } else {
+            getLoaderManager().restartLoader(FOREX_LOADER, null, this);
+        }
     }
 
     /**
@@ -391,12 +356,31 @@ public class MainActivityFragment extends Fragment implements LoaderManager.Load
             }
         });
 
-        Glide.with(this)
-                .load(mMainCurrency.getCountryFlag())
-                .error(R.drawable.globe)
-                .centerCrop()
-                .crossFade()
-                .into(mImageView);
+        // The rates follow the amount as it is typed
+        mCurrencyEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (s.length() <= 0) {
+                    return;
+                }
+                try {
+                    setMainAmount(Double.parseDouble(s.toString()));
+                } catch (NumberFormatException e) {
+                    // Not a number yet, the rates keep the last amount
+                }
+            }
+        });
+
+        FlagRepository.getInstance(mContext).load(mMainCurrency.getId(), mMainCurrency.getCountryFlag(),
+                FlagRepository.SIZE_LARGE, mImageView);
         mImageView.setContentDescription(Utility.formatCountryFlagName(mContext, mMainCurrency.getCountryName()));
 
         mCurrencyDescription.setText(mMainCurrency.getName());
@@ -494,10 +478,25 @@ public class MainActivityFragment extends Fragment implements LoaderManager.Load
             return;
         }
 
-        mForexAdapter.setMainAmount(Double.parseDouble(mCurrencyEditText.getText().toString()));
+        setMainAmount(Double.parseDouble(mCurrencyEditText.getText().toString()));
         hideIme();
     }
 
+    /**
+     * Helper method to show the rates for another amount of the main currency.  The loader
+     * computes the rows for the new amount with the rates it already read, and only the rates
+     * of the rows on screen are bound again.
+     *
+     * @param amount Amount of the main currency
+     */
+    private void setMainAmount(double amount) {
+        mMainAmount = amount;
+        Loader<ForexRows> loader = getLoaderManager().getLoader(FOREX_LOADER);
+        if (loader != null) {
+            ((ForexRowLoader) loader).setAmount(amount);
+        }
+    }
+
     /**
      * Helper method to show errors on a snack bar.
      *
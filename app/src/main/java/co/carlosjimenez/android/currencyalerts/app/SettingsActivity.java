@@ -28,7 +28,7 @@ package co.carlosjimenez.android.currencyalerts.app;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
@@ -38,6 +38,8 @@ import android.preference.PreferenceActivity;
 import android.preference.PreferenceManager;
 
 import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
 
 /**
  * A {@link PreferenceActivity} that presents a set of application settings.
@@ -48,11 +50,24 @@ import co.carlosjimenez.android.currencyalerts.app.data.Alert;
  * API Guide</a> for more information on developing a Settings UI.
  */
 public class SettingsActivity extends PreferenceActivity
-        implements Preference.OnPreferenceChangeListener, SharedPreferences.OnSharedPreferenceChangeListener,
-        Preference.OnPreferenceClickListener {
+        implements Preference.OnPreferenceChangeListener, Preference.OnPreferenceClickListener {
 
     private static final String LOG_TAG = SettingsActivity.class.getSimpleName();
 
+    private static final String[] ALERT_COLUMNS = {
+            ForexContract.AlertEntry.COLUMN_ALERT_FROM_KEY,
+            ForexContract.AlertEntry.COLUMN_ALERT_TO_KEY,
+            ForexContract.AlertEntry.COLUMN_ALERT_PERIOD,
+            ForexContract.AlertEntry.COLUMN_ALERT_FLUCTUATION
+    };
+
+    // These indices are tied to ALERT_COLUMNS.  If ALERT_COLUMNS changes, these
+    // must change.
+    static final int COL_ALERT_FROM = 0;
+    static final int COL_ALERT_TO = 1;
+    static final int COL_ALERT_PERIOD = 2;
+    static final int COL_ALERT_FLUCTUATION = 3;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -66,20 +81,12 @@ public class SettingsActivity extends PreferenceActivity
         initDeleteAlertPreference();
     }
 
-    // Registers a shared preference change listener that gets notified when preferences change
     @Override
     protected void onResume() {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sp.registerOnSharedPreferenceChangeListener(this);
         super.onResume();
-    }
 
-    // Unregisters a shared preference change listener
-    @Override
-    protected void onPause() {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sp.unregisterOnSharedPreferenceChangeListener(this);
-        super.onPause();
+        // The alerts may have changed in the detail screen
+        new LoadAlertSummaryTask(this).execute();
     }
 
     /**
@@ -122,31 +129,27 @@ public class SettingsActivity extends PreferenceActivity
     private void initDeleteAlertPreference() {
         Preference deleteAlertsPref = findPreference(getString(R.string.pref_delete_alerts_key));
         deleteAlertsPref.setOnPreferenceClickListener(this);
-
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sp.registerOnSharedPreferenceChangeListener(this);
-
-        setAlertSummary(deleteAlertsPref);
     }
 
     /**
      * This method sets the summary information for the delete alert setting
+     *
+     * @param alert First enabled alert, only shown if it's the only one
+     * @param count Number of enabled alerts
      */
-    private void setAlertSummary(Preference preference) {
-        Alert alert = Utility.getAlertSettings(this, false);
+    private void setAlertSummary(Alert alert, int count) {
+        Preference preference = findPreference(getString(R.string.pref_delete_alerts_key));
 
-        if (alert == null || alert.getCurrencyFrom() == null || alert.getCurrencyTo() == null) {
-            return;
-        }
-
-        if (alert.isEnabled()) {
+        if (count == 0) {
+            preference.setSummary(getString(R.string.no_alert_summary));
+        } else if (count == 1) {
             preference.setSummary(getString(R.string.format_alert_summary,
                     alert.getCurrencyFrom().getId(),
                     alert.getCurrencyTo().getId(),
                     alert.getPeriod(),
                     alert.getFluctuation()));
         } else {
-            preference.setSummary(getString(R.string.no_alert_summary));
+            preference.setSummary(getString(R.string.format_alerts_count_summary, count));
         }
     }
 
@@ -185,22 +188,58 @@ public class SettingsActivity extends PreferenceActivity
         return super.getParentActivityIntent().addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
     }
 
-    @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-        if (key.equals(getString(R.string.pref_alert_check_enabled_key)) ||
-                key.equals(getString(R.string.pref_alert_check_currency_from_key)) ||
-                key.equals(getString(R.string.pref_alert_check_currency_to_key)) ||
-                key.equals(getString(R.string.pref_alert_check_period_key)) ||
-                key.equals(getString(R.string.pref_alert_check_fluctuation_key))) {
-            setAlertSummary(findPreference(getString(R.string.pref_delete_alerts_key)));
+    /**
+     * This class is used to load the enabled alerts for the summary of the delete alert setting.
+     *
+     * @see AsyncTask
+     */
+    public class LoadAlertSummaryTask extends AsyncTask<Void, Void, Integer> {
+
+        private final Context mContext;
+        private Alert mFirstAlert;
+
+        public LoadAlertSummaryTask(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    ForexContract.AlertEntry.CONTENT_URI,
+                    ALERT_COLUMNS,
+                    ForexContract.AlertEntry.COLUMN_ALERT_ENABLED + " = 1",
+                    null,
+                    null);
+            if (cursor == null) {
+                return 0;
+            }
+
+            try {
+                if (cursor.moveToFirst()) {
+                    mFirstAlert = new Alert();
+                    mFirstAlert.setCurrencyFrom(new Currency(cursor.getString(COL_ALERT_FROM)));
+                    mFirstAlert.setCurrencyTo(new Currency(cursor.getString(COL_ALERT_TO)));
+                    mFirstAlert.setPeriod(cursor.getInt(COL_ALERT_PERIOD));
+                    mFirstAlert.setFluctuation(cursor.getFloat(COL_ALERT_FLUCTUATION));
+                }
+                return cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            if (!isFinishing()) {
+                setAlertSummary(mFirstAlert, count);
+            }
         }
     }
 
     /**
-     * This class is used to delete the alert settings on the shared preferences.
+     * This class is used to delete all the alerts on the alerts table.
      *
-     * <p>Shared preferences should not be updated on the main UI thread as it uses commit to
-     * write to the shared preferences.
+     * <p>The database should not be updated on the main UI thread.
      *
      * @see AsyncTask
      */
@@ -214,26 +253,14 @@ public class SettingsActivity extends PreferenceActivity
 
         @Override
         protected Integer doInBackground(Void... params) {
-            deleteAlert(mContext);
-            return 0;
+            return mContext.getContentResolver().delete(ForexContract.AlertEntry.CONTENT_URI, null, null);
         }
-    }
 
-    /**
-     * Delete the alert settings into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     *
-     * @param c     Context to get the PreferenceManager from.
-     */
-    static private void deleteAlert(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.remove(c.getString(R.string.pref_alert_check_enabled_key));
-        spe.remove(c.getString(R.string.pref_alert_check_currency_from_key));
-        spe.remove(c.getString(R.string.pref_alert_check_currency_to_key));
-        spe.remove(c.getString(R.string.pref_alert_check_period_key));
-        spe.remove(c.getString(R.string.pref_alert_check_fluctuation_key));
-        spe.remove(c.getString(R.string.pref_alert_check_rate_average_key));
-        spe.commit();
+        @Override
+        protected void onPostExecute(Integer deleted) {
+            if (!isFinishing()) {
+                setAlertSummary(null, 0);
+            }
+        }
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+import co.carlosjimenez.android.currencyalerts.app.sync.ForexSyncAdapter;
+import co.carlosjimenez.android.currencyalerts.app.sync.LoadCurrencyTask;
+
+/**
+ * Immutable copy of the settings, with the values already typed and parsed.
+ *
+ * <p>The snapshot is loaded the first time it's needed and loaded again by a listener every
+ * time a preference changes, so reading a setting is a field access instead of a preferences
+ * lookup, a resource lookup for the key and the parsing of the default value.
+ */
+public final class SettingsSnapshot {
+
+    private static final Object sLock = new Object();
+    private static volatile SettingsSnapshot sSnapshot;
+
+    // The preferences only keep a weak reference to their listeners
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    private final int mCurrencyStatus;
+    private final int mForexStatus;
+    private final int mSyncFrequency;
+    private final long mForexSyncDateTime;
+    private final String mSyncCurrencies;
+    private final String[] mSyncPairs;
+    private final Currency mMainCurrency;
+    private final boolean mNotificationsEnabled;
+
+    private final boolean mDefaultAlertEnabled;
+    private final int mDefaultAlertPeriod;
+    private final float mDefaultAlertFluctuation;
+
+    /**
+     * @param c Context used to get the SharedPreferences
+     * @return The current settings
+     */
+    public static SettingsSnapshot get(Context c) {
+        SettingsSnapshot snapshot = sSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        synchronized (sLock) {
+            if (sSnapshot == null) {
+                final Context context = c.getApplicationContext();
+                SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        sSnapshot = new SettingsSnapshot(context, sharedPreferences);
+                    }
+                };
+                sp.registerOnSharedPreferenceChangeListener(sListener);
+                sSnapshot = new SettingsSnapshot(context, sp);
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Loads the snapshot again right away.  The listener runs on the main thread, so the code
+     * that writes a preference on a background thread calls this after the commit to read the
+     * new value from then on.
+     *
+     * @param c Context used to get the SharedPreferences
+     */
+    public static void refresh(Context c) {
+        Context context = c.getApplicationContext();
+        synchronized (sLock) {
+            if (sSnapshot == null) {
+                get(context);
+            } else {
+                sSnapshot = new SettingsSnapshot(context, PreferenceManager.getDefaultSharedPreferences(context));
+            }
+        }
+    }
+
+    private SettingsSnapshot(Context c, SharedPreferences sp) {
+        mCurrencyStatus = sp.getInt(c.getString(R.string.pref_currency_status_key), LoadCurrencyTask.CURRENCY_STATUS_UNKNOWN);
+        mForexStatus = sp.getInt(c.getString(R.string.pref_forex_status_key), ForexSyncAdapter.FOREX_STATUS_UNKNOWN);
+        mSyncFrequency = sp.getInt(c.getString(R.string.pref_sync_frequency_default), Integer.parseInt(c.getString(R.string.pref_sync_frequency_default)));
+        mForexSyncDateTime = sp.getLong(c.getString(R.string.pref_forex_sync_date_key), 0);
+
+        mSyncCurrencies = sp.getString(c.getString(R.string.pref_displayed_currencies_key), "");
+        mSyncPairs = mSyncCurrencies.isEmpty() ? new String[0] : mSyncCurrencies.split(",");
+
+        mMainCurrency = new Currency(
+                sp.getString(c.getString(R.string.pref_main_currency_id_key), c.getString(R.string.pref_cu_id_us)),
+                sp.getString(c.getString(R.string.pref_main_currency_name_key), c.getString(R.string.pref_cu_name_us)),
+                sp.getString(c.getString(R.string.pref_main_currency_symbol_key), c.getString(R.string.pref_cu_symbol_us)),
+                sp.getString(c.getString(R.string.pref_main_country_code_key), c.getString(R.string.pref_co_code_us)),
+                sp.getString(c.getString(R.string.pref_main_country_name_key), c.getString(R.string.pref_co_name_us)),
+                sp.getString(c.getString(R.string.pref_main_country_flag_key), c.getString(R.string.pref_co_flag_us)));
+
+        mNotificationsEnabled = sp.getBoolean(c.getString(R.string.pref_enable_notifications_key),
+                Boolean.valueOf(c.getString(R.string.pref_enable_notifications_default)));
+
+        mDefaultAlertEnabled = Boolean.valueOf(c.getString(R.string.pref_alert_check_enabled_default));
+        mDefaultAlertPeriod = Integer.parseInt(c.getString(R.string.pref_alert_check_period_default));
+        mDefaultAlertFluctuation = Float.parseFloat(c.getString(R.string.pref_alert_check_fluctuation_default));
+    }
+
+    @SuppressWarnings("ResourceType")
+    public
+    @LoadCurrencyTask.CurrencyStatus
+    int getCurrencyStatus() {
+        return mCurrencyStatus;
+    }
+
+    @SuppressWarnings("ResourceType")
+    public
+    @ForexSyncAdapter.ForexStatus
+    int getForexStatus() {
+        return mForexStatus;
+    }
+
+    public int getSyncFrequency() {
+        return mSyncFrequency;
+    }
+
+    public long getForexSyncDateTime() {
+        return mForexSyncDateTime;
+    }
+
+    /**
+     * @return The currencies to be synced, separated by commas
+     */
+    public String getSyncCurrencies() {
+        return mSyncCurrencies;
+    }
+
+    /**
+     * @return The currencies to be synced, one pair per item
+     */
+    public String[] getSyncPairs() {
+        return mSyncPairs.clone();
+    }
+
+    /**
+     * @return The main currency, shared by every caller, it must not be modified
+     */
+    public Currency getMainCurrency() {
+        return mMainCurrency;
+    }
+
+    public boolean isNotificationsEnabled() {
+        return mNotificationsEnabled;
+    }
+
+    /**
+     * @return A new alert with the default values, without currencies
+     */
+    public Alert newDefaultAlert() {
+        return new Alert(mDefaultAlertEnabled, new Currency(""), new Currency(""),
+                mDefaultAlertPeriod, mDefaultAlertFluctuation, false, false, -1);
+    }
+}
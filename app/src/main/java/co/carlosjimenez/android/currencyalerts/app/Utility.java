@@ -25,10 +25,8 @@
 package co.carlosjimenez.android.currencyalerts.app;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.preference.PreferenceManager;
 import android.text.format.Time;
 
 import java.text.SimpleDateFormat;
@@ -55,8 +53,7 @@ public class Utility {
     static public
     @LoadCurrencyTask.CurrencyStatus
     int getCurrencyStatus(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getInt(c.getString(R.string.pref_currency_status_key), LoadCurrencyTask.CURRENCY_STATUS_UNKNOWN);
+        return SettingsSnapshot.get(c).getCurrencyStatus();
     }
 
     /**
@@ -69,88 +66,17 @@ public class Utility {
     static public
     @ForexSyncAdapter.ForexStatus
     int getForexStatus(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getInt(c.getString(R.string.pref_forex_status_key), ForexSyncAdapter.FOREX_STATUS_UNKNOWN);
+        return SettingsSnapshot.get(c).getForexStatus();
     }
 
     /**
-     * Helper method to check on the Shared Preferences if the alerts are enabled
+     * Helper method to obtain the default Alert Settings from the Shared Preferences.
      *
      * @param c         Context used to get the SharedPreferences
-     * @return          true if the alert are enabled
+     * @return          a new alert with the default settings, Alert type
      */
-    static public boolean isAlertEnabled(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getBoolean(c.getString(R.string.pref_alert_check_enabled_key),
-                Boolean.valueOf(c.getString(R.string.pref_alert_check_enabled_default)));
-    }
-
-    /**
-     * Helper method to obtain the Alert Settings from the Shared Preferences.
-     *
-     * @param c         Context used to get the SharedPreferences
-     * @param defaults  if true, it will only return the default values on Shared Preferences
-     * @return          the alert settings, Alert type
-     */
-    static public Alert getAlertSettings(Context c, boolean defaults) {
-        boolean enabled;
-        int alarmCheckPeriod;
-        float alarmCheckFluctuation;
-        boolean sendNotifications;
-        double averageRate;
-
-        Currency currencyFrom = new Currency();
-        Currency currencyTo = new Currency();
-
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-
-        if (defaults) {
-
-            enabled = Boolean.valueOf(c.getString(R.string.pref_alert_check_enabled_default));
-            currencyFrom.setId("");
-            currencyTo.setId("");
-            alarmCheckPeriod = Integer.parseInt(c.getString(R.string.pref_alert_check_period_default));
-            alarmCheckFluctuation = Float.parseFloat(c.getString(R.string.pref_alert_check_fluctuation_default));
-            sendNotifications = false;
-            averageRate = -1;
-
-        } else {
-
-            enabled = sp.getBoolean(c.getString(R.string.pref_alert_check_enabled_key),
-                    Boolean.valueOf(c.getString(R.string.pref_alert_check_enabled_default)));
-
-            currencyFrom.setId(sp.getString(c.getString(R.string.pref_alert_check_currency_from_key),
-                    ""));
-
-            currencyTo.setId(sp.getString(c.getString(R.string.pref_alert_check_currency_to_key),
-                    ""));
-
-            alarmCheckPeriod = sp.getInt(c.getString(R.string.pref_alert_check_period_key),
-                    Integer.parseInt(c.getString(R.string.pref_alert_check_period_default)));
-
-            alarmCheckFluctuation = sp.getFloat(c.getString(R.string.pref_alert_check_fluctuation_key),
-                    Float.parseFloat(c.getString(R.string.pref_alert_check_fluctuation_default)));
-
-            sendNotifications = sp.getBoolean(c.getString(R.string.pref_enable_notifications_key),
-                    Boolean.valueOf(c.getString(R.string.pref_enable_notifications_default)));
-
-            averageRate = Double.parseDouble(sp.getString(c.getString(R.string.pref_alert_check_rate_average_key),
-                    c.getString(R.string.pref_alert_check_rate_average_default)));
-        }
-
-        return new Alert(enabled, currencyFrom, currencyTo, alarmCheckPeriod, alarmCheckFluctuation, false, sendNotifications, averageRate);
-    }
-
-    /**
-     * Helper method to obtain the Rate Average from the Shared Preferences.
-     *
-     * @param c         Context used to get the SharedPreferences
-     * @return          the rate average, double type
-     */
-    static public double getRateAverage(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return Double.parseDouble(sp.getString(c.getString(R.string.pref_alert_check_rate_average_key),
-                c.getString(R.string.pref_alert_check_rate_average_default)));
+    static public Alert getDefaultAlertSettings(Context c) {
+        return SettingsSnapshot.get(c).newDefaultAlert();
     }
 
     /**
@@ -160,8 +86,7 @@ public class Utility {
      * @return          the forex sync frequency, integer type
      */
     static public int getSyncFrequency(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getInt(c.getString(R.string.pref_sync_frequency_default), Integer.parseInt(c.getString(R.string.pref_sync_frequency_default)));
+        return SettingsSnapshot.get(c).getSyncFrequency();
     }
 
     /**
@@ -171,8 +96,7 @@ public class Utility {
      * @return          the forex sync date, long type
      */
     static public long getForexSyncDate(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        long syncTime = sp.getLong(c.getString(R.string.pref_forex_sync_date_key), 0);
+        long syncTime = SettingsSnapshot.get(c).getForexSyncDateTime();
 
         Time dayTime = new Time();
         dayTime.setToNow();
@@ -192,8 +116,7 @@ public class Utility {
      * @return          the forex sync datetime, long type
      */
     static public long getForexSyncDateTime(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getLong(c.getString(R.string.pref_forex_sync_date_key), 0);
+        return SettingsSnapshot.get(c).getForexSyncDateTime();
     }
 
     /**
@@ -203,25 +126,17 @@ public class Utility {
      * @return          the currencies to be synced, String type
      */
     static public String getSyncCurrencies(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getString(c.getString(R.string.pref_displayed_currencies_key), "");
+        return SettingsSnapshot.get(c).getSyncCurrencies();
     }
 
     /**
      * Helper method to obtain the main currency from the Shared Preferences.
      *
      * @param c         Context used to get the SharedPreferences
-     * @return          the main currency, Currency type
+     * @return          the main currency, Currency type, shared by every caller
      */
     static public Currency getMainCurrency(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return new Currency(
-                sp.getString(c.getString(R.string.pref_main_currency_id_key), c.getString(R.string.pref_cu_id_us)),
-                sp.getString(c.getString(R.string.pref_main_currency_name_key), c.getString(R.string.pref_cu_name_us)),
-                sp.getString(c.getString(R.string.pref_main_currency_symbol_key), c.getString(R.string.pref_cu_symbol_us)),
-                sp.getString(c.getString(R.string.pref_main_country_code_key), c.getString(R.string.pref_co_code_us)),
-                sp.getString(c.getString(R.string.pref_main_country_name_key), c.getString(R.string.pref_co_name_us)),
-                sp.getString(c.getString(R.string.pref_main_country_flag_key), c.getString(R.string.pref_co_flag_us)));
+        return SettingsSnapshot.get(c).getMainCurrency();
     }
 
     /**
@@ -231,9 +146,7 @@ public class Utility {
      * @return          true if notifications are enabled
      */
     static public boolean isNotificationsEnabled(Context c) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        return sp.getBoolean(c.getString(R.string.pref_enable_notifications_key),
-                Boolean.valueOf(c.getString(R.string.pref_enable_notifications_default)));
+        return SettingsSnapshot.get(c).isNotificationsEnabled();
     }
 
     /**
@@ -288,42 +201,6 @@ public class Utility {
         return context.getString(R.string.format_country_flag_description, country_name);
     }
 
-    /**
-     * Helper method to format the currency rate.
-     *
-     * @param context       Context to use for resource localization
-     * @param currency_symbol  Currency symbol of the currency
-     * @param currencyRate  Currency value to be formatted
-     * @return              A user-friendly representation of the currency.
-     */
-    public static String formatCurrencyRate(Context context, String currency_symbol, double currencyRate) {
-
-        String rate = context.getString(R.string.format_currency_rate, currency_symbol, currencyRate);
-        String formattedRate = "";
-
-        int prefixLen = currency_symbol.length();
-        int j = 0;
-
-        if (rate.startsWith(currency_symbol + " "))
-            prefixLen++;
-
-        for (int i = rate.length() - 1; i >= prefixLen; i--) {
-            if (i <= rate.length() - 5) {
-                if (j < 2) {
-                    j++;
-                } else {
-                    formattedRate = "," + formattedRate;
-                    j = 0;
-                }
-            }
-            formattedRate = rate.charAt(i) + formattedRate;
-        }
-
-        formattedRate = rate.substring(0, prefixLen) + formattedRate;
-
-        return formattedRate;
-    }
-
     /**
      * Helper method to calculate the font size of the rate according the the length
      *
@@ -29,6 +29,7 @@ package co.carlosjimenez.android.currencyalerts.app.data;
  */
 public class Alert {
 
+    private long id;
     private boolean enabled;
     private Currency currencyFrom;
     private Currency currencyTo;
@@ -39,6 +40,7 @@ public class Alert {
     private double currentRate;
     private double rateAverage;
     private boolean positiveFluctuation;
+    private long lastNotified;
 
     public Alert() {
 
@@ -67,7 +69,8 @@ public class Alert {
     @Override
     public String toString() {
         return "Alert{" +
-                "enabled=" + enabled +
+                "id=" + id +
+                ", enabled=" + enabled +
                 ", currencyFrom=" + currencyFrom +
                 ", currencyTo=" + currencyTo +
                 ", period=" + period +
@@ -76,9 +79,18 @@ public class Alert {
                 ", sendNotifications=" + sendNotifications +
                 ", currentRate=" + currentRate +
                 ", rateAverage=" + rateAverage +
+                ", lastNotified=" + lastNotified +
                 '}';
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -169,4 +181,12 @@ public class Alert {
         return positiveFluctuation;
     }
 
+    public long getLastNotified() {
+        return lastNotified;
+    }
+
+    public void setLastNotified(long lastNotified) {
+        this.lastNotified = lastNotified;
+    }
+
 }
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import co.carlosjimenez.android.currencyalerts.app.BuildConfig;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
+
+/**
+ * Imports the currencies of the prepopulated database built by the generateCurrencySeed gradle
+ * task, so they are available as soon as the database is opened for the first time.
+ *
+ * <p>The version of the imported seed is kept in the metadata table, the currencies are imported
+ * again when an update ships a different seed.
+ */
+class CurrencySeed {
+
+    private static final String LOG_TAG = CurrencySeed.class.getSimpleName();
+
+    static final String ASSET_NAME = "currency_seed.db";
+    static final String METADATA_SEED_VERSION = "currency_seed_version";
+
+    private static final String[] COLUMNS = {
+            CurrencyEntry.COLUMN_CURRENCY_ID,
+            CurrencyEntry.COLUMN_CURRENCY_NAME,
+            CurrencyEntry.COLUMN_CURRENCY_SYMBOL,
+            CurrencyEntry.COLUMN_COUNTRY_CODE,
+            CurrencyEntry.COLUMN_COUNTRY_NAME,
+            CurrencyEntry.COLUMN_COUNTRY_FLAG_URL
+    };
+
+    private final Context mContext;
+    private final String mAssetName;
+    private final int mVersion;
+
+    CurrencySeed(Context context) {
+        this(context, ASSET_NAME, BuildConfig.CURRENCY_SEED_VERSION);
+    }
+
+    CurrencySeed(Context context, String assetName, int version) {
+        mContext = context.getApplicationContext();
+        mAssetName = assetName;
+        mVersion = version;
+    }
+
+    /**
+     * Imports the currencies of the seed, unless this version was already imported.  Existing
+     * currencies are replaced.
+     *
+     * <p>The rows are copied instead of attaching the seed, an ATTACH disables the write-ahead
+     * logging of the connection.
+     *
+     * @param db Writable database, not in a transaction
+     * @return The number of imported currencies, 0 if the seed was already imported or it failed
+     */
+    int importIfNeeded(SQLiteDatabase db) {
+        if (getImportedVersion(db) == mVersion) {
+            return 0;
+        }
+
+        File seedFile = new File(mContext.getCacheDir(), mAssetName);
+        SQLiteDatabase seed = null;
+        Cursor cursor = null;
+        int count = 0;
+        try {
+            copyAsset(seedFile);
+            seed = SQLiteDatabase.openDatabase(seedFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            cursor = seed.query(CurrencyEntry.TABLE_NAME, COLUMNS, null, null, null, null, null);
+
+            SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " +
+                    CurrencyEntry.TABLE_NAME + " (" + TextUtils.join(", ", COLUMNS) +
+                    ") VALUES (?, ?, ?, ?, ?, ?)");
+            db.beginTransaction();
+            try {
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        insert.bindString(i + 1, cursor.getString(i));
+                    }
+                    insert.executeInsert();
+                    count++;
+                }
+
+                ContentValues version = new ContentValues();
+                version.put(ForexDbHelper.COLUMN_METADATA_KEY, METADATA_SEED_VERSION);
+                version.put(ForexDbHelper.COLUMN_METADATA_VALUE, Integer.toString(mVersion));
+                db.insertWithOnConflict(ForexDbHelper.TABLE_METADATA, null, version,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            Log.d(LOG_TAG, "Imported " + count + " currencies from seed version " + mVersion);
+        } catch (IOException | SQLException e) {
+            // LoadCurrencyTask inserts the currencies when the seed is missing
+            Log.e(LOG_TAG, "Error importing the currency seed", e);
+            count = 0;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            if (seed != null) {
+                seed.close();
+            }
+            seedFile.delete();
+        }
+        return count;
+    }
+
+    /**
+     * @return The version of the last imported seed, or 0 if none was imported
+     */
+    static int getImportedVersion(SQLiteDatabase db) {
+        Cursor cursor = db.query(ForexDbHelper.TABLE_METADATA,
+                new String[]{ForexDbHelper.COLUMN_METADATA_VALUE},
+                ForexDbHelper.COLUMN_METADATA_KEY + " = ?",
+                new String[]{METADATA_SEED_VERSION},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        SQLite can only open a file, the assets are read from the apk.
+     */
+    private void copyAsset(File destination) throws IOException {
+        InputStream in = mContext.getAssets().open(mAssetName);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -52,6 +52,10 @@ public class ForexContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_CURRENCY = "currency";
     public static final String PATH_RATE = "rate";
+    public static final String PATH_STATS = "stats";
+    public static final String PATH_LATEST = "latest";
+    public static final String PATH_HISTORY = "history";
+    public static final String PATH_ALERT = "alert";
 
     public static final String[] RATE_CURRENCY_COLUMNS = {
             ForexContract.RateEntry.TABLE_NAME + "." + ForexContract.RateEntry._ID,
@@ -71,6 +75,19 @@ public class ForexContract {
             ForexContract.RateEntry.COLUMN_RATE_VALUE
     };
 
+    // Columns of the latest rates of a base currency, only the currency to is joined as the
+    // currency from is the base currency the list was asked for.
+    public static final String[] LATEST_RATE_COLUMNS = {
+            ForexContract.RateEntry.TABLE_NAME + "." + ForexContract.RateEntry._ID,
+            ForexContract.RateEntry.COLUMN_RATE_TO_KEY,
+            ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + "." + ForexContract.CurrencyEntry.COLUMN_CURRENCY_NAME,
+            ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + "." + ForexContract.CurrencyEntry.COLUMN_CURRENCY_SYMBOL,
+            ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + "." + ForexContract.CurrencyEntry.COLUMN_COUNTRY_NAME,
+            ForexContract.RateEntry.JOIN_RATE_TO_ALIAS + "." + ForexContract.CurrencyEntry.COLUMN_COUNTRY_FLAG_URL,
+            ForexContract.RateEntry.COLUMN_RATE_DATE,
+            ForexContract.RateEntry.COLUMN_RATE_VALUE
+    };
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
@@ -130,6 +147,19 @@ public class ForexContract {
         // Rate value as returned by API
         public static final String COLUMN_RATE_VALUE = "value";
 
+        // content://.../latest/USD returns the last rates of a base currency and
+        // content://.../latest/USD/EUR the last rate of a pair with both currencies.
+        public static final Uri LATEST_CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_LATEST).build();
+        // content://.../history/USD/EUR returns only the dates and values of a pair
+        public static final Uri HISTORY_CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_HISTORY).build();
+
+        public static final String[] HISTORY_COLUMNS = {
+                ForexContract.RateEntry.COLUMN_RATE_DATE,
+                ForexContract.RateEntry.COLUMN_RATE_VALUE
+        };
+
         public static final String[] RATE_COLUMNS = {
                 ForexContract.RateEntry.TABLE_NAME + "." + ForexContract.RateEntry._ID,
                 ForexContract.RateEntry.COLUMN_RATE_FROM_KEY,
@@ -149,6 +179,34 @@ public class ForexContract {
                     .build();
         }
 
+        public static Uri buildLatestRates(String currency) {
+            return LATEST_CONTENT_URI.buildUpon()
+                    .appendPath(currency)
+                    .build();
+        }
+
+        public static Uri buildLatestPairRate(String[] currencies) {
+            return LATEST_CONTENT_URI.buildUpon()
+                    .appendPath(currencies[0])
+                    .appendPath(currencies[1])
+                    .build();
+        }
+
+        public static Uri buildRateHistory(String[] currencies) {
+            return HISTORY_CONTENT_URI.buildUpon()
+                    .appendPath(currencies[0])
+                    .appendPath(currencies[1])
+                    .build();
+        }
+
+        public static Uri buildRateHistoryWithStartDate(String[] currencies, long startDate) {
+            return HISTORY_CONTENT_URI.buildUpon()
+                    .appendPath(currencies[0])
+                    .appendPath(currencies[1])
+                    .appendQueryParameter(COLUMN_RATE_DATE, Long.toString(normalizeDate(startDate)))
+                    .build();
+        }
+
         public static Uri buildCurrencyRateWithValue(String[] currencies, double value) {
             return CONTENT_URI.buildUpon()
                     .appendPath(currencies[0])
@@ -221,4 +279,121 @@ public class ForexContract {
                 return 1;
         }
     }
+
+    /* Inner class that defines the table contents of the rate statistics table */
+    public static final class StatsEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_STATS).build();
+
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        public static final String TABLE_NAME = "rate_stats";
+
+        public static final String COLUMN_STATS_FROM_KEY = "currency_from_id";
+        public static final String COLUMN_STATS_TO_KEY = "currency_to_id";
+        // Number of days covered by the statistics, counted back from the last rate of the pair
+        public static final String COLUMN_STATS_WINDOW = "window_days";
+        public static final String COLUMN_STATS_AVERAGE = "average";
+        public static final String COLUMN_STATS_MIN = "min_value";
+        public static final String COLUMN_STATS_MAX = "max_value";
+        // Number of rates stored within the window
+        public static final String COLUMN_STATS_COUNT = "rate_count";
+        // Date of the last rate of the pair, stored as long in milliseconds since the epoch
+        public static final String COLUMN_STATS_LAST_DATE = "last_date";
+
+        // Windows kept up to date by the ForexProvider.  The sync keeps 40 days of rates, so the
+        // longer alert periods cover the same rates and are computed from the rate table when
+        // they're queried, like any other window.
+        public static final int[] PRECOMPUTED_WINDOWS = {1, 7, 30};
+
+        public static final String[] STATS_COLUMNS = {
+                COLUMN_STATS_FROM_KEY,
+                COLUMN_STATS_TO_KEY,
+                COLUMN_STATS_WINDOW,
+                COLUMN_STATS_AVERAGE,
+                COLUMN_STATS_MIN,
+                COLUMN_STATS_MAX,
+                COLUMN_STATS_COUNT,
+                COLUMN_STATS_LAST_DATE
+        };
+
+        public static Uri buildStatsUri(String[] currencies, int windowDays) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(currencies[0])
+                    .appendPath(currencies[1])
+                    .appendPath(Integer.toString(windowDays))
+                    .build();
+        }
+
+        public static String[] getCurrenciesFromUri(Uri uri) {
+            String[] currencies = new String[2];
+            currencies[0] = uri.getPathSegments().get(1);
+            currencies[1] = uri.getPathSegments().get(2);
+            return currencies;
+        }
+
+        public static int getWindowFromUri(Uri uri) {
+            return Integer.parseInt(uri.getPathSegments().get(3));
+        }
+    }
+
+    /* Inner class that defines the table contents of the alerts table */
+    public static final class AlertEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_ALERT).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ALERT;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ALERT;
+
+        public static final String TABLE_NAME = "alert";
+
+        public static final String COLUMN_ALERT_FROM_KEY = "currency_from_id";
+        public static final String COLUMN_ALERT_TO_KEY = "currency_to_id";
+        public static final String COLUMN_ALERT_ENABLED = "enabled";
+        // Number of days the average of the rate is computed over
+        public static final String COLUMN_ALERT_PERIOD = "period";
+        // Percentage of fluctuation from the average that triggers the alert
+        public static final String COLUMN_ALERT_FLUCTUATION = "fluctuation";
+        // Average of the rate over the period, updated every time the alert is evaluated
+        public static final String COLUMN_ALERT_AVERAGE = "rate_average";
+        // State of the rolling statistics of the rate, null until the alert is evaluated
+        public static final String COLUMN_ALERT_STATS = "stats_state";
+        // Last time the alert was notified to the user, stored as long in milliseconds since the epoch
+        public static final String COLUMN_ALERT_LAST_NOTIFIED = "last_notified";
+
+        public static final String[] ALERT_COLUMNS = {
+                _ID,
+                COLUMN_ALERT_FROM_KEY,
+                COLUMN_ALERT_TO_KEY,
+                COLUMN_ALERT_ENABLED,
+                COLUMN_ALERT_PERIOD,
+                COLUMN_ALERT_FLUCTUATION,
+                COLUMN_ALERT_AVERAGE,
+                COLUMN_ALERT_STATS,
+                COLUMN_ALERT_LAST_NOTIFIED
+        };
+
+        public static Uri buildAlertUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        public static Uri buildPairAlertUri(String[] currencies) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(currencies[0])
+                    .appendPath(currencies[1])
+                    .build();
+        }
+
+        public static String[] getCurrenciesFromUri(Uri uri) {
+            String[] currencies = new String[2];
+            currencies[0] = uri.getPathSegments().get(1);
+            currencies[1] = uri.getPathSegments().get(2);
+            return currencies;
+        }
+    }
 }
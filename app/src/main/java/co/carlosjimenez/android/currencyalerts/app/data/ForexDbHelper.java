@@ -27,7 +27,12 @@ package co.carlosjimenez.android.currencyalerts.app.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import java.util.Arrays;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.CurrencyEntry;
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
 
@@ -36,12 +41,176 @@ import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
  */
 public class ForexDbHelper extends SQLiteOpenHelper {
 
+    private static final String LOG_TAG = ForexDbHelper.class.getSimpleName();
+
     static final String DATABASE_NAME = "currency.db";
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 1;
+    // If you change the database schema, you must increment the database version and add the
+    // MigrationStep that brings the previous version to the new one.
+    static final int DATABASE_VERSION = 6;
+
+    // The rates are always looked up by pair or by start currency, then filtered or sorted by
+    // date.  The unique constraint leads with the date, so without these indexes every one of
+    // those queries scans the whole table.  The value is part of the pair index so the rate
+    // lookups are answered from the index alone.
+    static final String INDEX_RATE_PAIR_DATE = "rate_pair_date_idx";
+    static final String INDEX_RATE_FROM_DATE = "rate_from_date_idx";
+
+    // Internal key/value settings of the database, such as the version of the imported currency seed
+    static final String TABLE_METADATA = "metadata";
+    static final String COLUMN_METADATA_KEY = "key";
+    static final String COLUMN_METADATA_VALUE = "value";
+
+    private static final String SQL_CREATE_METADATA_TABLE = "CREATE TABLE " + TABLE_METADATA + " (" +
+            COLUMN_METADATA_KEY + " TEXT PRIMARY KEY, " +
+            COLUMN_METADATA_VALUE + " TEXT);";
+
+    // One alert per pair, saving an alert for a pair replaces the previous one
+    private static final String SQL_CREATE_ALERT_TABLE = "CREATE TABLE " + AlertEntry.TABLE_NAME + " (" +
+            AlertEntry._ID + " INTEGER PRIMARY KEY," +
+            AlertEntry.COLUMN_ALERT_FROM_KEY + " TEXT NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_TO_KEY + " TEXT NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_ENABLED + " INTEGER NOT NULL DEFAULT 1, " +
+            AlertEntry.COLUMN_ALERT_PERIOD + " INTEGER NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_FLUCTUATION + " REAL NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_AVERAGE + " REAL NOT NULL DEFAULT -1, " +
+            AlertEntry.COLUMN_ALERT_STATS + " TEXT, " +
+            AlertEntry.COLUMN_ALERT_LAST_NOTIFIED + " INTEGER NOT NULL DEFAULT 0, " +
+            " UNIQUE (" + AlertEntry.COLUMN_ALERT_FROM_KEY + ", " + AlertEntry.COLUMN_ALERT_TO_KEY +
+            ") ON CONFLICT REPLACE);";
+
+    // The alerts table as it was created by the step to version 5, the later steps alter it
+    private static final String SQL_CREATE_ALERT_TABLE_V5 = "CREATE TABLE " + AlertEntry.TABLE_NAME + " (" +
+            AlertEntry._ID + " INTEGER PRIMARY KEY," +
+            AlertEntry.COLUMN_ALERT_FROM_KEY + " TEXT NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_TO_KEY + " TEXT NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_ENABLED + " INTEGER NOT NULL DEFAULT 1, " +
+            AlertEntry.COLUMN_ALERT_PERIOD + " INTEGER NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_FLUCTUATION + " REAL NOT NULL, " +
+            AlertEntry.COLUMN_ALERT_AVERAGE + " REAL NOT NULL DEFAULT -1, " +
+            AlertEntry.COLUMN_ALERT_STATS + " TEXT, " +
+            " UNIQUE (" + AlertEntry.COLUMN_ALERT_FROM_KEY + ", " + AlertEntry.COLUMN_ALERT_TO_KEY +
+            ") ON CONFLICT REPLACE);";
+
+    // Ordered list of the schema changes since version 1, one step per database version.
+    // onCreate always builds the latest schema, these steps are only run on upgrades.
+    static final List<MigrationStep> MIGRATIONS = Arrays.<MigrationStep>asList(
+            new MigrationStep(2, "Add the pair and start currency rate indexes") {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createRateIndexes(db);
+                }
+            },
+            new MigrationStep(3, "Add the rate statistics table") {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(RateStatsTable.SQL_CREATE_STATS_TABLE);
+                    RateStatsTable.rebuild(db);
+                }
+            },
+            new MigrationStep(4, "Add the metadata table") {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_METADATA_TABLE);
+                }
+            },
+            new MigrationStep(5, "Add the alerts table") {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_ALERT_TABLE_V5);
+                }
+            },
+            new MigrationStep(6, "Add the last notification time of the alerts") {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + AlertEntry.TABLE_NAME + " ADD COLUMN " +
+                            AlertEntry.COLUMN_ALERT_LAST_NOTIFIED + " INTEGER NOT NULL DEFAULT 0");
+                }
+            }
+    );
+
+    /**
+     * Connection settings of the forex database.
+     *
+     * <p>The database is shared by the sync adapter, the loaders, the widget and the alert
+     * service.  With write-ahead logging the readers keep going while the sync writes the rates,
+     * instead of waiting for the whole bulkInsert transaction.
+     */
+    public static final class Config {
+
+        public static final String SYNCHRONOUS_OFF = "OFF";
+        public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+        public static final String SYNCHRONOUS_FULL = "FULL";
+
+        public static final String TEMP_STORE_DEFAULT = "DEFAULT";
+        public static final String TEMP_STORE_FILE = "FILE";
+        public static final String TEMP_STORE_MEMORY = "MEMORY";
+
+        // NORMAL is durable enough in WAL mode, a crash can only lose the last sync, which is
+        // downloaded again.  The temporary b-trees of the joins and sorts are small, so they are
+        // kept in memory.
+        public static final Config DEFAULT = new Config(true, SYNCHRONOUS_NORMAL, 1024, TEMP_STORE_MEMORY);
+
+        final boolean writeAheadLogging;
+        final String synchronous;
+        final int cacheSizeKb;
+        final String tempStore;
+
+        /**
+         * @param writeAheadLogging true to open the database in WAL journal mode
+         * @param synchronous       One of the SYNCHRONOUS_* levels
+         * @param cacheSizeKb       Page cache size per connection in KiB, 0 to keep the default
+         * @param tempStore         One of the TEMP_STORE_* values
+         */
+        public Config(boolean writeAheadLogging, String synchronous, int cacheSizeKb, String tempStore) {
+            this.writeAheadLogging = writeAheadLogging;
+            this.synchronous = synchronous;
+            this.cacheSizeKb = cacheSizeKb;
+            this.tempStore = tempStore;
+        }
+    }
+
+    private final Config mConfig;
+    private CurrencySeed mCurrencySeed;
+    private LegacyAlertImport mLegacyAlertImport;
 
     public ForexDbHelper(Context context) {
+        this(context, Config.DEFAULT);
+    }
+
+    public ForexDbHelper(Context context, Config config) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mConfig = config;
+        setWriteAheadLoggingEnabled(config.writeAheadLogging);
+    }
+
+    /**
+     * Sets the seed whose currencies are imported when the database is opened, if that version
+     * wasn't imported yet.
+     */
+    void setCurrencySeed(CurrencySeed currencySeed) {
+        mCurrencySeed = currencySeed;
+    }
+
+    /**
+     * Sets the import of the alert kept in the shared preferences by the previous versions, run
+     * when the database is opened.
+     */
+    void setLegacyAlertImport(LegacyAlertImport legacyAlertImport) {
+        mLegacyAlertImport = legacyAlertImport;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        // These pragmas are set on the primary connection, the one used by every write.  The extra
+        // read connections opened in WAL mode keep the SQLite defaults.
+        db.execSQL("PRAGMA synchronous = " + mConfig.synchronous);
+        db.execSQL("PRAGMA temp_store = " + mConfig.tempStore);
+        if (mConfig.cacheSizeKb > 0) {
+            // A negative cache size is read by SQLite as KiB instead of pages
+            db.execSQL("PRAGMA cache_size = -" + mConfig.cacheSizeKb);
+        }
     }
 
     @Override
@@ -86,18 +255,90 @@ public class ForexDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_CURRENCY_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_RATE_TABLE);
+        createRateIndexes(sqLiteDatabase);
+        sqLiteDatabase.execSQL(RateStatsTable.SQL_CREATE_STATS_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_METADATA_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_ALERT_TABLE);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        // onCreate and onUpgrade run in a transaction, the seed is imported once the schema is
+        // ready, in its own transaction
+        if (mCurrencySeed != null && !db.isReadOnly()) {
+            mCurrencySeed.importIfNeeded(db);
+        }
+        if (mLegacyAlertImport != null && !db.isReadOnly()) {
+            mLegacyAlertImport.importIfNeeded(db);
+        }
+    }
+
+    /**
+     * Creates the indexes used by the pair and start currency queries of the ForexProvider.
+     */
+    private static void createRateIndexes(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_RATE_PAIR_DATE + " ON " +
+                RateEntry.TABLE_NAME + " (" +
+                RateEntry.COLUMN_RATE_FROM_KEY + ", " +
+                RateEntry.COLUMN_RATE_TO_KEY + ", " +
+                RateEntry.COLUMN_RATE_DATE + " DESC, " +
+                RateEntry.COLUMN_RATE_VALUE + ");");
+
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_RATE_FROM_DATE + " ON " +
+                RateEntry.TABLE_NAME + " (" +
+                RateEntry.COLUMN_RATE_FROM_KEY + ", " +
+                RateEntry.COLUMN_RATE_DATE + ");");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + CurrencyEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + RateEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        // Each schema change is applied on top of the previous version, so the rates history
+        // survives the upgrade and doesn't need to be downloaded again.
+        migrate(sqLiteDatabase, oldVersion, newVersion, MIGRATIONS);
+    }
+
+    /**
+     * Runs the migration steps that bring the database from oldVersion to newVersion, in order
+     * and inside a single transaction, so a failing step leaves the database untouched.
+     *
+     * @param db         Database to migrate
+     * @param oldVersion Current version of the database
+     * @param newVersion Version to migrate to
+     * @param steps      Migration steps, ordered by version
+     * @throws IllegalStateException if a step is missing for one of the versions
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion, List<MigrationStep> steps) {
+        int version = oldVersion;
+
+        // SQLiteOpenHelper already runs onUpgrade in a transaction, this one is nested in it
+        db.beginTransaction();
+        try {
+            for (MigrationStep step : steps) {
+                if (step.getVersion() <= oldVersion || step.getVersion() > newVersion) {
+                    continue;
+                }
+                if (step.getVersion() != version + 1) {
+                    throw new IllegalStateException("Missing migration from version " + version +
+                            " to " + step.getVersion());
+                }
+
+                Log.d(LOG_TAG, "Migrating database to version " + step.getVersion() + ": " +
+                        step.getDescription());
+                step.migrate(db);
+                version = step.getVersion();
+            }
+
+            if (version != newVersion) {
+                throw new IllegalStateException("Missing migration from version " + version +
+                        " to " + newVersion);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 }
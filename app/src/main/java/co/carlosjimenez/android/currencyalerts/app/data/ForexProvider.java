@@ -26,12 +26,25 @@ package co.carlosjimenez.android.currencyalerts.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ForexProvider extends ContentProvider {
 
@@ -41,11 +54,19 @@ public class ForexProvider extends ContentProvider {
     static final int RATE_WITH_CURRENCY = 101;
     static final int RATE_ALL_WITH_CURRENCY = 102;
     static final int RATE_WITH_CURRENCY_AND_DATE = 103;
+    static final int RATE_LATEST_WITH_CURRENCY = 104;
+    static final int RATE_LATEST_WITH_PAIR = 105;
+    static final int RATE_HISTORY_WITH_PAIR = 106;
     static final int CURRENCY = 300;
+    static final int STATS_WITH_CURRENCY_AND_WINDOW = 400;
+    static final int ALERT = 500;
+    static final int ALERT_WITH_ID = 501;
+    static final int ALERT_WITH_PAIR = 502;
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private static final SQLiteQueryBuilder sRateByCurrencyQueryBuilder;
+    private static final SQLiteQueryBuilder sLatestRatesQueryBuilder;
 
     //currency_from_id = ? AND currency_to_id = ?
     private static final String sCurrencySelection =
@@ -77,6 +98,24 @@ public class ForexProvider extends ContentProvider {
                     ForexContract.RateEntry.COLUMN_RATE_TO_KEY + " = ? AND " +
                     ForexContract.RateEntry.COLUMN_RATE_DATE + " = ? ";
 
+    //currency_from_id = ? AND date = (SELECT MAX(date) FROM rate WHERE currency_from_id = ?)
+    private static final String sStartCurrencyLatestSelection =
+            ForexContract.RateEntry.TABLE_NAME + "." +
+                    ForexContract.RateEntry.COLUMN_RATE_FROM_KEY + " = ? AND " +
+                    ForexContract.RateEntry.COLUMN_RATE_DATE + " = (SELECT MAX(" +
+                    ForexContract.RateEntry.COLUMN_RATE_DATE + ") FROM " +
+                    ForexContract.RateEntry.TABLE_NAME + " WHERE " +
+                    ForexContract.RateEntry.COLUMN_RATE_FROM_KEY + " = ?)";
+    //currency_from_id = ? AND currency_to_id = ? AND window_days = ?
+    private static final String sStatsSelection =
+            ForexContract.StatsEntry.COLUMN_STATS_FROM_KEY + " = ? AND " +
+                    ForexContract.StatsEntry.COLUMN_STATS_TO_KEY + " = ? AND " +
+                    ForexContract.StatsEntry.COLUMN_STATS_WINDOW + " = ? ";
+    //currency_from_id = ? AND currency_to_id = ?
+    private static final String sAlertPairSelection =
+            ForexContract.AlertEntry.COLUMN_ALERT_FROM_KEY + " = ? AND " +
+                    ForexContract.AlertEntry.COLUMN_ALERT_TO_KEY + " = ? ";
+
     static {
         sRateByCurrencyQueryBuilder = new SQLiteQueryBuilder();
 
@@ -99,9 +138,30 @@ public class ForexProvider extends ContentProvider {
                         "." + ForexContract.RateEntry.COLUMN_RATE_TO_KEY +
                         " = " + ForexContract.RateEntry.JOIN_RATE_TO_ALIAS +
                         "." + ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID);
+
+        sLatestRatesQueryBuilder = new SQLiteQueryBuilder();
+
+        //This is an inner join which looks like
+        //rate INNER JOIN currency_to ON rate.currency_to_id = currency_to.currency_id
+        sLatestRatesQueryBuilder.setTables(
+                ForexContract.RateEntry.TABLE_NAME +
+                        " INNER JOIN " +
+                        ForexContract.CurrencyEntry.TABLE_NAME + " AS " +
+                        ForexContract.RateEntry.JOIN_RATE_TO_ALIAS +
+                        " ON " + ForexContract.RateEntry.TABLE_NAME +
+                        "." + ForexContract.RateEntry.COLUMN_RATE_TO_KEY +
+                        " = " + ForexContract.RateEntry.JOIN_RATE_TO_ALIAS +
+                        "." + ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID);
     }
 
     private ForexDbHelper mOpenHelper;
+    // There is a single instance of the provider per process, so this cache is shared by the
+    // list, the widget and the services
+    private final LatestRateCache mLatestRateCache =
+            new LatestRateCache(LatestRateCache.DEFAULT_MAX_CURRENCIES);
+    // Alert uris changed by the batch being applied on the current thread, they are notified
+    // once when the batch is committed instead of once per operation
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
 
     static UriMatcher buildUriMatcher() {
         // I know what you're thinking.  Why create a UriMatcher when you can use regular
@@ -119,7 +179,17 @@ public class ForexProvider extends ContentProvider {
         matcher.addURI(authority, ForexContract.PATH_RATE + "/*/*", RATE_WITH_CURRENCY);
         matcher.addURI(authority, ForexContract.PATH_RATE + "/*/*/#", RATE_WITH_CURRENCY_AND_DATE);
 
+        matcher.addURI(authority, ForexContract.PATH_LATEST + "/*", RATE_LATEST_WITH_CURRENCY);
+        matcher.addURI(authority, ForexContract.PATH_LATEST + "/*/*", RATE_LATEST_WITH_PAIR);
+        matcher.addURI(authority, ForexContract.PATH_HISTORY + "/*/*", RATE_HISTORY_WITH_PAIR);
+
         matcher.addURI(authority, ForexContract.PATH_CURRENCY, CURRENCY);
+
+        matcher.addURI(authority, ForexContract.PATH_STATS + "/*/*/#", STATS_WITH_CURRENCY_AND_WINDOW);
+
+        matcher.addURI(authority, ForexContract.PATH_ALERT, ALERT);
+        matcher.addURI(authority, ForexContract.PATH_ALERT + "/#", ALERT_WITH_ID);
+        matcher.addURI(authority, ForexContract.PATH_ALERT + "/*/*", ALERT_WITH_PAIR);
         return matcher;
     }
 
@@ -188,9 +258,161 @@ public class ForexProvider extends ContentProvider {
         );
     }
 
+    private Cursor getLatestRatesByCurrency(Uri uri, String[] projection, String selection,
+                                            String sortOrder) {
+        String currency = ForexContract.RateEntry.getCurrencyFromUri(uri);
+
+        if (!LatestRateCache.isCacheable(projection, selection, sortOrder)) {
+            return queryLatestRates(currency, projection, sortOrder);
+        }
+
+        Cursor cursor = mLatestRateCache.get(currency);
+        if (cursor == null) {
+            long generation = mLatestRateCache.getGeneration();
+            cursor = queryLatestRates(currency, null, null);
+            mLatestRateCache.put(currency, cursor, generation);
+        }
+        return cursor;
+    }
+
+    private Cursor queryLatestRates(String currency, String[] projection, String sortOrder) {
+        return sLatestRatesQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection != null ? projection : ForexContract.LATEST_RATE_COLUMNS,
+                sStartCurrencyLatestSelection,
+                new String[]{currency, currency},
+                null,
+                null,
+                sortOrder
+        );
+    }
+
+    private Cursor getLatestRateByPair(Uri uri, String[] projection) {
+        String[] currencies = ForexContract.RateEntry.getCurrenciesFromUri(uri);
+
+        return sRateByCurrencyQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection != null ? projection : ForexContract.RATE_CURRENCY_COLUMNS,
+                sCurrencySelection,
+                currencies,
+                null,
+                null,
+                ForexContract.RateEntry.COLUMN_RATE_DATE + " DESC",
+                "1"
+        );
+    }
+
+    private Cursor getRateHistoryByPair(Uri uri, String[] projection, String sortOrder) {
+        String[] currencies = ForexContract.RateEntry.getCurrenciesFromUri(uri);
+        long startDate = ForexContract.RateEntry.getStartDateFromUri(uri);
+
+        String[] selectionArgs;
+        String selection;
+
+        if (startDate == 0) {
+            selection = sCurrencySelection;
+            selectionArgs = currencies;
+        } else {
+            selectionArgs = new String[]{currencies[0], currencies[1], Long.toString(startDate)};
+            selection = sCurrencyWithStartDateSelection;
+        }
+
+        // The history doesn't need the currencies, so there is no join at all
+        return mOpenHelper.getReadableDatabase().query(
+                ForexContract.RateEntry.TABLE_NAME,
+                projection != null ? projection : ForexContract.RateEntry.HISTORY_COLUMNS,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder != null ? sortOrder : ForexContract.RateEntry.COLUMN_RATE_DATE + " DESC"
+        );
+    }
+
+    private Cursor getStatsByCurrencyAndWindow(Uri uri, String[] projection, String sortOrder) {
+        String[] currencies = ForexContract.StatsEntry.getCurrenciesFromUri(uri);
+        int window = ForexContract.StatsEntry.getWindowFromUri(uri);
+
+        if (!RateStatsTable.isPrecomputed(window)) {
+            return RateStatsTable.query(mOpenHelper.getReadableDatabase(), projection,
+                    currencies[0], currencies[1], window);
+        }
+
+        return mOpenHelper.getReadableDatabase().query(
+                ForexContract.StatsEntry.TABLE_NAME,
+                projection,
+                sStatsSelection,
+                new String[]{currencies[0], currencies[1], Integer.toString(window)},
+                null,
+                null,
+                sortOrder
+        );
+    }
+
+    /**
+     * Builds the selection of the alert uris, adding the id or the pair of the uri to the
+     * selection of the caller.
+     *
+     * @return the selection and its arguments
+     */
+    private static Pair<String, String[]> getAlertSelection(int match, Uri uri, String selection,
+                                                            String[] selectionArgs) {
+        String uriSelection;
+        String[] uriArgs;
+        switch (match) {
+            case ALERT_WITH_ID:
+                uriSelection = ForexContract.AlertEntry._ID + " = ?";
+                uriArgs = new String[]{Long.toString(ContentUris.parseId(uri))};
+                break;
+            case ALERT_WITH_PAIR:
+                uriSelection = sAlertPairSelection;
+                uriArgs = ForexContract.AlertEntry.getCurrenciesFromUri(uri);
+                break;
+            default:
+                return Pair.create(selection, selectionArgs);
+        }
+
+        if (TextUtils.isEmpty(selection)) {
+            return Pair.create(uriSelection, uriArgs);
+        }
+
+        String[] args = uriArgs;
+        if (selectionArgs != null) {
+            args = new String[uriArgs.length + selectionArgs.length];
+            System.arraycopy(uriArgs, 0, args, 0, uriArgs.length);
+            System.arraycopy(selectionArgs, 0, args, uriArgs.length, selectionArgs.length);
+        }
+        return Pair.create(uriSelection + " AND (" + selection + ")", args);
+    }
+
+    /**
+     * Notifies the observers of the alerts, or defers it to the end of the batch if one is
+     * being applied.
+     */
+    private void notifyAlertChange() {
+        Set<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            batchChanges.add(ForexContract.AlertEntry.CONTENT_URI);
+        } else {
+            getContext().getContentResolver().notifyChange(ForexContract.AlertEntry.CONTENT_URI, null);
+        }
+    }
+
+    /**
+     * Notifies the observers of the rates and of the statistics computed from them.
+     */
+    private void notifyRateChange(Uri uri) {
+        getContext().getContentResolver().notifyChange(uri, null);
+        getContext().getContentResolver().notifyChange(ForexContract.StatsEntry.CONTENT_URI, null);
+        getContext().getContentResolver().notifyChange(ForexContract.RateEntry.LATEST_CONTENT_URI, null);
+        getContext().getContentResolver().notifyChange(ForexContract.RateEntry.HISTORY_CONTENT_URI, null);
+    }
+
     @Override
     public boolean onCreate() {
         mOpenHelper = new ForexDbHelper(getContext());
+        // The currencies are available as soon as the database is opened the first time
+        mOpenHelper.setCurrencySeed(new CurrencySeed(getContext()));
+        // The alert of the previous versions is moved to the alerts table the first time
+        mOpenHelper.setLegacyAlertImport(new LegacyAlertImport(getContext()));
         return true;
     }
 
@@ -210,8 +432,22 @@ public class ForexProvider extends ContentProvider {
                 return ForexContract.RateEntry.CONTENT_TYPE;
             case RATE:
                 return ForexContract.RateEntry.CONTENT_TYPE;
+            case RATE_LATEST_WITH_CURRENCY:
+                return ForexContract.RateEntry.CONTENT_TYPE;
+            case RATE_LATEST_WITH_PAIR:
+                return ForexContract.RateEntry.CONTENT_ITEM_TYPE;
+            case RATE_HISTORY_WITH_PAIR:
+                return ForexContract.RateEntry.CONTENT_TYPE;
             case CURRENCY:
                 return ForexContract.CurrencyEntry.CONTENT_TYPE;
+            case STATS_WITH_CURRENCY_AND_WINDOW:
+                return ForexContract.StatsEntry.CONTENT_ITEM_TYPE;
+            case ALERT:
+                return ForexContract.AlertEntry.CONTENT_TYPE;
+            case ALERT_WITH_ID:
+                return ForexContract.AlertEntry.CONTENT_ITEM_TYPE;
+            case ALERT_WITH_PAIR:
+                return ForexContract.AlertEntry.CONTENT_ITEM_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -240,6 +476,21 @@ public class ForexProvider extends ContentProvider {
                 retCursor = getAllRatesByCurrency(uri, projection, sortOrder);
                 break;
             }
+            // "latest/*"
+            case RATE_LATEST_WITH_CURRENCY: {
+                retCursor = getLatestRatesByCurrency(uri, projection, selection, sortOrder);
+                break;
+            }
+            // "latest/*/*"
+            case RATE_LATEST_WITH_PAIR: {
+                retCursor = getLatestRateByPair(uri, projection);
+                break;
+            }
+            // "history/*/*"
+            case RATE_HISTORY_WITH_PAIR: {
+                retCursor = getRateHistoryByPair(uri, projection, sortOrder);
+                break;
+            }
             // "rate"
             case RATE: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
@@ -266,6 +517,28 @@ public class ForexProvider extends ContentProvider {
                 );
                 break;
             }
+            // "stats/*/*/#"
+            case STATS_WITH_CURRENCY_AND_WINDOW: {
+                retCursor = getStatsByCurrencyAndWindow(uri, projection, sortOrder);
+                break;
+            }
+            // "alert", "alert/#" and "alert/*/*"
+            case ALERT:
+            case ALERT_WITH_ID:
+            case ALERT_WITH_PAIR: {
+                Pair<String, String[]> alertSelection =
+                        getAlertSelection(sUriMatcher.match(uri), uri, selection, selectionArgs);
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        ForexContract.AlertEntry.TABLE_NAME,
+                        projection,
+                        alertSelection.first,
+                        alertSelection.second,
+                        null,
+                        null,
+                        sortOrder
+                );
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -283,21 +556,48 @@ public class ForexProvider extends ContentProvider {
         switch (match) {
             case RATE: {
                 normalizeDate(values);
-                long _id = db.insert(ForexContract.RateEntry.TABLE_NAME, null, values);
+                long _id;
+                db.beginTransaction();
+                try {
+                    _id = db.insert(ForexContract.RateEntry.TABLE_NAME, null, values);
+                    if (_id > 0) {
+                        RateStatsTable.rebuild(db,
+                                values.getAsString(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY),
+                                values.getAsString(ForexContract.RateEntry.COLUMN_RATE_TO_KEY));
+                        db.setTransactionSuccessful();
+                    }
+                } finally {
+                    db.endTransaction();
+                }
+                mLatestRateCache.invalidate(
+                        values.getAsString(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY));
                 if (_id > 0)
                     returnUri = ForexContract.RateEntry.buildRateUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
+                notifyRateChange(uri);
+                return returnUri;
             }
             case CURRENCY: {
                 long _id = db.insert(ForexContract.CurrencyEntry.TABLE_NAME, null, values);
+                // The latest rates carry the names and flags of the currencies
+                mLatestRateCache.clear();
                 if (_id > 0)
                     returnUri = ForexContract.CurrencyEntry.buildCurrencyUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case ALERT: {
+                // The table replaces the alert of the same pair
+                long _id = db.insert(ForexContract.AlertEntry.TABLE_NAME, null, values);
+                if (_id > 0)
+                    returnUri = ForexContract.AlertEntry.buildAlertUri(_id);
+                else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                notifyAlertChange();
+                return returnUri;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -314,13 +614,48 @@ public class ForexProvider extends ContentProvider {
         if (null == selection) selection = "1";
         switch (match) {
             case RATE:
-                rowsDeleted = db.delete(
-                        ForexContract.RateEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                Set<String> changedCurrencies;
+                db.beginTransaction();
+                try {
+                    // Only the currencies that lose the latest rate of a pair have to be read
+                    // again, the retention delete of the sync never touches the latest rates
+                    changedCurrencies = getCurrenciesWithLatestRateIn(db, selection, selectionArgs);
+                    // Same for the statistics, only the pairs losing a rate inside a window
+                    List<String[]> changedPairs =
+                            RateStatsTable.getPairsWithinWindows(db, selection, selectionArgs);
+                    rowsDeleted = db.delete(
+                            ForexContract.RateEntry.TABLE_NAME, selection, selectionArgs);
+                    for (String[] pair : changedPairs) {
+                        RateStatsTable.rebuild(db, pair[0], pair[1]);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                for (String currency : changedCurrencies) {
+                    mLatestRateCache.invalidate(currency);
+                }
+                if (rowsDeleted != 0) {
+                    notifyRateChange(uri);
+                }
+                return rowsDeleted;
             case CURRENCY:
                 rowsDeleted = db.delete(
                         ForexContract.CurrencyEntry.TABLE_NAME, selection, selectionArgs);
+                mLatestRateCache.clear();
                 break;
+            case ALERT:
+            case ALERT_WITH_ID:
+            case ALERT_WITH_PAIR: {
+                Pair<String, String[]> alertSelection =
+                        getAlertSelection(match, uri, selection, selectionArgs);
+                rowsDeleted = db.delete(ForexContract.AlertEntry.TABLE_NAME,
+                        alertSelection.first, alertSelection.second);
+                if (rowsDeleted != 0) {
+                    notifyAlertChange();
+                }
+                return rowsDeleted;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -331,6 +666,32 @@ public class ForexProvider extends ContentProvider {
         return rowsDeleted;
     }
 
+    /*
+        The start currencies with the latest rate of one of their pairs among the rates of the
+        selection.  These are the currencies whose latest rates change if the selection is deleted.
+     */
+    private static Set<String> getCurrenciesWithLatestRateIn(SQLiteDatabase db, String selection,
+                                                             String[] selectionArgs) {
+        final String rate = ForexContract.RateEntry.TABLE_NAME;
+        final String from = ForexContract.RateEntry.COLUMN_RATE_FROM_KEY;
+        final String to = ForexContract.RateEntry.COLUMN_RATE_TO_KEY;
+        final String date = ForexContract.RateEntry.COLUMN_RATE_DATE;
+
+        Set<String> currencies = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " + from + " FROM " + rate +
+                " WHERE (" + selection + ") AND " + date + " = (SELECT MAX(l." + date + ") FROM " +
+                rate + " AS l WHERE l." + from + " = " + rate + "." + from +
+                " AND l." + to + " = " + rate + "." + to + ")", selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                currencies.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return currencies;
+    }
+
     private void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(ForexContract.RateEntry.COLUMN_RATE_DATE)) {
@@ -349,13 +710,53 @@ public class ForexProvider extends ContentProvider {
         switch (match) {
             case RATE:
                 normalizeDate(values);
-                rowsUpdated = db.update(ForexContract.RateEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
-                break;
+                db.beginTransaction();
+                try {
+                    // Moving rates to another pair changes pairs unknown before the update
+                    boolean movesPairs =
+                            values.containsKey(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY) ||
+                                    values.containsKey(ForexContract.RateEntry.COLUMN_RATE_TO_KEY);
+                    List<String[]> changedPairs = movesPairs ? null :
+                            RateStatsTable.getPairs(db, selection != null ? selection : "1",
+                                    selectionArgs);
+                    rowsUpdated = db.update(ForexContract.RateEntry.TABLE_NAME, values, selection,
+                            selectionArgs);
+                    if (rowsUpdated != 0) {
+                        if (movesPairs) {
+                            RateStatsTable.rebuild(db);
+                        } else {
+                            for (String[] pair : changedPairs) {
+                                RateStatsTable.rebuild(db, pair[0], pair[1]);
+                            }
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (rowsUpdated != 0) {
+                    // An update can move a rate to another pair or day, any latest rate may change
+                    mLatestRateCache.clear();
+                    notifyRateChange(uri);
+                }
+                return rowsUpdated;
             case CURRENCY:
                 rowsUpdated = db.update(ForexContract.CurrencyEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                mLatestRateCache.clear();
                 break;
+            case ALERT:
+            case ALERT_WITH_ID:
+            case ALERT_WITH_PAIR: {
+                Pair<String, String[]> alertSelection =
+                        getAlertSelection(match, uri, selection, selectionArgs);
+                rowsUpdated = db.update(ForexContract.AlertEntry.TABLE_NAME, values,
+                        alertSelection.first, alertSelection.second);
+                if (rowsUpdated != 0) {
+                    notifyAlertChange();
+                }
+                return rowsUpdated;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -374,25 +775,99 @@ public class ForexProvider extends ContentProvider {
             case RATE:
                 db.beginTransaction();
                 int returnCount = 0;
+                Map<String, String[]> insertedPairs = new HashMap<>();
+                Set<String> insertedCurrencies = new HashSet<>();
                 try {
                     for (ContentValues value : values) {
                         normalizeDate(value);
                         long _id = db.insert(ForexContract.RateEntry.TABLE_NAME, null, value);
                         if (_id != -1) {
                             returnCount++;
+
+                            String currencyFrom = value.getAsString(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY);
+                            String currencyTo = value.getAsString(ForexContract.RateEntry.COLUMN_RATE_TO_KEY);
+                            insertedPairs.put(currencyFrom + "_" + currencyTo, new String[]{currencyFrom, currencyTo});
+                            insertedCurrencies.add(currencyFrom);
                         }
                     }
+
+                    // Only the pairs that got new rates need their statistics rebuilt
+                    for (String[] pair : insertedPairs.values()) {
+                        RateStatsTable.rebuild(db, pair[0], pair[1]);
+                    }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                // Reload the latest rates of the synced currencies before the observers are
+                // notified, so the refreshes they trigger are served from memory
+                for (String currency : insertedCurrencies) {
+                    mLatestRateCache.invalidate(currency);
+                    long generation = mLatestRateCache.getGeneration();
+                    Cursor cursor = queryLatestRates(currency, null, null);
+                    mLatestRateCache.put(currency, cursor, generation);
+                    cursor.close();
+                }
+                // Don't wake up the observers if nothing was written
+                if (returnCount > 0) {
+                    notifyRateChange(uri);
+                }
                 return returnCount;
+            case CURRENCY: {
+                // The currencies are loaded from the resources on every install or upgrade, so an
+                // existing currency is replaced by the new values instead of failing the insert
+                db.beginTransaction();
+                int currencyCount = 0;
+                try {
+                    for (ContentValues value : values) {
+                        long _id = db.insertWithOnConflict(ForexContract.CurrencyEntry.TABLE_NAME,
+                                null, value, SQLiteDatabase.CONFLICT_REPLACE);
+                        if (_id != -1) {
+                            currencyCount++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                mLatestRateCache.clear();
+                if (currencyCount > 0) {
+                    getContext().getContentResolver().notifyChange(uri, null);
+                }
+                return currencyCount;
+            }
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Applies the operations in a single transaction.  The alert observers are notified once,
+     * after the transaction is committed.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> batchChanges = new HashSet<>();
+        ContentProviderResult[] results;
+
+        mBatchChanges.set(batchChanges);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+        }
+
+        for (Uri uri : batchChanges) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
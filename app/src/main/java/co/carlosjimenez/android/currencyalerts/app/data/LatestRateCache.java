@@ -0,0 +1,201 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps in memory the latest rates of the most recently used start currencies, the rows of
+ * content://.../latest/USD with the {@link ForexContract#LATEST_RATE_COLUMNS} projection.
+ *
+ * <p>The main list, the widget and the broadcast refreshes read those rows over and over, while
+ * they only change when a sync writes new rates.  The ForexProvider owns the cache and drops only
+ * what a change can make stale.  A bulkInsert reloads the start currencies it wrote and an insert
+ * drops its start currency.  A delete drops the start currencies that lose the latest rate of one
+ * of their pairs, found in the same transaction before the rows go away, so the retention delete
+ * of the sync, which only removes old rates, keeps the cache.  An update that changes rates and
+ * any change of the currencies drop everything.
+ *
+ * <p>Every drop bumps the generation, rows read before a change are never stored after it, so a
+ * hit is always what the database would return.
+ */
+public class LatestRateCache {
+
+    // A handful of start currencies, the main one and the ones the user switched from
+    static final int DEFAULT_MAX_CURRENCIES = 4;
+
+    private static final AtomicInteger sHits = new AtomicInteger();
+    private static final AtomicInteger sMisses = new AtomicInteger();
+
+    private final LinkedHashMap<String, Entry> mEntries;
+    // Bumped by every change, a row set loaded before a change must not be stored after it
+    private long mGeneration;
+
+    LatestRateCache(final int maxCurrencies) {
+        // Access ordered, so the least recently read currency is the one evicted
+        mEntries = new LinkedHashMap<String, Entry>(maxCurrencies + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxCurrencies;
+            }
+        };
+    }
+
+    /**
+     * @param projection Projection of the query
+     * @param selection  Selection of the query
+     * @param sortOrder  Sort order of the query
+     * @return true if the query is answered by the cached rows, the full latest rates projection in
+     * the default order
+     */
+    static boolean isCacheable(String[] projection, String selection, String sortOrder) {
+        return selection == null && sortOrder == null &&
+                (projection == null || Arrays.equals(projection, ForexContract.LATEST_RATE_COLUMNS));
+    }
+
+    /**
+     * @param currency Start currency
+     * @return A new cursor over the cached latest rates of the currency, or null if they are not
+     * cached
+     */
+    synchronized Cursor get(String currency) {
+        Entry entry = mEntries.get(currency);
+        if (entry == null) {
+            sMisses.incrementAndGet();
+            return null;
+        }
+
+        sHits.incrementAndGet();
+        MatrixCursor cursor = new MatrixCursor(entry.columnNames, entry.rows.length);
+        for (Object[] row : entry.rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * @return The generation to pass to {@link #put} once the rows are loaded
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Copies the rows of the cursor into the cache, unless the rates changed after the generation
+     * was read.  The cursor is moved before the first row again.
+     *
+     * @param currency   Start currency of the rows
+     * @param cursor     Latest rates of the currency
+     * @param generation Generation read before running the query
+     */
+    void put(String currency, Cursor cursor, long generation) {
+        Entry entry = new Entry(cursor);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(currency, entry);
+            }
+        }
+    }
+
+    /**
+     * Drops the rows of a start currency, the next read goes to the database.
+     */
+    synchronized void invalidate(String currency) {
+        mGeneration++;
+        mEntries.remove(currency);
+    }
+
+    /**
+     * Drops every cached row.
+     */
+    synchronized void clear() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    synchronized boolean contains(String currency) {
+        return mEntries.containsKey(currency);
+    }
+
+    public static int getHitCount() {
+        return sHits.get();
+    }
+
+    public static int getMissCount() {
+        return sMisses.get();
+    }
+
+    public static void resetStats() {
+        sHits.set(0);
+        sMisses.set(0);
+    }
+
+    public static String getStats() {
+        int hits = sHits.get();
+        int total = hits + sMisses.get();
+        return String.format(Locale.US, "Latest rates cache: %d hits, %d misses (%.1f%% hit rate)",
+                hits, total - hits, total == 0 ? 0f : hits * 100f / total);
+    }
+
+    private static class Entry {
+        final String[] columnNames;
+        final Object[][] rows;
+
+        Entry(Cursor cursor) {
+            columnNames = cursor.getColumnNames();
+            rows = new Object[cursor.getCount()][];
+
+            int r = 0;
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_NULL:
+                            row[i] = null;
+                            break;
+                        default:
+                            row[i] = cursor.getString(i);
+                    }
+                }
+                rows[r++] = row;
+            }
+            cursor.moveToPosition(-1);
+        }
+    }
+}
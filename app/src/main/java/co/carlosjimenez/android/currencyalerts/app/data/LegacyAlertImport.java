@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
+
+/**
+ * Moves the alert kept in the shared preferences by the previous versions of the app to the
+ * alerts table.  The preferences are removed once the alert is imported, so it only happens once.
+ */
+class LegacyAlertImport {
+
+    private static final String LOG_TAG = LegacyAlertImport.class.getSimpleName();
+
+    // The saved rate statistics were prefixed with the pair they belong to
+    private static final char STATS_PAIR_SEPARATOR = '|';
+
+    private final Context mContext;
+
+    LegacyAlertImport(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Imports the alert of the shared preferences, if there is one.
+     *
+     * @param db Writable database
+     * @return true if an alert was imported
+     */
+    boolean importIfNeeded(SQLiteDatabase db) {
+        Context c = mContext;
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
+        if (!sp.contains(c.getString(R.string.pref_alert_check_currency_from_key))) {
+            return false;
+        }
+
+        boolean enabled = sp.getBoolean(c.getString(R.string.pref_alert_check_enabled_key),
+                Boolean.valueOf(c.getString(R.string.pref_alert_check_enabled_default)));
+        String currencyFrom = sp.getString(c.getString(R.string.pref_alert_check_currency_from_key), "");
+        String currencyTo = sp.getString(c.getString(R.string.pref_alert_check_currency_to_key), "");
+
+        boolean imported = false;
+        if (enabled && !currencyFrom.isEmpty() && !currencyTo.isEmpty()) {
+            ContentValues values = new ContentValues();
+            values.put(AlertEntry.COLUMN_ALERT_FROM_KEY, currencyFrom);
+            values.put(AlertEntry.COLUMN_ALERT_TO_KEY, currencyTo);
+            values.put(AlertEntry.COLUMN_ALERT_ENABLED, 1);
+            values.put(AlertEntry.COLUMN_ALERT_PERIOD, sp.getInt(c.getString(R.string.pref_alert_check_period_key),
+                    Integer.parseInt(c.getString(R.string.pref_alert_check_period_default))));
+            values.put(AlertEntry.COLUMN_ALERT_FLUCTUATION, sp.getFloat(c.getString(R.string.pref_alert_check_fluctuation_key),
+                    Float.parseFloat(c.getString(R.string.pref_alert_check_fluctuation_default))));
+            values.put(AlertEntry.COLUMN_ALERT_AVERAGE, Double.parseDouble(
+                    sp.getString(c.getString(R.string.pref_alert_check_rate_average_key),
+                            c.getString(R.string.pref_alert_check_rate_average_default))));
+
+            String stats = sp.getString(c.getString(R.string.pref_alert_check_rate_stats_key), null);
+            String pairPrefix = currencyFrom + currencyTo + STATS_PAIR_SEPARATOR;
+            if (stats != null && stats.startsWith(pairPrefix)) {
+                values.put(AlertEntry.COLUMN_ALERT_STATS, stats.substring(pairPrefix.length()));
+            }
+
+            imported = db.insert(AlertEntry.TABLE_NAME, null, values) != -1;
+            if (!imported) {
+                Log.e(LOG_TAG, "Failed to import the alert " + currencyFrom + "/" + currencyTo);
+                return false;
+            }
+        }
+
+        SharedPreferences.Editor spe = sp.edit();
+        spe.remove(c.getString(R.string.pref_alert_check_enabled_key));
+        spe.remove(c.getString(R.string.pref_alert_check_currency_from_key));
+        spe.remove(c.getString(R.string.pref_alert_check_currency_to_key));
+        spe.remove(c.getString(R.string.pref_alert_check_period_key));
+        spe.remove(c.getString(R.string.pref_alert_check_fluctuation_key));
+        spe.remove(c.getString(R.string.pref_alert_check_rate_average_key));
+        spe.remove(c.getString(R.string.pref_alert_check_rate_stats_key));
+        spe.commit();
+
+        return imported;
+    }
+}
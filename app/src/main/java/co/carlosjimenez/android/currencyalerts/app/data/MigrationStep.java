@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of the forex database schema migration.
+ *
+ * <p>A step brings the schema from {@code getVersion() - 1} to {@link #getVersion()} without
+ * losing the stored data.  Steps are run in order by {@link ForexDbHelper#migrate}.
+ */
+abstract class MigrationStep {
+
+    private final int mVersion;
+    private final String mDescription;
+
+    /**
+     * @param version     Database version the step migrates to
+     * @param description Short description of the schema change, used in the logs
+     */
+    MigrationStep(int version, String description) {
+        mVersion = version;
+        mDescription = description;
+    }
+
+    int getVersion() {
+        return mVersion;
+    }
+
+    String getDescription() {
+        return mDescription;
+    }
+
+    /**
+     * Applies the schema change.  The step runs inside the migration transaction, so it must not
+     * begin or end transactions on its own.
+     *
+     * @param db Database being migrated
+     */
+    abstract void migrate(SQLiteDatabase db);
+}
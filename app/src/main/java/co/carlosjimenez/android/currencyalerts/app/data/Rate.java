@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+/**
+ * Class that encapsulates a single conversion rate between two currencies as returned by the
+ * forex API.
+ */
+public class Rate {
+
+    private final String currencyFromId;
+    private final String currencyToId;
+    private final double value;
+
+    public Rate(String currencyFromId, String currencyToId, double value) {
+        this.currencyFromId = currencyFromId;
+        this.currencyToId = currencyToId;
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return "Rate{" +
+                "currencyFromId='" + currencyFromId + '\'' +
+                ", currencyToId='" + currencyToId + '\'' +
+                ", value=" + value +
+                '}';
+    }
+
+    public String getCurrencyFromId() {
+        return currencyFromId;
+    }
+
+    public String getCurrencyToId() {
+        return currencyToId;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the pair key used by the forex API, e.g. USD_EUR
+     */
+    public String getPair() {
+        return currencyFromId + "_" + currencyToId;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import co.carlosjimenez.android.currencyalerts.app.R;
+
+/**
+ * Dense matrix of the latest rates between every pair of the supported currencies.
+ *
+ * <p>Only the rates from the base currency, the main currency the sync downloads, are stored.  A
+ * cross rate such as EUR to JPY is derived from them as base-to-JPY / base-to-EUR, so any pair can
+ * be converted without a sync with a different base.  The currencies are addressed by their index
+ * in R.array.currency_id and the rates live in a primitive array, so the conversions don't
+ * allocate.  A matrix is immutable, a new one is built after every sync.
+ */
+public final class RateMatrix {
+
+    private final String[] mCurrencyIds;
+    private final Map<String, Integer> mIndexes;
+    private final int mBaseIndex;
+    // Units of each currency for one unit of the base currency, NaN if the rate is unknown
+    private final double[] mBaseRates;
+
+    /**
+     * @param currencyIds Supported currencies, the index of a currency in this array is its index in
+     *                    the matrix
+     * @param baseIndex   Index of the base currency
+     * @param baseRates   Rates from the base currency to each currency, NaN if unknown
+     */
+    RateMatrix(String[] currencyIds, int baseIndex, double[] baseRates) {
+        if (currencyIds.length != baseRates.length) {
+            throw new IllegalArgumentException("Expected " + currencyIds.length + " rates, got " +
+                    baseRates.length);
+        }
+
+        mCurrencyIds = currencyIds.clone();
+        mBaseIndex = baseIndex;
+        mBaseRates = baseRates.clone();
+        mBaseRates[baseIndex] = 1d;
+
+        mIndexes = new HashMap<>(currencyIds.length * 2);
+        for (int i = 0; i < currencyIds.length; i++) {
+            mIndexes.put(currencyIds[i], i);
+        }
+    }
+
+    /**
+     * Builds the matrix from the latest rates stored for the base currency.
+     *
+     * @param context      Context used to read the supported currencies and the rates
+     * @param baseCurrency Id of the base currency, usually the main currency
+     * @return The rate matrix, with NaN rates for the currencies that were not synced yet
+     */
+    public static RateMatrix load(Context context, String baseCurrency) {
+        String[] currencyIds = context.getResources().getStringArray(R.array.currency_id);
+        return load(context.getContentResolver(), currencyIds, baseCurrency);
+    }
+
+    static RateMatrix load(ContentResolver resolver, String[] currencyIds, String baseCurrency) {
+        Map<String, Integer> indexes = new HashMap<>(currencyIds.length * 2);
+        for (int i = 0; i < currencyIds.length; i++) {
+            indexes.put(currencyIds[i], i);
+        }
+
+        double[] baseRates = new double[currencyIds.length];
+        Arrays.fill(baseRates, Double.NaN);
+
+        // The default latest rates query is served from the provider's memory cache
+        Cursor cursor = resolver.query(ForexContract.RateEntry.buildLatestRates(baseCurrency),
+                ForexContract.LATEST_RATE_COLUMNS, null, null, null);
+        if (cursor != null) {
+            try {
+                int toColumn = cursor.getColumnIndex(ForexContract.RateEntry.COLUMN_RATE_TO_KEY);
+                int valueColumn = cursor.getColumnIndex(ForexContract.RateEntry.COLUMN_RATE_VALUE);
+                while (cursor.moveToNext()) {
+                    Integer index = indexes.get(cursor.getString(toColumn));
+                    if (index != null) {
+                        baseRates[index] = cursor.getDouble(valueColumn);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        Integer baseIndex = indexes.get(baseCurrency);
+        if (baseIndex == null) {
+            throw new IllegalArgumentException("Unsupported base currency: " + baseCurrency);
+        }
+        return new RateMatrix(currencyIds, baseIndex, baseRates);
+    }
+
+    public int size() {
+        return mCurrencyIds.length;
+    }
+
+    public String getCurrencyId(int index) {
+        return mCurrencyIds[index];
+    }
+
+    public String getBaseCurrencyId() {
+        return mCurrencyIds[mBaseIndex];
+    }
+
+    /**
+     * @param currencyId Id of a currency
+     * @return The index of the currency in the matrix, or -1 if it is not supported
+     */
+    public int indexOf(String currencyId) {
+        Integer index = mIndexes.get(currencyId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return true if the rate of the currency is known, so it can be converted
+     */
+    public boolean hasRate(int index) {
+        return !Double.isNaN(mBaseRates[index]);
+    }
+
+    /**
+     * @param from Index of the currency to convert from
+     * @param to   Index of the currency to convert to
+     * @return Units of the currency to for one unit of the currency from, NaN if either rate is
+     * unknown
+     */
+    public double getRate(int from, int to) {
+        return mBaseRates[to] / mBaseRates[from];
+    }
+
+    /**
+     * @return The amount of the currency from, in the currency to.  NaN if either rate is unknown
+     */
+    public double convert(double amount, int from, int to) {
+        return amount * mBaseRates[to] / mBaseRates[from];
+    }
+
+    /**
+     * Converts an amount into every currency of the matrix.
+     *
+     * @param amount Amount of the currency from
+     * @param from   Index of the currency to convert from
+     * @param out    Receives the amount in each currency, indexed like the matrix.  It must hold at
+     *               least {@link #size()} values and can be reused between calls
+     */
+    public void convertAll(double amount, int from, double[] out) {
+        final double[] baseRates = mBaseRates;
+        final double factor = amount / baseRates[from];
+        for (int i = 0; i < baseRates.length; i++) {
+            out[i] = baseRates[i] * factor;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.RateEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.StatsEntry;
+
+/**
+ * Maintains the rate statistics table, the average, min, max and count of the rates of each pair
+ * over the {@link StatsEntry#PRECOMPUTED_WINDOWS}.
+ *
+ * <p>The windows are counted back from the last rate stored for the pair.  The ForexProvider
+ * rebuilds the rows of the affected pairs in the same transaction that changes the rates, so the
+ * statistics are read with a single row lookup instead of a scan of the history.
+ */
+class RateStatsTable {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    static final String SQL_CREATE_STATS_TABLE = "CREATE TABLE " + StatsEntry.TABLE_NAME + " (" +
+            StatsEntry._ID + " INTEGER PRIMARY KEY," +
+            StatsEntry.COLUMN_STATS_FROM_KEY + " TEXT NOT NULL, " +
+            StatsEntry.COLUMN_STATS_TO_KEY + " TEXT NOT NULL, " +
+            StatsEntry.COLUMN_STATS_WINDOW + " INTEGER NOT NULL, " +
+            StatsEntry.COLUMN_STATS_AVERAGE + " REAL NOT NULL, " +
+            StatsEntry.COLUMN_STATS_MIN + " REAL NOT NULL, " +
+            StatsEntry.COLUMN_STATS_MAX + " REAL NOT NULL, " +
+            StatsEntry.COLUMN_STATS_COUNT + " INTEGER NOT NULL, " +
+            StatsEntry.COLUMN_STATS_LAST_DATE + " INTEGER NOT NULL, " +
+
+            // One row per pair and window
+            " UNIQUE (" + StatsEntry.COLUMN_STATS_FROM_KEY + ", " + StatsEntry.COLUMN_STATS_TO_KEY + ", " +
+            StatsEntry.COLUMN_STATS_WINDOW + ") ON CONFLICT REPLACE);";
+
+    private static final String PAIR_SELECTION =
+            RateEntry.COLUMN_RATE_FROM_KEY + " = ? AND " + RateEntry.COLUMN_RATE_TO_KEY + " = ?";
+
+    private RateStatsTable() {
+    }
+
+    /**
+     * Rebuilds the statistics of every pair.
+     *
+     * @param db Database to update, the caller is expected to hold a transaction
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.delete(StatsEntry.TABLE_NAME, null, null);
+        for (int window : StatsEntry.PRECOMPUTED_WINDOWS) {
+            db.execSQL(buildInsertSql(window, false));
+        }
+    }
+
+    /**
+     * Rebuilds the statistics of a pair.
+     *
+     * @param db           Database to update, the caller is expected to hold a transaction
+     * @param currencyFrom Currency from of the pair
+     * @param currencyTo   Currency to of the pair
+     */
+    static void rebuild(SQLiteDatabase db, String currencyFrom, String currencyTo) {
+        String[] pair = {currencyFrom, currencyTo};
+        db.delete(StatsEntry.TABLE_NAME,
+                StatsEntry.COLUMN_STATS_FROM_KEY + " = ? AND " + StatsEntry.COLUMN_STATS_TO_KEY + " = ?",
+                pair);
+        for (int window : StatsEntry.PRECOMPUTED_WINDOWS) {
+            db.execSQL(buildInsertSql(window, true), pair);
+        }
+    }
+
+    /**
+     * Finds the pairs whose statistics change if the rates of the selection are deleted, the pairs
+     * with a rate of the selection inside one of the windows.  The retention delete of the sync
+     * only removes rates older than every window, so it doesn't rebuild any pair.
+     *
+     * @return the pairs as {currencyFrom, currencyTo}
+     */
+    static List<String[]> getPairsWithinWindows(SQLiteDatabase db, String selection,
+                                                String[] selectionArgs) {
+        int maxWindow = 0;
+        for (int window : StatsEntry.PRECOMPUTED_WINDOWS) {
+            maxWindow = Math.max(maxWindow, window);
+        }
+
+        final String rate = RateEntry.TABLE_NAME;
+        final String from = RateEntry.COLUMN_RATE_FROM_KEY;
+        final String to = RateEntry.COLUMN_RATE_TO_KEY;
+        final String date = RateEntry.COLUMN_RATE_DATE;
+
+        return getPairs(db, "(" + selection + ") AND " + date + " > (SELECT MAX(l." + date + ") FROM " +
+                rate + " AS l WHERE l." + from + " = " + rate + "." + from +
+                " AND l." + to + " = " + rate + "." + to + ") - " + getWindowMillis(maxWindow),
+                selectionArgs);
+    }
+
+    /**
+     * Finds the pairs with a rate in the selection.
+     *
+     * @return the pairs as {currencyFrom, currencyTo}
+     */
+    static List<String[]> getPairs(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        List<String[]> pairs = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " + RateEntry.COLUMN_RATE_FROM_KEY + ", " +
+                RateEntry.COLUMN_RATE_TO_KEY + " FROM " + RateEntry.TABLE_NAME +
+                " WHERE " + selection, selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                pairs.add(new String[]{cursor.getString(0), cursor.getString(1)});
+            }
+        } finally {
+            cursor.close();
+        }
+        return pairs;
+    }
+
+    /**
+     * @return true if the window is kept in the statistics table
+     */
+    static boolean isPrecomputed(int windowDays) {
+        for (int window : StatsEntry.PRECOMPUTED_WINDOWS) {
+            if (window == windowDays) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the statistics of a pair for any window straight from the rate table.
+     *
+     * @param projection Columns of {@link StatsEntry} to return, null for all of them
+     * @return a cursor with one row, or no rows if the pair has no rates
+     */
+    static Cursor query(SQLiteDatabase db, String[] projection, String currencyFrom, String currencyTo,
+                        int windowDays) {
+        String columns = projection == null ? "*" : TextUtils.join(", ", projection);
+        return db.rawQuery("SELECT " + columns + " FROM (" + buildSelectSql(windowDays, true) + ")",
+                new String[]{currencyFrom, currencyTo});
+    }
+
+    private static String buildInsertSql(int windowDays, boolean forPair) {
+        return "INSERT INTO " + StatsEntry.TABLE_NAME + " (" +
+                StatsEntry.COLUMN_STATS_FROM_KEY + ", " +
+                StatsEntry.COLUMN_STATS_TO_KEY + ", " +
+                StatsEntry.COLUMN_STATS_WINDOW + ", " +
+                StatsEntry.COLUMN_STATS_AVERAGE + ", " +
+                StatsEntry.COLUMN_STATS_MIN + ", " +
+                StatsEntry.COLUMN_STATS_MAX + ", " +
+                StatsEntry.COLUMN_STATS_COUNT + ", " +
+                StatsEntry.COLUMN_STATS_LAST_DATE + ") " +
+                buildSelectSql(windowDays, forPair);
+    }
+
+    // The dates are local midnights, half a day of margin keeps the daylight saving days on the
+    // right side of the boundary.
+    private static long getWindowMillis(int windowDays) {
+        return windowDays * DAY_IN_MILLIS - DAY_IN_MILLIS / 2;
+    }
+
+    // rate r INNER JOIN (SELECT from, to, MAX(date) AS last_date FROM rate GROUP BY from, to) l
+    // and keep the rates of the last windowDays days of each pair.  For a single pair the
+    // subquery only reads the rates of the pair, from = ? AND to = ?, and the join does the rest.
+    private static String buildSelectSql(int windowDays, boolean forPair) {
+        long windowMillis = getWindowMillis(windowDays);
+
+        return "SELECT r." + RateEntry.COLUMN_RATE_FROM_KEY + " AS " + StatsEntry.COLUMN_STATS_FROM_KEY + ", " +
+                "r." + RateEntry.COLUMN_RATE_TO_KEY + " AS " + StatsEntry.COLUMN_STATS_TO_KEY + ", " +
+                windowDays + " AS " + StatsEntry.COLUMN_STATS_WINDOW + ", " +
+                "AVG(r." + RateEntry.COLUMN_RATE_VALUE + ") AS " + StatsEntry.COLUMN_STATS_AVERAGE + ", " +
+                "MIN(r." + RateEntry.COLUMN_RATE_VALUE + ") AS " + StatsEntry.COLUMN_STATS_MIN + ", " +
+                "MAX(r." + RateEntry.COLUMN_RATE_VALUE + ") AS " + StatsEntry.COLUMN_STATS_MAX + ", " +
+                "COUNT(*) AS " + StatsEntry.COLUMN_STATS_COUNT + ", " +
+                "l." + StatsEntry.COLUMN_STATS_LAST_DATE + " AS " + StatsEntry.COLUMN_STATS_LAST_DATE +
+                " FROM " + RateEntry.TABLE_NAME + " r INNER JOIN (SELECT " +
+                RateEntry.COLUMN_RATE_FROM_KEY + ", " + RateEntry.COLUMN_RATE_TO_KEY + ", " +
+                "MAX(" + RateEntry.COLUMN_RATE_DATE + ") AS " + StatsEntry.COLUMN_STATS_LAST_DATE +
+                " FROM " + RateEntry.TABLE_NAME +
+                (forPair ? " WHERE " + PAIR_SELECTION : "") +
+                " GROUP BY " + RateEntry.COLUMN_RATE_FROM_KEY + ", " + RateEntry.COLUMN_RATE_TO_KEY + ") l" +
+                " ON r." + RateEntry.COLUMN_RATE_FROM_KEY + " = l." + RateEntry.COLUMN_RATE_FROM_KEY +
+                " AND r." + RateEntry.COLUMN_RATE_TO_KEY + " = l." + RateEntry.COLUMN_RATE_TO_KEY +
+                " WHERE r." + RateEntry.COLUMN_RATE_DATE + " > l." + StatsEntry.COLUMN_STATS_LAST_DATE +
+                " - " + windowMillis +
+                " GROUP BY r." + RateEntry.COLUMN_RATE_FROM_KEY + ", r." + RateEntry.COLUMN_RATE_TO_KEY;
+    }
+}
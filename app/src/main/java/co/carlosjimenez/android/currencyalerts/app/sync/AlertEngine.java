@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.Currency;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * Evaluates the enabled alerts against the rates written by a sync.
+ *
+ * <p>The alerts are indexed by pair when they are loaded, so a sync only looks at the alerts of
+ * the pairs that got a new rate: the cost is one lookup per changed pair plus the alerts of those
+ * pairs, no matter how many alerts there are for the other pairs.  Every evaluated alert updates
+ * its {@link RollingRateStats}, which are written back with a single batch by {@link #save()}.
+ */
+public class AlertEngine {
+
+    private static final String LOG_TAG = AlertEngine.class.getSimpleName();
+
+    private static final String sEnabledSelection = AlertEntry.COLUMN_ALERT_ENABLED + " = 1";
+
+    // These indices are tied to AlertEntry.ALERT_COLUMNS.  If ALERT_COLUMNS changes, these
+    // must change.
+    static final int COL_ALERT_ID = 0;
+    static final int COL_ALERT_FROM = 1;
+    static final int COL_ALERT_TO = 2;
+    static final int COL_ALERT_ENABLED = 3;
+    static final int COL_ALERT_PERIOD = 4;
+    static final int COL_ALERT_FLUCTUATION = 5;
+    static final int COL_ALERT_AVERAGE = 6;
+    static final int COL_ALERT_STATS = 7;
+    static final int COL_ALERT_LAST_NOTIFIED = 8;
+
+    // These indices are tied to RateEntry.HISTORY_COLUMNS.  If HISTORY_COLUMNS changes, these
+    // must change.
+    static final int COL_RATE_DATE = 0;
+    static final int COL_RATE_VALUE = 1;
+
+    /*
+        An alert and the statistics of its rate, restored from the alerts table.
+     */
+    private static final class Rule {
+        final Alert alert;
+        RollingRateStats stats;
+
+        Rule(Alert alert, RollingRateStats stats) {
+            this.alert = alert;
+            this.stats = stats;
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+    private final Map<String, List<Rule>> mRulesByPair = new HashMap<>();
+    private final List<Rule> mEvaluatedRules = new ArrayList<>();
+    private int mRuleCount;
+
+    public AlertEngine(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    static String getPairKey(String currencyFrom, String currencyTo) {
+        return currencyFrom + "_" + currencyTo;
+    }
+
+    /**
+     * Loads the enabled alerts and indexes them by pair.
+     *
+     * @return The number of alerts loaded
+     */
+    public int load() {
+        mRulesByPair.clear();
+        mEvaluatedRules.clear();
+        mRuleCount = 0;
+
+        Cursor cursor = mContentResolver.query(AlertEntry.CONTENT_URI,
+                AlertEntry.ALERT_COLUMNS,
+                sEnabledSelection,
+                null,
+                null);
+        if (cursor == null) {
+            return 0;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                Alert alert = new Alert(cursor.getInt(COL_ALERT_ENABLED) != 0,
+                        new Currency(cursor.getString(COL_ALERT_FROM)),
+                        new Currency(cursor.getString(COL_ALERT_TO)),
+                        cursor.getInt(COL_ALERT_PERIOD),
+                        cursor.getFloat(COL_ALERT_FLUCTUATION),
+                        false);
+                alert.setId(cursor.getLong(COL_ALERT_ID));
+                alert.setRateAverage(cursor.getDouble(COL_ALERT_AVERAGE));
+                alert.setLastNotified(cursor.getLong(COL_ALERT_LAST_NOTIFIED));
+
+                // Statistics of another period, or not computed yet, are built again from the history
+                RollingRateStats stats = RollingRateStats.parse(cursor.getString(COL_ALERT_STATS));
+                if (stats != null && stats.getWindowDays() != alert.getPeriod()) {
+                    stats = null;
+                }
+
+                String pairKey = getPairKey(alert.getCurrencyFrom().getId(), alert.getCurrencyTo().getId());
+                List<Rule> rules = mRulesByPair.get(pairKey);
+                if (rules == null) {
+                    rules = new ArrayList<>(1);
+                    mRulesByPair.put(pairKey, rules);
+                }
+                rules.add(new Rule(alert, stats));
+                mRuleCount++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return mRuleCount;
+    }
+
+    public int getRuleCount() {
+        return mRuleCount;
+    }
+
+    /**
+     * @return true if there are enabled alerts for the pair
+     */
+    public boolean hasRules(String currencyFrom, String currencyTo) {
+        return mRulesByPair.containsKey(getPairKey(currencyFrom, currencyTo));
+    }
+
+    /**
+     * Updates the statistics of the alerts of the changed pairs with their new rate.
+     *
+     * @param rates      Rates written by the sync
+     * @param dayTime    Time set to now, used to convert the dates of the history
+     * @param julianDate Today
+     * @return The alerts whose fluctuation is above their threshold, with the current rate and
+     * average set
+     */
+    public List<Alert> evaluate(List<Rate> rates, Time dayTime, int julianDate) {
+        List<Alert> triggered = new ArrayList<>();
+        for (Rate rate : rates) {
+            evaluatePair(rate.getCurrencyFromId(), rate.getCurrencyToId(), rate.getValue(),
+                    dayTime, julianDate, triggered);
+        }
+        return triggered;
+    }
+
+    private void evaluatePair(String currencyFrom, String currencyTo, double value, Time dayTime,
+                              int julianDate, List<Alert> triggered) {
+        List<Rule> rules = mRulesByPair.get(getPairKey(currencyFrom, currencyTo));
+        if (rules == null || value <= 0) {
+            return;
+        }
+
+        for (Rule rule : rules) {
+            Alert alert = rule.alert;
+            if (rule.stats == null) {
+                rule.stats = loadRateHistory(alert, dayTime, julianDate);
+            }
+
+            rule.stats.add(julianDate, value);
+            rule.stats.advanceTo(julianDate);
+
+            alert.setCurrentRate(value);
+            alert.setRateAverage(rule.stats.getAverage());
+            mEvaluatedRules.add(rule);
+
+            if (alert.getCurrentFluctuation() > alert.getFluctuation()) {
+                triggered.add(alert);
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics, the average and the last notification time of the evaluated alerts,
+     * in a single transaction.
+     *
+     * @return The number of alerts written, an alert deleted since it was loaded is not counted
+     */
+    public int save() {
+        if (mEvaluatedRules.isEmpty()) {
+            return 0;
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(mEvaluatedRules.size());
+        for (Rule rule : mEvaluatedRules) {
+            operations.add(ContentProviderOperation
+                    .newUpdate(AlertEntry.buildAlertUri(rule.alert.getId()))
+                    .withValue(AlertEntry.COLUMN_ALERT_STATS, rule.stats.serialize())
+                    .withValue(AlertEntry.COLUMN_ALERT_AVERAGE, rule.alert.getRateAverage())
+                    .withValue(AlertEntry.COLUMN_ALERT_LAST_NOTIFIED, rule.alert.getLastNotified())
+                    .build());
+        }
+
+        int saved = 0;
+        try {
+            ContentProviderResult[] results =
+                    mContentResolver.applyBatch(ForexContract.CONTENT_AUTHORITY, operations);
+            for (ContentProviderResult result : results) {
+                saved += result.count;
+            }
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Error saving the alert statistics", e);
+        }
+        mEvaluatedRules.clear();
+        return saved;
+    }
+
+    /**
+     * Builds the statistics of the rate of an alert from the history within its period.  This
+     * happens only when the alert is created or changed, later syncs update the saved statistics.
+     */
+    private RollingRateStats loadRateHistory(Alert alert, Time dayTime, int julianDate) {
+        RollingRateStats stats = new RollingRateStats(alert.getPeriod());
+
+        String[] currencies = {alert.getCurrencyFrom().getId(), alert.getCurrencyTo().getId()};
+        long startDate = new Time().setJulianDay(julianDate - alert.getPeriod());
+        Uri historyUri = ForexContract.RateEntry.buildRateHistoryWithStartDate(currencies, startDate);
+
+        Cursor data = mContentResolver.query(historyUri,
+                ForexContract.RateEntry.HISTORY_COLUMNS,
+                null,
+                null,
+                ForexContract.RateEntry.COLUMN_RATE_DATE + " ASC");
+        if (data == null) {
+            return stats;
+        }
+
+        try {
+            while (data.moveToNext()) {
+                stats.add(Time.getJulianDay(data.getLong(COL_RATE_DATE), dayTime.gmtoff),
+                        data.getDouble(COL_RATE_VALUE));
+            }
+        } finally {
+            data.close();
+        }
+
+        return stats;
+    }
+}
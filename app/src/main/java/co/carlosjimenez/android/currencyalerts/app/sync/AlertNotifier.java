@@ -0,0 +1,213 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.annotation.TargetApi;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.ColorRes;
+import android.support.v7.app.NotificationCompat;
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.DetailActivity;
+import co.carlosjimenez.android.currencyalerts.app.MainActivity;
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+
+/**
+ * Posts the alerts triggered by a sync as a single notification, an inbox with one line per
+ * alert when there is more than one.
+ *
+ * <p>A pair is notified again only once the minimum interval has passed since its last
+ * notification, the rate usually stays beyond the threshold for several syncs.
+ */
+public class AlertNotifier {
+
+    private static final String LOG_TAG = AlertNotifier.class.getSimpleName();
+
+    // An ID used to post the notification.
+    public static final int NOTIFICATION_ID = 1;
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 6 * DateUtils.HOUR_IN_MILLIS;
+
+    // Lines shown by the inbox style, the rest of the alerts are counted in the summary
+    static final int MAX_INBOX_LINES = 5;
+
+    // The large icon is the same for every notification, it's decoded once per process
+    private static Bitmap sLargeIcon;
+
+    private final Context mContext;
+    private final long mMinIntervalMillis;
+
+    public AlertNotifier(Context context) {
+        this(context, DEFAULT_MIN_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param minIntervalMillis Minimum time between two notifications of the same pair
+     */
+    public AlertNotifier(Context context, long minIntervalMillis) {
+        mContext = context.getApplicationContext();
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Notifies the triggered alerts that were not notified within the minimum interval, and sets
+     * their last notification time.
+     *
+     * @param triggered Triggered alerts, with their current rate and average
+     * @param now       Current time in milliseconds
+     * @return The alerts notified
+     */
+    public List<Alert> dispatch(List<Alert> triggered, long now) {
+        List<Alert> alerts = filterRateLimited(triggered, now, mMinIntervalMillis);
+        if (alerts.isEmpty()) {
+            return alerts;
+        }
+
+        NotificationManager notificationManager = (NotificationManager)
+                mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(NOTIFICATION_ID, buildNotification(alerts));
+
+        for (Alert alert : alerts) {
+            alert.setLastNotified(now);
+        }
+        return alerts;
+    }
+
+    /**
+     * @return The alerts whose last notification is older than the minimum interval
+     */
+    static List<Alert> filterRateLimited(List<Alert> alerts, long now, long minIntervalMillis) {
+        List<Alert> result = new ArrayList<>(alerts.size());
+        for (Alert alert : alerts) {
+            if (now - alert.getLastNotified() >= minIntervalMillis) {
+                result.add(alert);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the notification of the alerts, there must be at least one.
+     */
+    Notification buildNotification(List<Alert> alerts) {
+        Context context = mContext;
+        Alert first = alerts.get(0);
+        String firstText = getNotificationText(first);
+
+        int color;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+            color = getResourceColorV22(R.color.colorAccentDark);
+        else
+            color = getResourceColor(R.color.colorAccentDark);
+
+        NotificationCompat.Builder builder =
+                (NotificationCompat.Builder) new NotificationCompat.Builder(context)
+                        .setAutoCancel(true)
+                        .setSmallIcon(first.isPositiveFluctuation() ? R.drawable.ic_trending_up_white_24dp : R.drawable.ic_trending_down_white_24dp)
+                        .setLargeIcon(getLargeIcon(context))
+                        .setColor(color)
+                        .setContentText(firstText);
+
+        Intent intent;
+        if (alerts.size() == 1) {
+            // Open the detail of the pair
+            intent = new Intent(context, DetailActivity.class);
+            String[] currencies = {first.getCurrencyFrom().getId(), first.getCurrencyTo().getId()};
+            Uri rateUri = ForexContract.RateEntry.buildCurrencyRateWithValue(currencies, 1);
+            intent.setData(rateUri);
+
+            builder.setContentTitle(context.getString(R.string.notification_title))
+                    .setStyle(new NotificationCompat.BigTextStyle()
+                            .bigText(firstText));
+        } else {
+            intent = new Intent(context, MainActivity.class);
+
+            String title = context.getString(R.string.notification_summary_title, alerts.size());
+            NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle()
+                    .setBigContentTitle(title);
+            int lines = Math.min(alerts.size(), MAX_INBOX_LINES);
+            inboxStyle.addLine(firstText);
+            for (int i = 1; i < lines; i++) {
+                inboxStyle.addLine(getNotificationText(alerts.get(i)));
+            }
+            if (alerts.size() > lines) {
+                inboxStyle.setSummaryText(context.getString(R.string.notification_more_alerts,
+                        alerts.size() - lines));
+            }
+
+            builder.setContentTitle(title)
+                    .setNumber(alerts.size())
+                    .setStyle(inboxStyle);
+        }
+
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        builder.setContentIntent(contentIntent);
+        return builder.build();
+    }
+
+    /**
+     * @return The large icon of the notifications, decoded the first time it's needed
+     */
+    static synchronized Bitmap getLargeIcon(Context context) {
+        if (sLargeIcon == null) {
+            sLargeIcon = BitmapFactory.decodeResource(context.getResources(), R.mipmap.ic_launcher);
+        }
+        return sLargeIcon;
+    }
+
+    private String getNotificationText(Alert alert) {
+        // getCurrentFluctuation sets the direction of the fluctuation, it goes first
+        double fluctuation = alert.getCurrentFluctuation();
+        return mContext.getString(R.string.notification_text,
+                alert.getCurrencyFrom().getId(),
+                alert.getCurrencyTo().getId(),
+                alert.isPositiveFluctuation() ? mContext.getString(R.string.notification_positive_fluctuation) : mContext.getString(R.string.notification_negative_fluctuation),
+                fluctuation);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private int getResourceColor(@ColorRes int resId) {
+        return mContext.getColor(resId);
+    }
+
+    @SuppressWarnings("deprecation")
+    private int getResourceColorV22(@ColorRes int resId) {
+        return mContext.getResources().getColor(resId);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import co.carlosjimenez.android.currencyalerts.app.Utility;
+import co.carlosjimenez.android.currencyalerts.app.data.Alert;
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract.AlertEntry;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * Evaluates the alerts in the process of the sync, right after the rates are written.
+ *
+ * <p>The rates go straight from the sync to a single background thread, so the sync doesn't wait
+ * for the evaluation, there's no service to start and the rates are not read back from the
+ * database.  The alerts are kept with their statistics between syncs and loaded again, with the
+ * statistics saved, after any change in the alerts table.  The saves of the pipeline change the
+ * table too, telling them apart from the changes of the user can't be done without races, so
+ * every change reloads the rules, a single query.
+ *
+ * <p>{@link AlertService} remains as the entry point for the callers that can't use the pipeline.
+ */
+public class AlertPipeline {
+
+    private static final String LOG_TAG = AlertPipeline.class.getSimpleName();
+
+    private static AlertPipeline sInstance;
+
+    private final Context mContext;
+    private final ExecutorService mExecutor;
+    private final AlertEngine mEngine;
+    private final ContentObserver mAlertObserver;
+
+    // Set when the alerts table changes, the rules are loaded again before the next evaluation
+    private final AtomicBoolean mRulesChanged = new AtomicBoolean(true);
+
+    public static synchronized AlertPipeline getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlertPipeline(context);
+        }
+        return sInstance;
+    }
+
+    AlertPipeline(Context context) {
+        this(context, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * @param executor Single thread the evaluations run on
+     */
+    AlertPipeline(Context context, ExecutorService executor) {
+        mContext = context.getApplicationContext();
+        mExecutor = executor;
+        mEngine = new AlertEngine(mContext.getContentResolver());
+
+        mAlertObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                mRulesChanged.set(true);
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(AlertEntry.CONTENT_URI, true, mAlertObserver);
+    }
+
+    /**
+     * Queues the evaluation of the rates written by a sync.  If the pipeline can't take them,
+     * the rates are handed to {@link AlertService}.
+     *
+     * @param rates Rates written to the database
+     */
+    public void submit(List<Rate> rates) {
+        if (rates.isEmpty()) {
+            return;
+        }
+
+        final List<Rate> pending = new ArrayList<>(rates);
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    evaluate(pending);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(LOG_TAG, "Alert pipeline stopped, using the alert service", e);
+            startAlertService(pending);
+        }
+    }
+
+    /**
+     * Evaluates the rates with the rules kept by the pipeline.  Runs on the thread of the
+     * pipeline.
+     *
+     * @return The number of alerts saved
+     */
+    int evaluate(List<Rate> rates) {
+        if (mRulesChanged.getAndSet(false)) {
+            mEngine.load();
+        }
+        return evaluate(mContext, mEngine, rates, LOG_TAG);
+    }
+
+    /**
+     * Evaluates the rates with the loaded rules of the engine, notifies the triggered alerts and
+     * saves the statistics.  Shared by the pipeline and {@link AlertService}.
+     *
+     * @param logTag Tag of the caller for the summary logged
+     * @return The number of alerts saved
+     */
+    static int evaluate(Context context, AlertEngine engine, List<Rate> rates, String logTag) {
+        if (engine.getRuleCount() == 0) {
+            return 0;
+        }
+
+        Time dayTime = new Time();
+        dayTime.setToNow();
+
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianDate = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        // The statistics are updated even with the notifications disabled, so every rate is
+        // part of the average once they are enabled again
+        List<Alert> triggered = engine.evaluate(rates, dayTime, julianDate);
+
+        int notified = 0;
+        if (!triggered.isEmpty() && Utility.isNotificationsEnabled(context)) {
+            // The notifier sets the last notification time, saved along with the statistics
+            notified = new AlertNotifier(context).dispatch(triggered, System.currentTimeMillis()).size();
+        }
+        int saved = engine.save();
+
+        Log.d(logTag, engine.getRuleCount() + " alerts, " + rates.size() + " new rates, " +
+                triggered.size() + " triggered, " + notified + " notified, " + saved + " saved");
+        return saved;
+    }
+
+    /**
+     * Stops the pipeline, the rates submitted later are handed to {@link AlertService}.
+     */
+    void shutdown() {
+        mExecutor.shutdown();
+        mContext.getContentResolver().unregisterContentObserver(mAlertObserver);
+    }
+
+    boolean isRulesChanged() {
+        return mRulesChanged.get();
+    }
+
+    private void startAlertService(List<Rate> rates) {
+        String[] currenciesFrom = new String[rates.size()];
+        String[] currenciesTo = new String[rates.size()];
+        double[] values = new double[rates.size()];
+        for (int i = 0; i < rates.size(); i++) {
+            Rate rate = rates.get(i);
+            currenciesFrom[i] = rate.getCurrencyFromId();
+            currenciesTo[i] = rate.getCurrencyToId();
+            values[i] = rate.getValue();
+        }
+        AlertService.startAlertService(mContext, currenciesFrom, currenciesTo, values);
+    }
+}
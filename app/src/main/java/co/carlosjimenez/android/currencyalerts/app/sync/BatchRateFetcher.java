@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * {@link RateSource} that splits the requested pairs in chunks and fetches them concurrently
+ * from another source.
+ *
+ * <p>Chunks run on a bounded pool, every attempt has its own timeout and failed or timed out
+ * attempts are retried, so the time of a fetch depends on the slowest chunk instead of the total
+ * number of pairs.  Rates of the chunks that succeed are returned even if other chunks fail.
+ */
+public class BatchRateFetcher implements RateSource {
+
+    private static final String LOG_TAG = BatchRateFetcher.class.getSimpleName();
+
+    public static final int DEFAULT_CHUNK_SIZE = 10;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 15000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    private static final long RETRY_BACKOFF_MILLIS = 250;
+
+    private final RateSource mSource;
+    private final int mChunkSize;
+    private final int mMaxConcurrency;
+    private final long mTimeoutMillis;
+    private final int mMaxRetries;
+
+    public BatchRateFetcher(RateSource source) {
+        this(source, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CONCURRENCY, DEFAULT_TIMEOUT_MILLIS, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * @param source         Source the chunks are fetched from
+     * @param chunkSize      Maximum number of pairs per request
+     * @param maxConcurrency Maximum number of chunks fetched at the same time
+     * @param timeoutMillis  Time allowed to every attempt of a chunk
+     * @param maxRetries     Number of times a failed chunk is retried
+     */
+    public BatchRateFetcher(RateSource source, int chunkSize, int maxConcurrency,
+                            long timeoutMillis, int maxRetries) {
+        if (chunkSize <= 0 || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Chunk size and concurrency must be positive");
+        }
+        mSource = source;
+        mChunkSize = chunkSize;
+        mMaxConcurrency = maxConcurrency;
+        mTimeoutMillis = timeoutMillis;
+        mMaxRetries = maxRetries;
+    }
+
+    @Override
+    public List<Rate> fetchRates(String[] pairs) throws IOException, JSONException {
+        // Nothing to fetch, a pool without threads can't be created
+        if (pairs.length == 0) {
+            return new ArrayList<>();
+        }
+
+        int chunkCount = (pairs.length + mChunkSize - 1) / mChunkSize;
+        ExecutorService chunkExecutor = Executors.newFixedThreadPool(Math.min(mMaxConcurrency, chunkCount));
+        // Attempts run apart from the chunk threads so a chunk can give up on an attempt that
+        // doesn't finish on time and retry it.
+        ExecutorService attemptExecutor = Executors.newCachedThreadPool();
+
+        try {
+            List<Future<List<Rate>>> futures = new ArrayList<>(chunkCount);
+            for (int start = 0; start < pairs.length; start += mChunkSize) {
+                String[] chunk = Arrays.copyOfRange(pairs, start, Math.min(start + mChunkSize, pairs.length));
+                futures.add(chunkExecutor.submit(new ChunkTask(chunk, attemptExecutor)));
+            }
+
+            List<Rate> rates = new ArrayList<>(pairs.length);
+            // Any throwable, a chunk can also fail with an Error
+            Throwable lastError = null;
+            int failedChunks = 0;
+            int emptyChunks = 0;
+
+            for (Future<List<Rate>> future : futures) {
+                try {
+                    List<Rate> chunkRates = future.get();
+                    if (chunkRates == null) {
+                        emptyChunks++;
+                    } else {
+                        rates.addAll(chunkRates);
+                    }
+                } catch (ExecutionException e) {
+                    failedChunks++;
+                    lastError = e.getCause();
+                }
+            }
+
+            Log.d(LOG_TAG, "Fetched " + rates.size() + " rates in " + chunkCount + " chunks, " +
+                    failedChunks + " failed");
+
+            if (failedChunks == chunkCount) {
+                throwError(lastError);
+            }
+            if (emptyChunks + failedChunks == chunkCount) {
+                // None of the chunks returned results, the request is not valid
+                return null;
+            }
+            return rates;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Fetch interrupted");
+        } finally {
+            chunkExecutor.shutdownNow();
+            attemptExecutor.shutdownNow();
+        }
+    }
+
+    /*
+        Rethrows the error as one of the exceptions the sync handles, anything else is wrapped in
+        an IOException.
+     */
+    private static void throwError(Throwable error) throws IOException, JSONException {
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof JSONException) {
+            throw (JSONException) error;
+        }
+        throw new IOException(error);
+    }
+
+    /**
+     * Fetches a chunk of pairs retrying the failed attempts.
+     */
+    private class ChunkTask implements Callable<List<Rate>> {
+
+        private final String[] mPairs;
+        private final ExecutorService mAttemptExecutor;
+
+        /**
+         * @param pairs           Pairs of this chunk
+         * @param attemptExecutor Executor to run the attempts with a timeout
+         */
+        ChunkTask(String[] pairs, ExecutorService attemptExecutor) {
+            mPairs = pairs;
+            mAttemptExecutor = attemptExecutor;
+        }
+
+        @Override
+        public List<Rate> call() throws IOException, JSONException {
+            Exception lastError = null;
+
+            for (int attempt = 0; attempt <= mMaxRetries; attempt++) {
+                try {
+                    if (attempt > 0) {
+                        Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                    }
+                    return fetch();
+                } catch (IOException | JSONException | TimeoutException e) {
+                    Log.d(LOG_TAG, "Attempt " + (attempt + 1) + " failed for " + mPairs.length +
+                            " pairs: " + e);
+                    lastError = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Chunk interrupted");
+                }
+            }
+
+            throwError(lastError);
+            return null;
+        }
+
+        private List<Rate> fetch()
+                throws IOException, JSONException, TimeoutException, InterruptedException {
+            Future<List<Rate>> attempt = mAttemptExecutor.submit(new Callable<List<Rate>>() {
+                @Override
+                public List<Rate> call() throws Exception {
+                    return mSource.fetchRates(mPairs);
+                }
+            });
+
+            try {
+                return attempt.get(mTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof JSONException) {
+                    throw (JSONException) cause;
+                }
+                throw new IOException(cause);
+            } finally {
+                attempt.cancel(true);
+            }
+        }
+    }
+}
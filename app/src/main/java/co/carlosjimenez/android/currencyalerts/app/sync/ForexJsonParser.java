@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * Pull based parser for the forex API response.
+ *
+ * <p>The response is read token by token straight from the HTTP stream, so the body is never
+ * copied into a String and no JSONObject tree is built.  Every entry of the "results" object is
+ * handed to the {@link RateHandler} as soon as it has been decoded.
+ */
+public class ForexJsonParser {
+
+    // These are the names of the JSON objects that need to be extracted.
+    static final String OWM_RESULT = "results";
+    static final String OWM_RATE_FROM = "fr";
+    static final String OWM_RATE_TO = "to";
+    static final String OWM_RATE = "val";
+
+    /**
+     * Returned by {@link #parse(InputStream, RateHandler)} when the response has no results
+     * object, which is how the API reports an invalid request.
+     */
+    public static final int NO_RESULTS = -1;
+
+    /**
+     * Callback invoked for every rate decoded from the stream.
+     */
+    public interface RateHandler {
+        void onRate(String currencyFromId, String currencyToId, double value);
+    }
+
+    private ForexJsonParser() {
+    }
+
+    /**
+     * Parses the stream and collects every rate found on it.
+     *
+     * @param in Stream with the JSON response, it is not closed by this method
+     * @return the rates found on the response, or null if the response has no results object
+     */
+    public static List<Rate> parse(InputStream in) throws IOException, JSONException {
+        final List<Rate> rates = new ArrayList<>();
+
+        int count = parse(in, new RateHandler() {
+            @Override
+            public void onRate(String currencyFromId, String currencyToId, double value) {
+                rates.add(new Rate(currencyFromId, currencyToId, value));
+            }
+        });
+
+        return count == NO_RESULTS ? null : rates;
+    }
+
+    /**
+     * Parses the stream and sends every rate found on it to the given handler.
+     *
+     * @param in      Stream with the JSON response, it is not closed by this method
+     * @param handler Handler receiving the decoded rates
+     * @return the number of rates decoded, or {@link #NO_RESULTS} if the response has no
+     * results object
+     */
+    public static int parse(InputStream in, RateHandler handler) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        int count = NO_RESULTS;
+
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new JSONException("Forex response is not a JSON object");
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (OWM_RESULT.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    count = readResults(reader, handler);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader reports unexpected tokens with runtime exceptions, translate them so
+            // they are handled the same way as the JSONObject parsing errors.
+            throw new JSONException(e.getMessage());
+        }
+
+        return count;
+    }
+
+    private static int readResults(JsonReader reader, RateHandler handler)
+            throws IOException, JSONException {
+        int count = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String pair = reader.nextName();
+            String rateFrom = null;
+            String rateTo = null;
+            double rate = 0;
+            boolean hasRate = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_RATE_FROM.equals(name)) {
+                    rateFrom = reader.nextString();
+                } else if (OWM_RATE_TO.equals(name)) {
+                    rateTo = reader.nextString();
+                } else if (OWM_RATE.equals(name)) {
+                    rate = reader.nextDouble();
+                    hasRate = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (rateFrom == null || rateTo == null || !hasRate) {
+                throw new JSONException("Incomplete rate for " + pair);
+            }
+
+            handler.onRate(rateFrom, rateTo, rate);
+            count++;
+        }
+        reader.endObject();
+
+        return count;
+    }
+}
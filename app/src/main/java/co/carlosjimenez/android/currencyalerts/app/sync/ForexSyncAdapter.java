@@ -32,35 +32,29 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.content.LocalBroadcastManager;
 import android.text.format.Time;
 import android.util.Log;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.SettingsSnapshot;
 import co.carlosjimenez.android.currencyalerts.app.Utility;
-import co.carlosjimenez.android.currencyalerts.app.data.Alert;
 import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
 
 public class ForexSyncAdapter extends AbstractThreadedSyncAdapter {
 
@@ -79,16 +73,39 @@ public class ForexSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int FOREX_STATUS_UNKNOWN = 3;
     public static final int FOREX_STATUS_INVALID = 4;
 
-    private Alert mAlertData;
-    private double mCurrentAlertRate;
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({FOREX_STATUS_OK, FOREX_STATUS_SERVER_DOWN, FOREX_STATUS_SERVER_INVALID, FOREX_STATUS_UNKNOWN, FOREX_STATUS_INVALID})
     public @interface ForexStatus {
     }
 
+    private final RateSource mRateSource;
+    private final RateSnapshot mSnapshot = new RateSnapshot();
+    private boolean mDeltaSyncEnabled = true;
+
     public ForexSyncAdapter(Context context, boolean autoInitialize) {
+        this(context, autoInitialize,
+                new BatchRateFetcher(new HttpRateSource(new RateResponseCache(context))));
+    }
+
+    /**
+     * @param rateSource Source used to fetch the rates, the tests pass a fake source to sync
+     *                   without network access.
+     */
+    public ForexSyncAdapter(Context context, boolean autoInitialize, RateSource rateSource) {
         super(context, autoInitialize);
+        mRateSource = rateSource;
+    }
+
+    /**
+     * Enables or disables the delta sync.  When enabled, only the rates whose value changed since
+     * the last sync are written to the database.
+     *
+     * @param enabled false to write every fetched rate on each sync
+     */
+    public void setDeltaSyncEnabled(boolean enabled) {
+        mDeltaSyncEnabled = enabled;
+        mSnapshot.clear();
     }
 
     /**
@@ -189,228 +206,128 @@ public class ForexSyncAdapter extends AbstractThreadedSyncAdapter {
         getSyncAccount(context);
     }
 
-    /**
-     * Sets the forex status into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     *
-     * @param c           Context to get the PreferenceManager from.
-     * @param forexStatus The IntDef value to set
-     */
-    static private void setForexStatus(Context c, @ForexStatus int forexStatus) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putInt(c.getString(R.string.pref_forex_status_key), forexStatus);
-        spe.commit();
-    }
-
-    /**
-     * Sets the forex sync date into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     *
-     * @param c             Context to get the PreferenceManager from.
-     * @param forexSyncDate The IntDef value to set
-     */
-    static private void setForexSyncDate(Context c, long forexSyncDate) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putLong(c.getString(R.string.pref_forex_sync_date_key), forexSyncDate);
-        spe.commit();
-    }
-
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-        String currencies = "";
-
-        // Will contain the raw JSON response as a string.
-        String forexJsonStr = null;
-
+        // The status and date of the sync are written together once it's over
+        SyncStatusWriter statusWriter = new SyncStatusWriter(getContext());
         try {
-            mAlertData = Utility.getAlertSettings(getContext(), false);
-
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are available at currencyconverterapi API page.
-            final String FOREX_BASE_URL = "http://free.currencyconverterapi.com/api/v3/convert?";
-            final String QUERY_PARAM = "q";
-            String currencyQueryStr = Utility.getSyncCurrencies(getContext());
+            String[] pairs = SettingsSnapshot.get(getContext()).getSyncPairs();
 
-            if (currencyQueryStr.isEmpty()) {
+            if (pairs.length == 0) {
                 Log.d(LOG_TAG, "No currencies to sync");
                 return;
             }
 
-            Uri currencyUri = Uri.parse(FOREX_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, currencyQueryStr)
-                    .build();
-
-            URL url = new URL(currencyUri.toString());
-
-            // Create the request to CurrencyConverterAPI, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
-
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setForexStatus(getContext(), FOREX_STATUS_SERVER_DOWN);
-                return;
-            }
-            forexJsonStr = buffer.toString();
-            getForexDataFromJson(forexJsonStr, currencyQueryStr);
+            List<Rate> rates = mRateSource.fetchRates(pairs);
+            getForexDataFromJson(rates, syncResult, statusWriter);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the forex data, there's no point in attemping
             // to parse it.
-            setForexStatus(getContext(), FOREX_STATUS_SERVER_DOWN);
+            statusWriter.setForexStatus(FOREX_STATUS_SERVER_DOWN);
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setForexStatus(getContext(), FOREX_STATUS_SERVER_INVALID);
+            statusWriter.setForexStatus(FOREX_STATUS_SERVER_INVALID);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
-            }
+            statusWriter.apply();
         }
-
-        // This will only happen if there was an error getting or parsing the forex.
-        return;
     }
 
     /**
-     * Take the String representing the complete forex in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     * <p/>
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Take the rates decoded from the forex JSON response and store them in the database.
+     *
+     * <p>With the delta sync enabled, rates already stored for the day with the same value are
+     * skipped, so unchanged pairs are neither rewritten nor notified to the observers.
+     *
+     * @param rates        Rates decoded by {@link ForexJsonParser}, null if the response didn't
+     *                     contain any results.
+     * @param syncResult   SyncResult where the written and skipped rows are reported.
+     * @param statusWriter Writer of the status and date of the sync
      */
-    private void getForexDataFromJson(String forexJsonStr, String currencyQuery)
-            throws JSONException {
-
-        // Now we have a String representing the complete forex in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-        final String OWM_RESULT = "results";
-        final String OWM_RATE_FROM = "fr";
-        final String OWM_RATE_TO = "to";
-        final String OWM_RATE = "val";
-        String[] currencies;
-        boolean alertAvailable = false;
-
-        try {
-            if (mAlertData != null && mAlertData.getCurrencyFrom() != null && mAlertData.getCurrencyTo() != null) {
-                alertAvailable = true;
-            }
-
-            JSONObject forexJson = new JSONObject(forexJsonStr);
-
-            // do we have an error?
-            if (!forexJson.has(OWM_RESULT)) {
-                setForexStatus(getContext(), FOREX_STATUS_INVALID);
-                return;
-            }
-
-            currencies = currencyQuery.split(",");
+    private void getForexDataFromJson(List<Rate> rates, SyncResult syncResult, SyncStatusWriter statusWriter) {
+        // do we have an error?
+        if (rates == null) {
+            statusWriter.setForexStatus(FOREX_STATUS_INVALID);
+            return;
+        }
 
-            JSONObject forexResultObject = forexJson.getJSONObject(OWM_RESULT);
+        // OWM returns daily rates based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
 
-            // OWM returns daily rates based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our rates.
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our rates.
+        Time dayTime = new Time();
+        dayTime.setToNow();
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianDate = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
 
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianDate = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        // now we work exclusively in UTC
+        dayTime = new Time();
+        long dateTime = dayTime.setJulianDay(julianDate);
 
-            // now we work exclusively in UTC
-            dayTime = new Time();
-            long dateTime = dayTime.setJulianDay(julianDate);
+        if (mDeltaSyncEnabled && !mSnapshot.isLoaded(dateTime)) {
+            mSnapshot.load(getContext().getContentResolver(), dateTime);
+        }
 
-            // Insert the new rates information into the database
-            Vector<ContentValues> cVVector = new Vector<>(currencies.length);
+        // Insert the new rates information into the database
+        Vector<ContentValues> cVVector = new Vector<>(rates.size());
+        List<Rate> written = new ArrayList<>(rates.size());
+        int skipped = 0;
 
-            for (int i = 0; i < currencies.length; i++) {
+        for (Rate rate : rates) {
+            if (mDeltaSyncEnabled && mSnapshot.isUnchanged(rate)) {
+                skipped++;
+                continue;
+            }
 
-                JSONObject currencyObject = forexResultObject.getJSONObject(currencies[i]);
-                String rate_from = currencyObject.getString(OWM_RATE_FROM);
-                String rate_to = currencyObject.getString(OWM_RATE_TO);
-                double result = currencyObject.getDouble(OWM_RATE);
+            ContentValues forexValues = new ContentValues();
 
-                ContentValues forexValues = new ContentValues();
+            forexValues.put(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY, rate.getCurrencyFromId());
+            forexValues.put(ForexContract.RateEntry.COLUMN_RATE_TO_KEY, rate.getCurrencyToId());
+            forexValues.put(ForexContract.RateEntry.COLUMN_RATE_DATE, dateTime);
+            forexValues.put(ForexContract.RateEntry.COLUMN_RATE_VALUE, rate.getValue());
 
-                forexValues.put(ForexContract.RateEntry.COLUMN_RATE_FROM_KEY, rate_from);
-                forexValues.put(ForexContract.RateEntry.COLUMN_RATE_TO_KEY, rate_to);
-                forexValues.put(ForexContract.RateEntry.COLUMN_RATE_DATE, dateTime);
-                forexValues.put(ForexContract.RateEntry.COLUMN_RATE_VALUE, result);
+            cVVector.add(forexValues);
+            written.add(rate);
+            if (mDeltaSyncEnabled) {
+                mSnapshot.put(rate);
+            }
+        }
 
-                if (alertAvailable &&
-                        mAlertData.getCurrencyFrom().getId().equals(rate_from) &&
-                        mAlertData.getCurrencyTo().getId().equals(rate_to)) {
-                    mCurrentAlertRate = result;
-                }
+        syncResult.stats.numSkippedEntries += skipped;
 
-                cVVector.add(forexValues);
-            }
+        // add to database
+        if (cVVector.size() > 0) {
+            ContentValues[] cvArray = new ContentValues[cVVector.size()];
+            cVVector.toArray(cvArray);
+            int inserted = getContext().getContentResolver().bulkInsert(ForexContract.RateEntry.CONTENT_URI, cvArray);
+            syncResult.stats.numInserts += inserted;
 
-            int inserted = 0;
-            // add to database
-            if (cVVector.size() > 0) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(ForexContract.RateEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(ForexContract.RateEntry.CONTENT_URI,
-                        ForexContract.RateEntry.COLUMN_RATE_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianDate - FOREX_DAYS_TO_KEEP))});
-
-                setForexSyncDate(getContext(), System.currentTimeMillis());
-                sendSyncBroadcast(FOREX_STATUS_OK);
-                checkCurrencyData();
+            // Some rows didn't make it to the database, the snapshot can't be trusted anymore
+            if (inserted != cvArray.length) {
+                mSnapshot.clear();
             }
 
-            Log.d(LOG_TAG, "ForexSyncAdapter: Sync Complete. " + cVVector.size() + " Inserted");
-            setForexStatus(getContext(), FOREX_STATUS_OK);
+            // delete old data so we don't build up an endless history
+            getContext().getContentResolver().delete(ForexContract.RateEntry.CONTENT_URI,
+                    ForexContract.RateEntry.COLUMN_RATE_DATE + " <= ?",
+                    new String[]{Long.toString(dayTime.setJulianDay(julianDate - FOREX_DAYS_TO_KEEP))});
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setForexStatus(getContext(), FOREX_STATUS_SERVER_INVALID);
+            sendSyncBroadcast(FOREX_STATUS_OK);
+            checkCurrencyData(written);
         }
+
+        // The rates were checked even if none of them changed or the source reported them as
+        // not modified, so the sync date still moves on
+        statusWriter.setForexSyncDate(System.currentTimeMillis());
+
+        Log.d(LOG_TAG, "ForexSyncAdapter: Sync Complete. " + cVVector.size() + " Inserted, " + skipped + " Unchanged");
+        statusWriter.setForexStatus(FOREX_STATUS_OK);
     }
 
     /**
@@ -429,11 +346,14 @@ public class ForexSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * This method request the Alert Service to run and validate the data to see if it needs
-     * to alert the user about any currency rise or fall.
+     * Hand the rates written by this sync to the alert pipeline, to validate the data and see if
+     * it needs to alert the user about any currency rise or fall.  Only the rates written by this
+     * sync are evaluated, the alerts of the unchanged pairs can't have changed.
+     *
+     * @param rates Rates written to the database
      */
-    private void checkCurrencyData() {
-        AlertService.startAlertService(getContext(), mCurrentAlertRate);
+    private void checkCurrencyData(List<Rate> rates) {
+        AlertPipeline.getInstance(getContext()).submit(rates);
     }
 
-}
\ No newline at end of file
+}
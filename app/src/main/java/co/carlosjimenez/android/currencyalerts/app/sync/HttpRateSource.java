@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * {@link RateSource} that fetches the rates from the currencyconverterapi.com API.
+ *
+ * <p>When created with a {@link RateResponseCache}, a request made inside the freshness window
+ * of a previous one is answered from the cache, and older ones are sent as conditional requests.
+ * In both cases the cached rates are returned, the delta sync of the caller drops the ones that
+ * are already stored.  Whether they were stored is only known after the caller writes them, a
+ * fetch whose rates never reached the database must not hide them from the next one.
+ */
+public class HttpRateSource implements RateSource {
+
+    private static final String LOG_TAG = HttpRateSource.class.getSimpleName();
+
+    // Possible parameters are available at currencyconverterapi API page.
+    public static final String FOREX_BASE_URL = "http://free.currencyconverterapi.com/api/v3/convert?";
+    static final String QUERY_PARAM = "q";
+
+    // A request that doesn't finish on time is abandoned by the BatchRateFetcher, these
+    // timeouts make sure the abandoned connection doesn't keep its thread forever.
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    // A manual refresh right after a periodic sync is answered from the cache
+    public static final long DEFAULT_MIN_FRESHNESS_MILLIS = 2 * 60 * 1000;
+
+    private final String mBaseUrl;
+    private final RateResponseCache mCache;
+    private long mMinFreshnessMillis = DEFAULT_MIN_FRESHNESS_MILLIS;
+
+    public HttpRateSource() {
+        this(FOREX_BASE_URL, null);
+    }
+
+    /**
+     * @param cache Cache for the responses, null to always download the full response
+     */
+    public HttpRateSource(RateResponseCache cache) {
+        this(FOREX_BASE_URL, cache);
+    }
+
+    /**
+     * @param baseUrl Base URL of an API compatible with currencyconverterapi.com
+     */
+    public HttpRateSource(String baseUrl) {
+        this(baseUrl, null);
+    }
+
+    /**
+     * @param baseUrl Base URL of an API compatible with currencyconverterapi.com
+     * @param cache   Cache for the responses, null to always download the full response
+     */
+    public HttpRateSource(String baseUrl, RateResponseCache cache) {
+        mBaseUrl = baseUrl;
+        mCache = cache;
+    }
+
+    /**
+     * Sets how long a cached response is used without asking the server.
+     *
+     * @param minFreshnessMillis Freshness window, 0 to always send a conditional request
+     */
+    public void setMinFreshnessMillis(long minFreshnessMillis) {
+        mMinFreshnessMillis = minFreshnessMillis;
+    }
+
+    @Override
+    public List<Rate> fetchRates(String[] pairs) throws IOException, JSONException {
+        // The pairs are sorted so the same pair-set always maps to the same cache entry
+        String[] sortedPairs = pairs.clone();
+        Arrays.sort(sortedPairs);
+        String query = TextUtils.join(",", sortedPairs);
+
+        String cacheKey = null;
+        RateResponseCache.Entry cacheEntry = null;
+        long now = System.currentTimeMillis();
+
+        if (mCache != null) {
+            cacheKey = RateResponseCache.keyFor(query);
+            cacheEntry = mCache.get(cacheKey);
+
+            if (cacheEntry != null && now - cacheEntry.fetchedAt >= 0 &&
+                    now - cacheEntry.fetchedAt < mMinFreshnessMillis) {
+                RateResponseCache.recordHit();
+                return fromCache(cacheKey);
+            }
+        }
+
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+
+        try {
+            Uri currencyUri = Uri.parse(mBaseUrl).buildUpon()
+                    .appendQueryParameter(QUERY_PARAM, query)
+                    .build();
+
+            URL url = new URL(currencyUri.toString());
+
+            // Create the request to CurrencyConverterAPI, and open the connection
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setRequestMethod("GET");
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (cacheEntry != null) {
+                if (cacheEntry.etag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", cacheEntry.etag);
+                }
+                if (cacheEntry.lastModified != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", cacheEntry.lastModified);
+                }
+            }
+            urlConnection.connect();
+
+            if (cacheEntry != null &&
+                    urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                RateResponseCache.recordNotModified();
+                mCache.touch(cacheKey, cacheEntry, now);
+                return fromCache(cacheKey);
+            }
+
+            inputStream = urlConnection.getInputStream();
+            if (inputStream == null) {
+                throw new IOException("No response from " + mBaseUrl);
+            }
+
+            if (mCache == null) {
+                // The response is decoded straight from the stream, an empty stream is reported
+                // by the parser as an EOFException.
+                return ForexJsonParser.parse(new BufferedInputStream(inputStream));
+            }
+
+            RateResponseCache.recordMiss();
+
+            // The body is kept in memory so it can be stored once it's known to be valid
+            byte[] body = RateResponseCache.readFully(new BufferedInputStream(inputStream));
+            List<Rate> rates = ForexJsonParser.parse(new ByteArrayInputStream(body));
+            if (rates != null) {
+                mCache.put(cacheKey, urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"), body, now);
+            } else {
+                mCache.remove(cacheKey);
+            }
+            return rates;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers a request with a cached response that is still valid.
+     *
+     * @param key Cache key of the response
+     * @return the cached rates
+     */
+    private List<Rate> fromCache(String key)
+            throws IOException, JSONException {
+        Log.d(LOG_TAG, "Rates not modified, " + RateResponseCache.getStats());
+
+        byte[] body = mCache.getBody(key);
+        if (body == null) {
+            throw new IOException("Cached response " + key + " is missing");
+        }
+        return ForexJsonParser.parse(new ByteArrayInputStream(body));
+    }
+}
@@ -24,15 +24,12 @@
 
 package co.carlosjimenez.android.currencyalerts.app.sync;
 
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.TypedArray;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.AsyncTask;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.support.annotation.IntDef;
 import android.util.Log;
 
@@ -40,6 +37,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Vector;
 
+import co.carlosjimenez.android.currencyalerts.app.FlagRepository;
 import co.carlosjimenez.android.currencyalerts.app.R;
 import co.carlosjimenez.android.currencyalerts.app.Utility;
 import co.carlosjimenez.android.currencyalerts.app.data.Currency;
@@ -73,123 +71,86 @@ public class LoadCurrencyTask extends AsyncTask<Void, Void, Integer> {
         mContext = context;
     }
 
-    /**
-     * Sets the currency status into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     *
-     * @param c              Context to get the PreferenceManager from.
-     * @param currencyStatus The value to set
-     */
-    static private void setCurrencyStatus(Context c, @CurrencyStatus int currencyStatus) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putInt(c.getString(R.string.pref_currency_status_key), currencyStatus);
-        spe.commit();
-    }
-
-    /**
-     * Sets the sync currencies into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     *
-     * <p>This preference is required for the Sync Adapter, as it will be a parameter to obtain the
-     * currency rates for the currencies listed on this string.
-     *
-     * @param c              Context to get the PreferenceManager from.
-     * @param currencies     The list of currencies to be fetched from the API
-     */
-    static private void setSyncCurrencies(Context c, String currencies) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putString(c.getString(R.string.pref_displayed_currencies_key), currencies);
-        spe.commit();
-    }
-
     @Override
     protected Integer doInBackground(Void... params) {
 
         // Stop the task if the currencies have already been loaded.
         if (Utility.getCurrencyStatus(mContext) == CURRENCY_STATUS_OK) {
+            FlagRepository.getInstance(mContext).prefetchAll();
             return 0;
         }
 
+        long startTime = SystemClock.elapsedRealtime();
         Vector<ContentValues> cVVector = getCurrencies();
-        long currencyRowId;
         int i = 0;
         String currencies = "";
         String currencyId = "";
         Currency mainCurrency = Utility.getMainCurrency(mContext);
 
+        for (ContentValues currencyValue : cVVector) {
+
+            currencyId = currencyValue.getAsString(ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID);
+            if (!currencyId.equals(mainCurrency.getId())) {
+                if (currencies.length() > 1)
+                    currencies = currencies + "," + mainCurrency.getId() + "_" + currencyId;
+                else
+                    currencies = mainCurrency.getId() + "_" + currencyId;
+            }
+        }
+
         try {
-            for (ContentValues currencyValue : cVVector) {
-
-                currencyId = currencyValue.getAsString(ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID);
-                if (!currencyId.equals(mainCurrency.getId())) {
-                    if (currencies.length() > 1)
-                        currencies = currencies + "," + mainCurrency.getId() + "_" + currencyId;
-                    else
-                        currencies = mainCurrency.getId() + "_" + currencyId;
-                }
-
-                currencyRowId = addCurrency(currencyValue);
-                i++;
+            // The currencies are usually imported from the seed database when the provider opens
+            // it, they are only inserted here when the seed is missing or incomplete
+            i = countCurrencies();
+            if (i < cVVector.size()) {
+                // A single transaction and a single notification for all the currencies
+                ContentValues[] cvArray = new ContentValues[cVVector.size()];
+                cVVector.toArray(cvArray);
+                i = mContext.getContentResolver().bulkInsert(ForexContract.CurrencyEntry.CONTENT_URI, cvArray);
             }
         } catch (Exception e) {
-            setCurrencyStatus(mContext, CURRENCY_STATUS_INVALID);
+            Log.e(LOG_TAG, "Error loading the currencies", e);
+        }
+
+        SyncStatusWriter statusWriter = new SyncStatusWriter(mContext);
+        if (i != cVVector.size()) {
+            statusWriter.setCurrencyStatus(CURRENCY_STATUS_INVALID).apply();
+            return i;
         }
 
-        setCurrencyStatus(mContext, CURRENCY_STATUS_OK);
-        setSyncCurrencies(mContext, currencies);
+        // The sync currencies are required by the Sync Adapter, as they will be a parameter to
+        // obtain the currency rates.  They are written along with the status, before the sync.
+        statusWriter.setCurrencyStatus(CURRENCY_STATUS_OK)
+                .setSyncCurrencies(currencies)
+                .apply();
 
-        Log.d(LOG_TAG, "Inserted currencies : " + i);
+        Log.d(LOG_TAG, "Loaded currencies : " + i + " in " +
+                (SystemClock.elapsedRealtime() - startTime) + " ms");
         ForexSyncAdapter.syncImmediately(mContext);
 
+        // The flags of the list and the widget are ready before they are shown
+        FlagRepository.getInstance(mContext).prefetchAll();
+
         return i;
     }
 
     /**
-     * Helper method to handle insertion of a new currency in the forex database.
-     *
-     * @param currencyValue Currency information to be stored.
-     * @return the row ID of the added location.
+     * @return The number of currencies stored in the forex database
      */
-    long addCurrency(ContentValues currencyValue) {
-        long currencyRowId;
-        String currencyId = currencyValue.getAsString(ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID);
-
-        // First, check if the location with this city name exists in the db
-        Cursor currencyCursor = mContext.getContentResolver().query(
+    int countCurrencies() {
+        Cursor cursor = mContext.getContentResolver().query(
                 ForexContract.CurrencyEntry.CONTENT_URI,
                 new String[]{ForexContract.CurrencyEntry._ID},
-                ForexContract.CurrencyEntry.COLUMN_CURRENCY_ID + " = ?",
-                new String[]{currencyId},
+                null,
+                null,
                 null);
-
-        if (currencyCursor.moveToFirst()) {
-            int currencyIdIndex = currencyCursor.getColumnIndex(ForexContract.CurrencyEntry._ID);
-            currencyRowId = currencyCursor.getLong(currencyIdIndex);
-
-            int updatedRows = mContext.getContentResolver().update(
-                    ForexContract.CurrencyEntry.CONTENT_URI,
-                    currencyValue,
-                    ForexContract.CurrencyEntry._ID + " = ?",
-                    new String[]{String.valueOf(currencyRowId)}
-            );
-
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // Insert currency data into the database
-            Uri insertedUri = mContext.getContentResolver().insert(
-                    ForexContract.CurrencyEntry.CONTENT_URI,
-                    currencyValue
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            currencyRowId = ContentUris.parseId(insertedUri);
+        if (cursor == null) {
+            return 0;
         }
 
-        currencyCursor.close();
-        // Wait, that worked?  Yes!
-        return currencyRowId;
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
     }
 
     /**
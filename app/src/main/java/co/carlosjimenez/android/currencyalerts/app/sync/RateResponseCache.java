@@ -0,0 +1,311 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of the forex API responses, keyed by the pair-set query that produced them.
+ *
+ * <p>Each entry keeps the response body along with its ETag, Last-Modified and fetch time, so
+ * the {@link HttpRateSource} can skip a request made inside the freshness window or turn it
+ * into a conditional request.
+ */
+public class RateResponseCache {
+
+    private static final String LOG_TAG = RateResponseCache.class.getSimpleName();
+
+    static final String CACHE_DIR_NAME = "rate_responses";
+
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".meta";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private static final String META_ETAG = "etag";
+    private static final String META_LAST_MODIFIED = "last_modified";
+    private static final String META_FETCHED_AT = "fetched_at";
+
+    // Counters shared by every cache instance, so the savings of all the syncs can be checked
+    // from a single place.
+    private static final AtomicInteger sHitCount = new AtomicInteger();
+    private static final AtomicInteger sNotModifiedCount = new AtomicInteger();
+    private static final AtomicInteger sMissCount = new AtomicInteger();
+
+    private final File mDirectory;
+
+    public RateResponseCache(Context context) {
+        this(new File(context.getCacheDir(), CACHE_DIR_NAME));
+    }
+
+    /**
+     * @param directory Directory where the responses are stored, created if it doesn't exist.
+     */
+    public RateResponseCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Cached response for a pair-set query.
+     */
+    static class Entry {
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+
+        Entry(String etag, String lastModified, long fetchedAt) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * @param query Pair-set query, e.g. USD_EUR,USD_COP
+     * @return the key under which the response to the query is stored
+     */
+    static String keyFor(String query) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(query.getBytes("UTF-8"));
+
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Every platform has SHA-1 and UTF-8, fall back to the plain hash code anyway
+            return Integer.toHexString(query.hashCode());
+        }
+    }
+
+    /**
+     * @return the cached entry for the key, or null if there is none
+     */
+    synchronized Entry get(String key) {
+        File metaFile = new File(mDirectory, key + META_EXTENSION);
+        if (!metaFile.exists() || !new File(mDirectory, key + BODY_EXTENSION).exists()) {
+            return null;
+        }
+
+        Properties meta = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(metaFile);
+            meta.load(in);
+            return new Entry(meta.getProperty(META_ETAG),
+                    meta.getProperty(META_LAST_MODIFIED),
+                    Long.parseLong(meta.getProperty(META_FETCHED_AT, "0")));
+        } catch (IOException | NumberFormatException e) {
+            Log.e(LOG_TAG, "Error reading cache entry " + key, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return the cached response body for the key, or null if it can't be read
+     */
+    synchronized byte[] getBody(String key) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(new File(mDirectory, key + BODY_EXTENSION));
+            return readFully(in);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading cached response " + key, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores a response, replacing the previous one for the same key.
+     *
+     * @param key          Key returned by {@link #keyFor(String)}
+     * @param etag         ETag header of the response, may be null
+     * @param lastModified Last-Modified header of the response, may be null
+     * @param body         Response body
+     * @param fetchedAt    Time the response was received
+     */
+    synchronized void put(String key, String etag, String lastModified, byte[] body, long fetchedAt) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create cache directory " + mDirectory);
+            return;
+        }
+
+        try {
+            writeAtomically(new File(mDirectory, key + BODY_EXTENSION), body);
+            writeMeta(key, new Entry(etag, lastModified, fetchedAt));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error storing cached response " + key, e);
+            remove(key);
+        }
+    }
+
+    /**
+     * Moves the fetch time of an entry forward, used when the server confirms the cached
+     * response is still valid.
+     */
+    synchronized void touch(String key, Entry entry, long fetchedAt) {
+        try {
+            writeMeta(key, new Entry(entry.etag, entry.lastModified, fetchedAt));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error updating cache entry " + key, e);
+            remove(key);
+        }
+    }
+
+    /**
+     * Removes the cached response for the key.
+     */
+    synchronized void remove(String key) {
+        new File(mDirectory, key + META_EXTENSION).delete();
+        new File(mDirectory, key + BODY_EXTENSION).delete();
+    }
+
+    /**
+     * Removes every cached response.
+     */
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private void writeMeta(String key, Entry entry) throws IOException {
+        Properties meta = new Properties();
+        if (entry.etag != null) {
+            meta.setProperty(META_ETAG, entry.etag);
+        }
+        if (entry.lastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, entry.lastModified);
+        }
+        meta.setProperty(META_FETCHED_AT, Long.toString(entry.fetchedAt));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        meta.store(out, null);
+        writeAtomically(new File(mDirectory, key + META_EXTENSION), out.toByteArray());
+    }
+
+    // The data is written to a temporary file first so a sync killed halfway never leaves a
+    // truncated response behind.
+    private void writeAtomically(File file, byte[] data) throws IOException {
+        File tempFile = new File(mDirectory, file.getName() + TEMP_EXTENSION);
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error closing stream", e);
+            }
+        }
+    }
+
+    static void recordHit() {
+        sHitCount.incrementAndGet();
+    }
+
+    static void recordNotModified() {
+        sNotModifiedCount.incrementAndGet();
+    }
+
+    static void recordMiss() {
+        sMissCount.incrementAndGet();
+    }
+
+    /**
+     * @return number of requests answered from the cache without going to the network
+     */
+    public static int getHitCount() {
+        return sHitCount.get();
+    }
+
+    /**
+     * @return number of conditional requests the server answered with 304 Not Modified
+     */
+    public static int getNotModifiedCount() {
+        return sNotModifiedCount.get();
+    }
+
+    /**
+     * @return number of requests that downloaded the full response
+     */
+    public static int getMissCount() {
+        return sMissCount.get();
+    }
+
+    public static void resetStats() {
+        sHitCount.set(0);
+        sNotModifiedCount.set(0);
+        sMissCount.set(0);
+    }
+
+    public static String getStats() {
+        return "hits=" + getHitCount() + ", not modified=" + getNotModifiedCount() +
+                ", misses=" + getMissCount();
+    }
+}
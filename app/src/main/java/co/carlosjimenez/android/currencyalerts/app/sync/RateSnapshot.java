@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import co.carlosjimenez.android.currencyalerts.app.data.ForexContract;
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * In-memory copy of the rates stored for a day, used by the delta sync to find out which of the
+ * fetched rates really changed.
+ *
+ * <p>The rate table keeps one row per pair and day, so a fetched rate only needs to be written
+ * if there is no row for the pair on that day yet or if its value is different.
+ */
+class RateSnapshot {
+
+    private static final String[] SNAPSHOT_COLUMNS = {
+            ForexContract.RateEntry.COLUMN_RATE_FROM_KEY,
+            ForexContract.RateEntry.COLUMN_RATE_TO_KEY,
+            ForexContract.RateEntry.COLUMN_RATE_VALUE
+    };
+
+    // These indices are tied to SNAPSHOT_COLUMNS.  If SNAPSHOT_COLUMNS changes, these
+    // must change.
+    private static final int COL_RATE_FROM = 0;
+    private static final int COL_RATE_TO = 1;
+    private static final int COL_RATE_VALUE = 2;
+
+    private final Map<String, Double> mValues = new HashMap<>();
+    private long mDate = -1;
+
+    /**
+     * @return true if the snapshot holds the rates of the given day
+     */
+    boolean isLoaded(long date) {
+        return mDate == date;
+    }
+
+    /**
+     * Replaces the snapshot with the rates stored for the given day.
+     *
+     * @param resolver ContentResolver used to query the stored rates
+     * @param date     Normalized date of the day to load
+     */
+    void load(ContentResolver resolver, long date) {
+        mValues.clear();
+        mDate = -1;
+
+        Cursor cursor = resolver.query(ForexContract.RateEntry.CONTENT_URI,
+                SNAPSHOT_COLUMNS,
+                ForexContract.RateEntry.COLUMN_RATE_DATE + " = ?",
+                new String[]{Long.toString(date)},
+                null);
+
+        if (cursor == null) {
+            return;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                mValues.put(cursor.getString(COL_RATE_FROM) + "_" + cursor.getString(COL_RATE_TO),
+                        cursor.getDouble(COL_RATE_VALUE));
+            }
+            mDate = date;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return true if the rate is already stored with the same value
+     */
+    boolean isUnchanged(Rate rate) {
+        Double storedValue = mValues.get(rate.getPair());
+        return storedValue != null && storedValue == rate.getValue();
+    }
+
+    /**
+     * Records a rate that has just been written to the database.
+     */
+    void put(Rate rate) {
+        mValues.put(rate.getPair(), rate.getValue());
+    }
+
+    /**
+     * Forgets the stored rates, the next sync will load them again.
+     */
+    void clear() {
+        mValues.clear();
+        mDate = -1;
+    }
+}
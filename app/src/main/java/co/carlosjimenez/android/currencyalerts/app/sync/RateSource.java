@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.List;
+
+import co.carlosjimenez.android.currencyalerts.app.data.Rate;
+
+/**
+ * Source of currency rates used by the {@link ForexSyncAdapter}.
+ *
+ * <p>Implementations fetch a batch of currency pairs, in the forex API form FROM_TO, and return
+ * the decoded rates.  They are called from the sync thread so they are allowed to block.
+ */
+public interface RateSource {
+
+    /**
+     * Fetches the rates for the given currency pairs.
+     *
+     * @param pairs Currency pairs to fetch, e.g. USD_EUR
+     * @return the rates returned by the source, an empty list if the source knows the rates
+     * didn't change since they were last returned, or null if the source answered without any
+     * results, which means the request was not valid.
+     * @throws IOException   if the source couldn't be reached or returned no data
+     * @throws JSONException if the source returned data that couldn't be decoded
+     */
+    List<Rate> fetchRates(String[] pairs) throws IOException, JSONException;
+}
@@ -0,0 +1,304 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import java.util.Locale;
+
+/**
+ * Streaming statistics of the daily rates of a pair over a window of days: count, average, min,
+ * max and variance.
+ *
+ * <p>The window holds at most one rate per day, the last {@code windowDays} days, which is what the
+ * alerts used to recompute from the rate history after every sync.  Adding the rate of a new day
+ * is O(1): the sums are updated in place and the min and max are kept in monotonic queues.  A rate
+ * of a day already in the window, an intraday sync, replaces the value of that day.
+ *
+ * <p>The days are Julian day numbers.  The state is a few primitive arrays and can be saved with
+ * {@link #serialize()}, so the alerts don't scan the history to evaluate a new rate.
+ */
+public final class RollingRateStats {
+
+    private static final char FIELD_SEPARATOR = ';';
+    private static final char SAMPLE_SEPARATOR = ',';
+    private static final char VALUE_SEPARATOR = ':';
+
+    private final int mWindowDays;
+
+    // Ring buffer of the samples, indexed by sequence number modulo the window
+    private final int[] mDays;
+    private final double[] mValues;
+    // Sequence numbers of the oldest sample and of the next sample to add
+    private long mFirst;
+    private long mNext;
+
+    private double mSum;
+    private double mSumOfSquares;
+
+    // Sequence numbers of the samples that can still become the min or the max, oldest first.
+    // The values are increasing in the min queue and decreasing in the max queue.
+    private final long[] mMinQueue;
+    private final long[] mMaxQueue;
+    private int mMinHead;
+    private int mMinSize;
+    private int mMaxHead;
+    private int mMaxSize;
+
+    /**
+     * @param windowDays Number of days of the window, the period of the alert
+     */
+    public RollingRateStats(int windowDays) {
+        if (windowDays <= 0) {
+            throw new IllegalArgumentException("Invalid window: " + windowDays);
+        }
+
+        mWindowDays = windowDays;
+        mDays = new int[windowDays];
+        mValues = new double[windowDays];
+        mMinQueue = new long[windowDays];
+        mMaxQueue = new long[windowDays];
+    }
+
+    public int getWindowDays() {
+        return mWindowDays;
+    }
+
+    public int getCount() {
+        return (int) (mNext - mFirst);
+    }
+
+    /**
+     * @return The day of the newest rate, or -1 if the window is empty
+     */
+    public int getLastDay() {
+        return getCount() == 0 ? -1 : mDays[slot(mNext - 1)];
+    }
+
+    public double getAverage() {
+        int count = getCount();
+        return count == 0 ? Double.NaN : mSum / count;
+    }
+
+    public double getMin() {
+        return mMinSize == 0 ? Double.NaN : mValues[slot(mMinQueue[mMinHead])];
+    }
+
+    public double getMax() {
+        return mMaxSize == 0 ? Double.NaN : mValues[slot(mMaxQueue[mMaxHead])];
+    }
+
+    /**
+     * @return The population variance of the rates in the window
+     */
+    public double getVariance() {
+        int count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        double average = mSum / count;
+        // Rounding can leave a tiny negative value when all the rates are equal
+        return Math.max(0d, mSumOfSquares / count - average * average);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Adds the rate of a day and drops the days that fall out of the window.
+     *
+     * @param day   Julian day of the rate
+     * @param value Rate value
+     * @return false if the day is older than the newest day of the window, the rate is ignored
+     */
+    public boolean add(int day, double value) {
+        if (getCount() > 0) {
+            int lastDay = getLastDay();
+            if (day < lastDay) {
+                return false;
+            }
+            if (day == lastDay) {
+                replaceLast(value);
+                return true;
+            }
+        }
+
+        advanceTo(day);
+        if (getCount() == mWindowDays) {
+            removeFirst();
+        }
+
+        long sequence = mNext++;
+        mDays[slot(sequence)] = day;
+        mValues[slot(sequence)] = value;
+        mSum += value;
+        mSumOfSquares += value * value;
+
+        // The new rate outlives every older rate, so those that are not better can't be the
+        // min or the max anymore
+        while (mMinSize > 0 && mValues[slot(minTail())] >= value) {
+            mMinSize--;
+        }
+        mMinQueue[(mMinHead + mMinSize++) % mWindowDays] = sequence;
+
+        while (mMaxSize > 0 && mValues[slot(maxTail())] <= value) {
+            mMaxSize--;
+        }
+        mMaxQueue[(mMaxHead + mMaxSize++) % mWindowDays] = sequence;
+        return true;
+    }
+
+    /**
+     * Drops the rates that are out of the window on the given day, the rates older than
+     * {@code day - windowDays}.
+     *
+     * @param day Julian day the statistics are read on, usually today
+     */
+    public void advanceTo(int day) {
+        int firstDay = day - mWindowDays;
+        while (getCount() > 0 && mDays[slot(mFirst)] < firstDay) {
+            removeFirst();
+        }
+    }
+
+    public void clear() {
+        mFirst = mNext = 0;
+        mSum = mSumOfSquares = 0;
+        mMinHead = mMinSize = 0;
+        mMaxHead = mMaxSize = 0;
+    }
+
+    /**
+     * @return The state of the statistics, to be restored with {@link #parse(String)}
+     */
+    public String serialize() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(mWindowDays).append(FIELD_SEPARATOR);
+        for (long sequence = mFirst; sequence < mNext; sequence++) {
+            if (sequence > mFirst) {
+                builder.append(SAMPLE_SEPARATOR);
+            }
+            builder.append(mDays[slot(sequence)]).append(VALUE_SEPARATOR).append(mValues[slot(sequence)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param state State returned by {@link #serialize()}
+     * @return The restored statistics, or null if the state is not valid
+     */
+    public static RollingRateStats parse(String state) {
+        if (state == null) {
+            return null;
+        }
+
+        int separator = state.indexOf(FIELD_SEPARATOR);
+        if (separator <= 0) {
+            return null;
+        }
+
+        try {
+            RollingRateStats stats = new RollingRateStats(Integer.parseInt(state.substring(0, separator)));
+            String samples = state.substring(separator + 1);
+            if (samples.isEmpty()) {
+                return stats;
+            }
+
+            for (String sample : samples.split(String.valueOf(SAMPLE_SEPARATOR))) {
+                int valueSeparator = sample.indexOf(VALUE_SEPARATOR);
+                stats.add(Integer.parseInt(sample.substring(0, valueSeparator)),
+                        Double.parseDouble(sample.substring(valueSeparator + 1)));
+            }
+            return stats;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d days, %d rates, avg %f, min %f, max %f, stddev %f",
+                mWindowDays, getCount(), getAverage(), getMin(), getMax(), getStandardDeviation());
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % mWindowDays);
+    }
+
+    private long minTail() {
+        return mMinQueue[(mMinHead + mMinSize - 1) % mWindowDays];
+    }
+
+    private long maxTail() {
+        return mMaxQueue[(mMaxHead + mMaxSize - 1) % mWindowDays];
+    }
+
+    private void removeFirst() {
+        long sequence = mFirst++;
+        double value = mValues[slot(sequence)];
+        mSum -= value;
+        mSumOfSquares -= value * value;
+
+        if (mMinSize > 0 && mMinQueue[mMinHead] == sequence) {
+            mMinHead = (mMinHead + 1) % mWindowDays;
+            mMinSize--;
+        }
+        if (mMaxSize > 0 && mMaxQueue[mMaxHead] == sequence) {
+            mMaxHead = (mMaxHead + 1) % mWindowDays;
+            mMaxSize--;
+        }
+
+        if (mFirst == mNext) {
+            // Start again from exact sums, so the rounding errors don't pile up
+            mSum = mSumOfSquares = 0;
+        }
+    }
+
+    /*
+        A new rate for the newest day.  The rates that the old value had dropped from the min and
+        max queues may be needed again, so the queues are rebuilt, O(window).
+     */
+    private void replaceLast(double value) {
+        int index = slot(mNext - 1);
+        double old = mValues[index];
+        mSum += value - old;
+        mSumOfSquares += value * value - old * old;
+        mValues[index] = value;
+
+        mMinHead = mMinSize = 0;
+        mMaxHead = mMaxSize = 0;
+        for (long sequence = mFirst; sequence < mNext; sequence++) {
+            double current = mValues[slot(sequence)];
+            while (mMinSize > 0 && mValues[slot(minTail())] >= current) {
+                mMinSize--;
+            }
+            mMinQueue[mMinSize++] = sequence;
+            while (mMaxSize > 0 && mValues[slot(maxTail())] <= current) {
+                mMaxSize--;
+            }
+            mMaxQueue[mMaxSize++] = sequence;
+        }
+    }
+}
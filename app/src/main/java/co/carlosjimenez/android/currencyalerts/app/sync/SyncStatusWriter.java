@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import co.carlosjimenez.android.currencyalerts.app.R;
+import co.carlosjimenez.android.currencyalerts.app.SettingsSnapshot;
+
+/**
+ * Collects the status values written by a sync or by the currency load and writes them to the
+ * shared preferences with a single apply.
+ *
+ * <p>Each commit writes the whole preferences file and waits for it on the calling thread, a sync
+ * used to do it two or three times.  The apply updates the values in memory right away and
+ * writes the file once in the background.
+ */
+class SyncStatusWriter {
+
+    private final Context mContext;
+    private final SharedPreferences.Editor mEditor;
+    private boolean mPending;
+
+    SyncStatusWriter(Context context) {
+        mContext = context;
+        mEditor = PreferenceManager.getDefaultSharedPreferences(context).edit();
+    }
+
+    SyncStatusWriter setForexStatus(@ForexSyncAdapter.ForexStatus int forexStatus) {
+        mEditor.putInt(mContext.getString(R.string.pref_forex_status_key), forexStatus);
+        mPending = true;
+        return this;
+    }
+
+    SyncStatusWriter setForexSyncDate(long forexSyncDate) {
+        mEditor.putLong(mContext.getString(R.string.pref_forex_sync_date_key), forexSyncDate);
+        mPending = true;
+        return this;
+    }
+
+    SyncStatusWriter setCurrencyStatus(@LoadCurrencyTask.CurrencyStatus int currencyStatus) {
+        mEditor.putInt(mContext.getString(R.string.pref_currency_status_key), currencyStatus);
+        mPending = true;
+        return this;
+    }
+
+    /**
+     * @param currencies The list of currencies to be fetched from the API
+     */
+    SyncStatusWriter setSyncCurrencies(String currencies) {
+        mEditor.putString(mContext.getString(R.string.pref_displayed_currencies_key), currencies);
+        mPending = true;
+        return this;
+    }
+
+    /**
+     * Writes the values set since the last apply, if any.
+     *
+     * @return true if there were values to write
+     */
+    boolean apply() {
+        if (!mPending) {
+            return false;
+        }
+
+        mEditor.apply();
+        mPending = false;
+
+        // The listener of the snapshot runs later on the main thread, the values are read from
+        // this thread right after the apply
+        SettingsSnapshot.refresh(mContext);
+        return true;
+    }
+}
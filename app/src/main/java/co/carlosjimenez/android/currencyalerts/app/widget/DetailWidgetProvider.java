@@ -31,15 +31,14 @@ import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.v4.app.TaskStackBuilder;
 import android.widget.RemoteViews;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.AppWidgetTarget;
-
 import co.carlosjimenez.android.currencyalerts.app.DetailActivity;
+import co.carlosjimenez.android.currencyalerts.app.FlagRepository;
 import co.carlosjimenez.android.currencyalerts.app.MainActivity;
 import co.carlosjimenez.android.currencyalerts.app.R;
 import co.carlosjimenez.android.currencyalerts.app.Utility;
@@ -128,19 +127,35 @@ public class DetailWidgetProvider extends AppWidgetProvider {
      * @param views         Remote Views where we set the widget information
      * @param appWidgetIds  Ids of every widget present.
      */
-    public void setMainCurrencyDetails(Context context, @NonNull final RemoteViews views, int[] appWidgetIds) {
+    public void setMainCurrencyDetails(Context context, @NonNull final RemoteViews views, final int[] appWidgetIds) {
         Currency mainCurrency = Utility.getMainCurrency(context);
 
         if (mainCurrency == null)
             return;
 
-        AppWidgetTarget appWidgetTarget = new AppWidgetTarget(context, views, R.id.widget_main_currency_flag, appWidgetIds);
-
-        Glide.with(context)
-                .load(mainCurrency.getCountryFlag())
-                .asBitmap()
-                .error(R.drawable.globe)
-                .into(appWidgetTarget);
+        // The flag is usually in memory, prefetched with the others.  Otherwise the header shows
+        // the globe until the flag is loaded.
+        FlagRepository flagRepository = FlagRepository.getInstance(context);
+        Bitmap flag = flagRepository.getCached(mainCurrency.getId(), FlagRepository.SIZE_SMALL);
+        if (flag != null) {
+            views.setImageViewBitmap(R.id.widget_main_currency_flag, flag);
+        } else {
+            views.setImageViewResource(R.id.widget_main_currency_flag, R.drawable.globe);
+
+            final Context appContext = context.getApplicationContext();
+            flagRepository.load(mainCurrency.getId(), mainCurrency.getCountryFlag(), FlagRepository.SIZE_SMALL,
+                    new FlagRepository.Callback() {
+                        @Override
+                        public void onFlagLoaded(Bitmap flag) {
+                            if (flag == null) {
+                                return;
+                            }
+                            RemoteViews flagViews = new RemoteViews(appContext.getPackageName(), R.layout.widget_detail);
+                            flagViews.setImageViewBitmap(R.id.widget_main_currency_flag, flag);
+                            AppWidgetManager.getInstance(appContext).partiallyUpdateAppWidget(appWidgetIds, flagViews);
+                        }
+                    });
+        }
 
         views.setTextViewText(R.id.widget_main_currency_id, mainCurrency.getId());
     }
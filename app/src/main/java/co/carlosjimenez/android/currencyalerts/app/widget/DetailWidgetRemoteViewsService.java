@@ -32,16 +32,12 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
-
-import java.util.concurrent.ExecutionException;
-
+import co.carlosjimenez.android.currencyalerts.app.CurrencyFormatter;
+import co.carlosjimenez.android.currencyalerts.app.FlagRepository;
 import co.carlosjimenez.android.currencyalerts.app.R;
 import co.carlosjimenez.android.currencyalerts.app.Utility;
 import co.carlosjimenez.android.currencyalerts.app.data.Currency;
@@ -55,32 +51,27 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
 
     public final String LOG_TAG = DetailWidgetRemoteViewsService.class.getSimpleName();
 
-    // These indices are tied to FOREX_COLUMNS.  If FOREX_COLUMNS changes, these
+    // These indices are tied to LATEST_RATE_COLUMNS.  If LATEST_RATE_COLUMNS changes, these
     // must change.
     static final int COL_RATE_ID = 0;
-    static final int COL_CURRENCY_FROM_ID = 1;
-    static final int COL_CURRENCY_FROM_NAME = 2;
-    static final int COL_CURRENCY_FROM_SYMBOL = 3;
-    static final int COL_COUNTRY_FROM_CODE = 4;
-    static final int COL_COUNTRY_FROM_NAME = 5;
-    static final int COL_COUNTRY_FROM_FLAG = 6;
-    static final int COL_CURRENCY_TO_ID = 7;
-    static final int COL_CURRENCY_TO_NAME = 8;
-    static final int COL_CURRENCY_TO_SYMBOL = 9;
-    static final int COL_COUNTRY_TO_CODE = 10;
-    static final int COL_COUNTRY_TO_NAME = 11;
-    static final int COL_COUNTRY_TO_FLAG = 12;
-    static final int COL_RATE_DATE = 13;
-    static final int COL_RATE_VAL = 14;
+    static final int COL_CURRENCY_TO_ID = 1;
+    static final int COL_CURRENCY_TO_NAME = 2;
+    static final int COL_CURRENCY_TO_SYMBOL = 3;
+    static final int COL_COUNTRY_TO_NAME = 4;
+    static final int COL_COUNTRY_TO_FLAG = 5;
+    static final int COL_RATE_DATE = 6;
+    static final int COL_RATE_VAL = 7;
 
     @Override
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            private String mainCurrencyId = null;
+            private CurrencyFormatter formatter = null;
 
             @Override
             public void onCreate() {
-                // Nothing to do
+                formatter = new CurrencyFormatter(DetailWidgetRemoteViewsService.this);
             }
 
             @Override
@@ -100,12 +91,11 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 if (mainCurrency == null)
                     return;
 
-                Uri rateUri = ForexContract.RateEntry.buildStartCurrencyWithDate(
-                        mainCurrency.getId(),
-                        Utility.getForexSyncDate(context));
+                mainCurrencyId = mainCurrency.getId();
+                Uri rateUri = ForexContract.RateEntry.buildLatestRates(mainCurrencyId);
 
                 data = getContentResolver().query(rateUri,
-                        ForexContract.RATE_CURRENCY_COLUMNS,
+                        ForexContract.LATEST_RATE_COLUMNS,
                         null,
                         null,
                         null);
@@ -137,7 +127,6 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 RemoteViews views = new RemoteViews(getPackageName(),
                         R.layout.widget_detail_list_item);
 
-                String mainCurrencyId = data.getString(COL_CURRENCY_FROM_ID);
                 String currencyId = data.getString(COL_CURRENCY_TO_ID);
                 String currencyName = data.getString(COL_CURRENCY_TO_NAME);
                 String currencySymbol = data.getString(COL_CURRENCY_TO_SYMBOL);
@@ -146,20 +135,21 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 double currencyRate = data.getDouble(COL_RATE_VAL);
 
                 String countryFlagDescription = Utility.formatCountryFlagName(context, countryName);
-                String formattedCurrencyRate = Utility.formatCurrencyRate(context, currencySymbol, currencyRate);
-
-                Bitmap countryFlagImage = null;
-                try {
-                    countryFlagImage = Glide.with(context)
-                            .load(countryFlag)
-                            .asBitmap()
-                            .error(R.drawable.globe)
-                            .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                } catch (InterruptedException | ExecutionException e) {
-                    Log.e(LOG_TAG, "Error retrieving flag from " + countryFlag, e);
+                String formattedCurrencyRate = formatter.formatToString(currencySymbol, currencyRate);
+
+                // The flags are prefetched after the currencies are loaded, they are usually in
+                // memory.  This runs on a binder thread, a missing flag is loaded right here.
+                FlagRepository flagRepository = FlagRepository.getInstance(context);
+                Bitmap countryFlagImage = flagRepository.getCached(currencyId, FlagRepository.SIZE_SMALL);
+                if (countryFlagImage == null) {
+                    countryFlagImage = flagRepository.get(currencyId, countryFlag, FlagRepository.SIZE_SMALL);
                 }
 
-                views.setImageViewBitmap(R.id.widget_country_flag, countryFlagImage);
+                if (countryFlagImage != null) {
+                    views.setImageViewBitmap(R.id.widget_country_flag, countryFlagImage);
+                } else {
+                    views.setImageViewResource(R.id.widget_country_flag, R.drawable.globe);
+                }
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
                     setRemoteContentDescription(views, countryFlagDescription);
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CurrencyFormatterTest {
+
+    // The format of R.string.format_currency_rate
+    private static final String FORMAT_CURRENCY_RATE = "%1$s %2$1.2f";
+
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.GERMANY, Locale.FRANCE, new Locale("es", "CO"), new Locale("ar", "EG"),
+            new Locale("hi", "IN")};
+
+    private static final String[] SYMBOLS = {"$", "\u20ac", "COP$", "", "\u062f.\u0625"};
+
+    private static final double[] RATES = {
+            0, 0.001, 0.004, 0.005, 0.0051, 0.01, 0.125, 0.5, 0.994, 0.995, 0.996, 1, 1.005, 1.015,
+            2.675, 10, 99.99, 99.995, 100, 999.994, 999.995, 1000, 1234.5678, 9999.999, 10000,
+            123456.785, 1000000, 2941.2345, 3161.34, 1234567.891, 999999999.995, 1e12, 9.99999999999e12,
+            1e13, 1e15, 1e20, -0.0, -1, -12.345, -1234.5, -123456, Double.MIN_VALUE, Double.MAX_VALUE,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+    /*
+        The rate as Utility.formatCurrencyRate used to format it: the resource format, then a comma
+        prepended before every three characters of the integer part.
+     */
+    private static String legacyFormatCurrencyRate(Locale locale, String currency_symbol, double currencyRate) {
+
+        String rate = String.format(locale, FORMAT_CURRENCY_RATE, currency_symbol, currencyRate);
+        String formattedRate = "";
+
+        int prefixLen = currency_symbol.length();
+        int j = 0;
+
+        if (rate.startsWith(currency_symbol + " "))
+            prefixLen++;
+
+        for (int i = rate.length() - 1; i >= prefixLen; i--) {
+            if (i <= rate.length() - 5) {
+                if (j < 2) {
+                    j++;
+                } else {
+                    formattedRate = "," + formattedRate;
+                    j = 0;
+                }
+            }
+            formattedRate = rate.charAt(i) + formattedRate;
+        }
+
+        formattedRate = rate.substring(0, prefixLen) + formattedRate;
+
+        return formattedRate;
+    }
+
+    private static void assertGolden(CurrencyFormatter formatter, Locale locale, String symbol, double rate) {
+        assertEquals("Rate " + rate + " in " + locale,
+                legacyFormatCurrencyRate(locale, symbol, rate), formatter.formatToString(symbol, rate));
+    }
+
+    @Test
+    public void formatsTheExistingCases() {
+        for (Locale locale : LOCALES) {
+            CurrencyFormatter formatter = new CurrencyFormatter(locale);
+            for (String symbol : SYMBOLS) {
+                for (double rate : RATES) {
+                    assertGolden(formatter, locale, symbol, rate);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatsTheGrouping() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.US);
+        assertEquals("$ 0.00", formatter.formatToString("$", 0));
+        assertEquals("$ 999.99", formatter.formatToString("$", 999.99));
+        assertEquals("$ 1,000.00", formatter.formatToString("$", 1000));
+        assertEquals("$ 1,234,567.89", formatter.formatToString("$", 1234567.891));
+        assertEquals("\u20ac 1,234,567,89", new CurrencyFormatter(Locale.GERMANY).formatToString("\u20ac", 1234567.891));
+    }
+
+    @Test
+    public void formatsRandomRates() {
+        Random random = new Random(42);
+        for (Locale locale : LOCALES) {
+            CurrencyFormatter formatter = new CurrencyFormatter(locale);
+            for (int i = 0; i < 20000; i++) {
+                // Rates from 0.0001 to 10^10, and rates on the half cent
+                double rate = i % 4 == 0
+                        ? (random.nextInt(2000000) + 0.5) / 100
+                        : Math.pow(10, random.nextDouble() * 14 - 4);
+                assertGolden(formatter, locale, "$", rate);
+            }
+        }
+    }
+
+    @Test
+    public void reusesTheBuilder() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.US);
+        CharSequence first = formatter.format("$", 1);
+        CharSequence second = formatter.format("\u20ac", 2);
+        assertEquals(first, second);
+        assertEquals("\u20ac 2.00", second.toString());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForexRowsDiffTest {
+
+    /*
+        Records the operations of a diff as strings, in order.
+     */
+    private static class RecordingCallback implements ForexRowsDiff.Callback {
+        final List<String> ops = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            ops.add("insert " + position + " " + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            ops.add("remove " + position + " " + count);
+        }
+
+        @Override
+        public void onChanged(int position, int count, boolean rateOnly) {
+            ops.add((rateOnly ? "rate " : "change ") + position + " " + count);
+        }
+
+        @Override
+        public void onReload() {
+            ops.add("reload");
+        }
+    }
+
+    private static ForexRowModel row(String currencyId) {
+        return new ForexRowModel(currencyId, currencyId + " name", "$", "http://flags/" + currencyId,
+                currencyId + " flag", currencyId + " " + currencyId + " name", 1);
+    }
+
+    private static ForexRowModel[] rows(String... ids) {
+        ForexRowModel[] rows = new ForexRowModel[ids.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row(ids[i]);
+        }
+        return rows;
+    }
+
+    private static double[] rates(double... rates) {
+        return rates;
+    }
+
+    private static List<String> dispatch(ForexRowsDiff diff) {
+        RecordingCallback callback = new RecordingCallback();
+        diff.dispatchUpdatesTo(callback);
+        return callback.ops;
+    }
+
+    @Test
+    public void sameRowsAreEmpty() {
+        ForexRowsDiff diff = ForexRowsDiff.calculate(7,
+                rows("COP", "EUR"), rates(1, 2),
+                rows("COP", "EUR"), rates(1, 2),
+                false);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(7, diff.getFromGeneration());
+        assertTrue(dispatch(diff).isEmpty());
+    }
+
+    @Test
+    public void rateChangesAreRatePayloads() {
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1,
+                rows("ARS", "COP", "EUR", "GBP"), rates(1, 2, 3, 4),
+                rows("ARS", "COP", "EUR", "GBP"), rates(1, 5, 6, 4),
+                false);
+
+        assertEquals(Arrays.asList("rate 1 2"), dispatch(diff));
+    }
+
+    @Test
+    public void rateFontChangeRebindsEveryRate() {
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1,
+                rows("ARS", "COP"), rates(1, 2),
+                rows("ARS", "COP"), rates(1, 2),
+                true);
+
+        assertEquals(Arrays.asList("rate 0 2"), dispatch(diff));
+    }
+
+    @Test
+    public void newAmountOnlyChangesTheRates() {
+        ForexRowModel[] rows = rows("ARS", "COP", "EUR");
+        double[] rates = rates(0.5, 2941.2345, 0.89);
+        double[] converted = new double[rates.length];
+        ForexRowLoader.convert(rates, 3, converted);
+
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1, rows, rates, rows, converted, false);
+
+        assertEquals(3 * 2941.2345, converted[1], 0);
+        assertEquals(Arrays.asList("rate 0 3"), dispatch(diff));
+    }
+
+    @Test
+    public void otherChangesRebindTheRow() {
+        ForexRowModel[] newRows = rows("ARS", "COP");
+        newRows[1] = new ForexRowModel("COP", "Peso", "$", "http://flags/COP", "COP flag", "COP Peso", 1);
+
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1, rows("ARS", "COP"), rates(1, 2), newRows, rates(1, 2), false);
+
+        assertEquals(Arrays.asList("change 1 1"), dispatch(diff));
+    }
+
+    @Test
+    public void insertsAndRemovesKeepThePositions() {
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1,
+                rows("ARS", "BRL", "CAD", "COP", "EUR"), rates(1, 2, 3, 4, 5),
+                rows("AUD", "ARS", "COP", "EUR", "GBP", "JPY"), rates(9, 1, 8, 5, 6, 7),
+                false);
+
+        assertFalse(diff.isReload());
+        assertEquals(Arrays.asList("insert 0 1", "remove 2 2", "rate 2 1", "insert 4 2"), dispatch(diff));
+    }
+
+    @Test
+    public void movesReloadTheList() {
+        ForexRowsDiff diff = ForexRowsDiff.calculate(1,
+                rows("ARS", "COP", "EUR"), rates(1, 2, 3),
+                rows("EUR", "ARS", "COP"), rates(3, 1, 2),
+                false);
+
+        assertTrue(diff.isReload());
+        assertEquals(Arrays.asList("reload"), dispatch(diff));
+    }
+
+    @Test
+    public void appliedOperationsGiveTheNewIds() {
+        String[] oldIds = {"A", "B", "C", "D", "E", "F", "G", "H"};
+        String[] newIds = {"X", "B", "D", "Y", "Z", "F", "H", "W"};
+
+        ForexRowModel[] oldRows = rows(oldIds);
+        ForexRowModel[] newRows = rows(newIds);
+
+        final List<String> list = new ArrayList<>(Arrays.asList(oldIds));
+        final String[] inserted = newIds;
+        ForexRowsDiff.calculate(1, oldRows, new double[oldIds.length], newRows, new double[newIds.length], false)
+                .dispatchUpdatesTo(new RecordingCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    list.add(position + i, inserted[position + i]);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    list.remove(position);
+                }
+            }
+        });
+
+        assertEquals(Arrays.asList(newIds), list);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateMatrixTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final String[] CURRENCIES = {"USD", "COP", "ZAR", "CNY", "EUR"};
+    private static final int USD = 0;
+    private static final int COP = 1;
+    private static final int ZAR = 2;
+    private static final int CNY = 3;
+    private static final int EUR = 4;
+
+    private RateMatrix mMatrix;
+
+    @Before
+    public void setUp() {
+        // Rates from USD, the USD rate itself is ignored and forced to 1
+        double[] rates = {0d, 2950d, 14.5d, 6.5d, 0.9d};
+        mMatrix = new RateMatrix(CURRENCIES, USD, rates);
+    }
+
+    @Test
+    public void indexesFollowTheCurrencyArray() {
+        assertEquals(CURRENCIES.length, mMatrix.size());
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            assertEquals(i, mMatrix.indexOf(CURRENCIES[i]));
+            assertEquals(CURRENCIES[i], mMatrix.getCurrencyId(i));
+        }
+        assertEquals(-1, mMatrix.indexOf("JPY"));
+        assertEquals("USD", mMatrix.getBaseCurrencyId());
+    }
+
+    @Test
+    public void baseRatesAreReturnedAsIs() {
+        assertEquals(1d, mMatrix.getRate(USD, USD), DELTA);
+        assertEquals(14.5d, mMatrix.getRate(USD, ZAR), DELTA);
+        assertEquals(1 / 14.5d, mMatrix.getRate(ZAR, USD), DELTA);
+    }
+
+    @Test
+    public void crossRatesGoThroughTheBase() {
+        assertEquals(6.5d / 0.9d, mMatrix.getRate(EUR, CNY), DELTA);
+        assertEquals(2950d / 14.5d, mMatrix.getRate(ZAR, COP), DELTA);
+        assertEquals(1d, mMatrix.getRate(EUR, CNY) * mMatrix.getRate(CNY, EUR), DELTA);
+        assertEquals(100 * 6.5d / 0.9d, mMatrix.convert(100, EUR, CNY), DELTA);
+    }
+
+    @Test
+    public void convertAllMatchesConvert() {
+        double[] out = new double[mMatrix.size()];
+        for (int from = 0; from < mMatrix.size(); from++) {
+            mMatrix.convertAll(250, from, out);
+            for (int to = 0; to < mMatrix.size(); to++) {
+                assertEquals(mMatrix.convert(250, from, to), out[to], DELTA);
+            }
+            assertEquals(250, out[from], DELTA);
+        }
+    }
+
+    @Test
+    public void unknownRatesAreNaN() {
+        double[] rates = {1d, Double.NaN, 14.5d, 6.5d, 0.9d};
+        RateMatrix matrix = new RateMatrix(CURRENCIES, USD, rates);
+
+        assertFalse(matrix.hasRate(COP));
+        assertTrue(matrix.hasRate(ZAR));
+        assertTrue(Double.isNaN(matrix.getRate(COP, ZAR)));
+        assertTrue(Double.isNaN(matrix.getRate(ZAR, COP)));
+
+        double[] out = new double[matrix.size()];
+        matrix.convertAll(1, COP, out);
+        for (double value : out) {
+            assertTrue(Double.isNaN(value));
+        }
+    }
+
+    @Test
+    public void ratesAreCopied() {
+        double[] rates = {1d, 2950d, 14.5d, 6.5d, 0.9d};
+        RateMatrix matrix = new RateMatrix(CURRENCIES, USD, rates);
+        rates[ZAR] = 0;
+
+        double[] out = new double[matrix.size()];
+        matrix.convertAll(1, USD, out);
+        assertArrayEquals(new double[]{1d, 2950d, 14.5d, 6.5d, 0.9d}, out, DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ratesMustMatchTheCurrencies() {
+        new RateMatrix(CURRENCIES, USD, new double[]{1d, 2d});
+    }
+}
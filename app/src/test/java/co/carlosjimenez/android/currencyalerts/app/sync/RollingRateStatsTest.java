@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Carlos Andres Jimenez <apps@carlosandresjimenez.co>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package co.carlosjimenez.android.currencyalerts.app.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RollingRateStatsTest {
+
+    private static final double DELTA = 1e-9;
+    private static final int PERIOD = 7;
+    private static final int TODAY = 2457550;
+
+    /*
+        The average the alerts used to recalculate from the rate history: the last period rates,
+        newest first, with a date no older than period days.
+     */
+    private static double recalculateAverage(List<Integer> days, List<Double> values, int today, int period) {
+        double sum = 0;
+        int count = 0;
+        for (int i = days.size() - 1; i >= 0 && count < period; i--) {
+            if (days.get(i) < today - period) {
+                break;
+            }
+            sum += values.get(i);
+            count++;
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Test
+    public void averageMatchesTheRecalculatedAverage() {
+        Random random = new Random(42);
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        List<Integer> days = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+
+        int day = TODAY;
+        for (int i = 0; i < 500; i++) {
+            // Daily syncs with a few days missed now and then
+            day += random.nextInt(10) < 8 ? 1 : 2 + random.nextInt(PERIOD);
+            double value = 2900 + random.nextDouble() * 100;
+
+            assertTrue(stats.add(day, value));
+            days.add(day);
+            values.add(value);
+
+            assertEquals(recalculateAverage(days, values, day, PERIOD), stats.getAverage(), DELTA);
+        }
+    }
+
+    @Test
+    public void minMaxAndVarianceMatchTheWindow() {
+        Random random = new Random(7);
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        List<Double> window = new ArrayList<>();
+
+        for (int day = TODAY; day < TODAY + 200; day++) {
+            double value = random.nextInt(20);
+            stats.add(day, value);
+            window.add(value);
+            if (window.size() > PERIOD) {
+                window.remove(0);
+            }
+
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sum = 0;
+            for (double current : window) {
+                min = Math.min(min, current);
+                max = Math.max(max, current);
+                sum += current;
+            }
+            double average = sum / window.size();
+            double variance = 0;
+            for (double current : window) {
+                variance += (current - average) * (current - average);
+            }
+            variance /= window.size();
+
+            assertEquals(window.size(), stats.getCount());
+            assertEquals(min, stats.getMin(), DELTA);
+            assertEquals(max, stats.getMax(), DELTA);
+            assertEquals(variance, stats.getVariance(), 1e-6);
+        }
+    }
+
+    @Test
+    public void intradayRateReplacesTheRateOfTheDay() {
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        stats.add(TODAY, 10);
+        stats.add(TODAY + 1, 20);
+        stats.add(TODAY + 1, 5);
+
+        assertEquals(2, stats.getCount());
+        assertEquals(7.5, stats.getAverage(), DELTA);
+        assertEquals(5, stats.getMin(), DELTA);
+        assertEquals(10, stats.getMax(), DELTA);
+
+        stats.add(TODAY + 1, 30);
+        assertEquals(10, stats.getMin(), DELTA);
+        assertEquals(30, stats.getMax(), DELTA);
+    }
+
+    @Test
+    public void olderRatesAreIgnored() {
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        stats.add(TODAY, 10);
+
+        assertFalse(stats.add(TODAY - 1, 20));
+        assertEquals(1, stats.getCount());
+        assertEquals(10, stats.getAverage(), DELTA);
+    }
+
+    @Test
+    public void advanceDropsTheRatesOutOfTheWindow() {
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        stats.add(TODAY, 10);
+        stats.add(TODAY + 2, 20);
+
+        stats.advanceTo(TODAY + PERIOD + 1);
+        assertEquals(1, stats.getCount());
+        assertEquals(20, stats.getAverage(), DELTA);
+
+        stats.advanceTo(TODAY + PERIOD + 3);
+        assertEquals(0, stats.getCount());
+        assertTrue(Double.isNaN(stats.getAverage()));
+        assertTrue(Double.isNaN(stats.getMin()));
+    }
+
+    @Test
+    public void serializedStateRestoresTheSameStatistics() {
+        RollingRateStats stats = new RollingRateStats(PERIOD);
+        for (int i = 0; i < 10; i++) {
+            stats.add(TODAY + i, 1d / (i + 3));
+        }
+
+        RollingRateStats restored = RollingRateStats.parse(stats.serialize());
+        assertEquals(stats.serialize(), restored.serialize());
+        assertEquals(PERIOD, restored.getWindowDays());
+        assertEquals(stats.getCount(), restored.getCount());
+        assertEquals(stats.getLastDay(), restored.getLastDay());
+        assertEquals(stats.getAverage(), restored.getAverage(), DELTA);
+        assertEquals(stats.getMin(), restored.getMin(), 0);
+        assertEquals(stats.getMax(), restored.getMax(), 0);
+
+        assertEquals(0, RollingRateStats.parse(new RollingRateStats(PERIOD).serialize()).getCount());
+        assertNull(RollingRateStats.parse("garbage"));
+        assertNull(RollingRateStats.parse("7;1:x"));
+        assertNull(RollingRateStats.parse(null));
+    }
+}